@@ -1,8 +1,25 @@
 package abstractclasses;
 
+import interfaces.EdgeConsumer;
 import interfaces.Graph;
 
+import java.util.Arrays;
+
+import graphimplementations.Vertex;
+
 public abstract class AbstractGraph implements Graph {
+	// for each vertex, out minus in (directed) or the degree without loops 
+	// (undirected), kept up to date by edgesChanged; null until isEulerian 
+	// is first called, and after vertices are removed
+	private int[] balances;
+	// the vertices with odd degree, or with in and out degrees that differ
+	private int noOfUnbalanced;
+	private boolean isBalanceDirected;
+	// the components ignoring directions, if kept (see keepComponents): 
+	// merged as edges are added, built again after edges or vertices are 
+	// removed
+	private DisjointSets components;
+	private boolean isComponentsStale;
 	
 	@Override
 	public boolean equals(Object other) {
@@ -29,4 +46,234 @@ public abstract class AbstractGraph implements Graph {
 		
 		return true;
 	}
+	
+	/**
+	 * In time O(1), after the degrees are counted once (in time O(V + E)): 
+	 * the implementations call edgesChanged when they add or remove edges, 
+	 * and verticesRemoved when they remove (or renumber) vertices.
+	 */
+	@Override
+	public boolean isEulerian() {
+		if (balances == null || isBalanceDirected != isDirected()) {
+			countBalances();
+		}
+		return noOfUnbalanced == 0;
+	}
+	
+	private void countBalances() {
+		isBalanceDirected = isDirected();
+		balances = new int[getNoOfVertices()];
+		noOfUnbalanced = 0;
+		forEachEdge(new EdgeConsumer() {
+			@Override
+			public void accept(int start, int end, int multiplicity) {
+				changeBalances(start, end, multiplicity);
+			}
+		});
+	}
+	
+	/**
+	 * To be called after times edges (-times, if times is negative) from the 
+	 * start-th vertex to the end-th (between them, if undirected) are added.
+	 */
+	protected final void edgesChanged(int start, int end, int times) {
+		if (components != null && !isComponentsStale) {
+			if (times > 0) {
+				components.grow(getNoOfVertices());
+				components.union(start, end);
+			} else if (start != end) {
+				isComponentsStale = true;
+			}
+		}
+		changeBalances(start, end, times);
+	}
+	
+	private void changeBalances(int start, int end, int times) {
+		if (balances == null || start == end) {
+			return;
+		}
+		int n = Math.max(start, end) + 1;
+		if (balances.length < n) {
+			balances = Arrays.copyOf(balances, Math.max(n, 2 * balances.length));
+		}
+		changeBalance(start, times);
+		changeBalance(end, isBalanceDirected ? -times : times);
+	}
+	
+	private void changeBalance(int vertex, int times) {
+		if (isUnbalanced(balances[vertex])) {
+			noOfUnbalanced--;
+		}
+		balances[vertex] += times;
+		if (isUnbalanced(balances[vertex])) {
+			noOfUnbalanced++;
+		}
+	}
+	
+	private boolean isUnbalanced(int balance) {
+		return isBalanceDirected ? balance != 0 : balance % 2 != 0;
+	}
+	
+	/**
+	 * To be called after vertices are removed: the degrees (and the 
+	 * components, if kept) are counted again by the next query.
+	 */
+	protected final void verticesRemoved() {
+		balances = null;
+		isComponentsStale = true;
+	}
+	
+	/**
+	 * From now on, the components are kept in disjoint sets: adding an 
+	 * edge merges two of them in nearly constant time, so that areConnected 
+	 * and getNoOfComponents answer without visiting the graph. Removing 
+	 * edges or vertices can split components: the sets are then built 
+	 * again (in time O(V + E)) by the next query.
+	 */
+	@Override
+	public void keepComponents() {
+		if (components == null) {
+			components = buildComponents();
+			isComponentsStale = false;
+		}
+	}
+	
+	@Override
+	public boolean areConnected(Vertex start, Vertex end) {
+		int startIndex = getIndexOf(start);
+		int endIndex = getIndexOf(end);
+		DisjointSets sets = getComponents();
+		return sets.find(startIndex) == sets.find(endIndex);
+	}
+	
+	@Override
+	public int getNoOfComponents() {
+		return getComponents().getNoOfSets();
+	}
+	
+	/**
+	 * @return the components kept, up to date, or else built for this query
+	 */
+	private DisjointSets getComponents() {
+		if (components == null) {
+			return buildComponents();
+		}
+		if (isComponentsStale) {
+			components = buildComponents();
+			isComponentsStale = false;
+		}
+		// the vertices added since are each a component
+		components.grow(getNoOfVertices());
+		return components;
+	}
+	
+	// union-find on the edges, ignoring their direction, in one pass of 
+	// forEachEdge
+	private DisjointSets buildComponents() {
+		final DisjointSets sets = new DisjointSets(getNoOfVertices());
+		forEachEdge(new EdgeConsumer() {
+			@Override
+			public void accept(int start, int end, int multiplicity) {
+				sets.union(start, end);
+			}
+		});
+		return sets;
+	}
+	
+	@Override
+	public boolean isConnected() {
+		return getNoOfComponents() <= 1;
+	}
+	
+	@Override
+	public boolean isConnectedIgnoringIsolatedVertices() {
+		int n = getNoOfVertices();
+		final DisjointSets sets = new DisjointSets(n);
+		final boolean[] hasEdges = new boolean[n];
+		forEachEdge(new EdgeConsumer() {
+			@Override
+			public void accept(int start, int end, int multiplicity) {
+				hasEdges[start] = true;
+				hasEdges[end] = true;
+				sets.union(start, end);
+			}
+		});
+		
+		int root = -1;
+		for (int v = 0; v < n; v++) {
+			if (hasEdges[v]) {
+				if (root == -1) {
+					root = sets.find(v);
+				} else if (sets.find(v) != root) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+	
+	@Override
+	public boolean isStronglyConnected() {
+		if (!isDirected()) {
+			return isConnected();
+		}
+		final int n = getNoOfVertices();
+		if (n <= 1) {
+			return true;
+		}
+		
+		// each vertex reachable from 0, and 0 reachable from each vertex 
+		// (searching from 0 the edges turned around)
+		final int[] offsets = new int[n + 1];
+		forEachEdge(new EdgeConsumer() {
+			@Override
+			public void accept(int start, int end, int multiplicity) {
+				offsets[end + 1]++;
+			}
+		});
+		for (int i = 0; i < n; i++) {
+			offsets[i + 1] += offsets[i];
+		}
+		final int[] sources = new int[offsets[n]];
+		final int[] next = Arrays.copyOf(offsets, n);
+		forEachEdge(new EdgeConsumer() {
+			@Override
+			public void accept(int start, int end, int multiplicity) {
+				sources[next[end]++] = start;
+			}
+		});
+		
+		final boolean[] isReached = new boolean[n];
+		final int[] queue = new int[n];
+		final int[] tail = new int[1];
+		EdgeConsumer reach = new EdgeConsumer() {
+			@Override
+			public void accept(int start, int end, int multiplicity) {
+				if (!isReached[end]) {
+					isReached[end] = true;
+					queue[tail[0]++] = end;
+				}
+			}
+		};
+		isReached[0] = true;
+		queue[tail[0]++] = 0;
+		for (int head = 0; head < tail[0]; head++) {
+			forEachNeighbor(queue[head], reach);
+		}
+		if (tail[0] < n) {
+			return false;
+		}
+		
+		Arrays.fill(isReached, false);
+		isReached[0] = true;
+		queue[0] = 0;
+		tail[0] = 1;
+		for (int head = 0; head < tail[0]; head++) {
+			int vertex = queue[head];
+			for (int k = offsets[vertex]; k < offsets[vertex + 1]; k++) {
+				reach.accept(vertex, sources[k], 1);
+			}
+		}
+		return tail[0] == n;
+	}
 }
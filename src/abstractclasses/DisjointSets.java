@@ -0,0 +1,100 @@
+package abstractclasses;
+
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+
+/**
+ *
+ * Disjoint sets of the integers 0 ... size - 1 (the indices of the vertices
+ * of a graph), as a forest in an array of parents, with union by rank and
+ * path compression: a sequence of operations takes nearly constant time
+ * per operation. The sets can grow, with new elements each in a set of its
+ * own, but never shrink.
+ *
+ * @author mmcasetti
+ *
+ */
+final class DisjointSets {
+	// the parent of each element, itself for a root
+	private int[] parents;
+	// an upper bound on the height of the tree under each root
+	private byte[] ranks;
+	private int size;
+	private int noOfSets;
+
+	DisjointSets(int size) {
+		Preconditions.checkArgument(size >= 0, "Negative size");
+		this.parents = new int[size];
+		this.ranks = new byte[size];
+		grow(size);
+	}
+
+	int size() {
+		return size;
+	}
+
+	int getNoOfSets() {
+		return noOfSets;
+	}
+
+	/**
+	 * Adds the elements size ... newSize - 1, each in a set of its own.
+	 */
+	void grow(int newSize) {
+		if (newSize <= size) {
+			return;
+		}
+		if (parents.length < newSize) {
+			int capacity = Math.max(newSize, 2 * parents.length);
+			parents = Arrays.copyOf(parents, capacity);
+			ranks = Arrays.copyOf(ranks, capacity);
+		}
+		for (int i = size; i < newSize; i++) {
+			parents[i] = i;
+		}
+		noOfSets += newSize - size;
+		size = newSize;
+	}
+
+	/**
+	 * @return the root of the set of element; the elements on the way then
+	 * all point to it
+	 */
+	int find(int element) {
+		Preconditions.checkElementIndex(element, size);
+		int root = element;
+		while (parents[root] != root) {
+			root = parents[root];
+		}
+		while (parents[element] != root) {
+			int parent = parents[element];
+			parents[element] = root;
+			element = parent;
+		}
+		return root;
+	}
+
+	/**
+	 * @return if the sets of first and second were different (and are now
+	 * one)
+	 */
+	boolean union(int first, int second) {
+		int firstRoot = find(first);
+		int secondRoot = find(second);
+		if (firstRoot == secondRoot) {
+			return false;
+		}
+		// the lower tree under the root of the higher one
+		if (ranks[firstRoot] < ranks[secondRoot]) {
+			parents[firstRoot] = secondRoot;
+		} else {
+			parents[secondRoot] = firstRoot;
+			if (ranks[firstRoot] == ranks[secondRoot]) {
+				ranks[firstRoot]++;
+			}
+		}
+		noOfSets--;
+		return true;
+	}
+}
@@ -0,0 +1,32 @@
+package factories;
+
+import graphimplementations.BitMatrixGraph;
+import graphimplementations.MatrixGraph;
+import graphimplementations.Vertex;
+
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+public class BitMatrixGraphFactory {
+
+	public BitMatrixGraph createBitMatrixGraph(List<Vertex> vertices, int[][] matrix, boolean isDirected) {
+		return new BitMatrixGraph(vertices, matrix, isDirected);
+	}
+
+	public BitMatrixGraph createBitMatrixGraph(int[][] matrix, boolean isDirected) {
+		return new BitMatrixGraph(Vertex.createVertices(matrix.length), matrix, isDirected);
+	}
+
+	/**
+	 * @param graph a simple graph (no loops, no multiple edges)
+	 * @return the same graph, as a BitMatrixGraph
+	 */
+	public BitMatrixGraph createBitMatrixGraph(MatrixGraph graph) {
+		List<Vertex> vertices = Lists.newArrayListWithCapacity(graph.getNoOfVertices());
+		for (int i = 0; i < graph.getNoOfVertices(); i++) {
+			vertices.add(graph.getVertexAt(i));
+		}
+		return new BitMatrixGraph(vertices, graph.getMatrix(), graph.isDirected());
+	}
+}
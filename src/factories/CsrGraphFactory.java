@@ -0,0 +1,198 @@
+package factories;
+
+import graphimplementations.CsrGraph;
+import graphimplementations.Edge;
+import graphimplementations.Vertex;
+import interfaces.EdgeConsumer;
+import interfaces.Graph;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multiset;
+
+public class CsrGraphFactory {
+
+	public CsrGraph createCsrGraph(List<Vertex> vertices, int[][] matrix, boolean isDirected) {
+		Preconditions.checkArgument(matrix.length == vertices.size(),
+				"Too many or too few vertices");
+		for (int i = 0; i < matrix.length; i++) {
+			Preconditions.checkArgument(matrix[i].length == matrix.length,
+					"Matrix not square");
+			if (!isDirected) {
+				for (int j = 0; j < matrix.length; j++) {
+					Preconditions.checkArgument(matrix[i][j] == matrix[j][i],
+							"Matrix not symmetric in undirected graph");
+				}
+			}
+		}
+
+		int[] offsets = new int[matrix.length + 1];
+		for (int i = 0; i < matrix.length; i++) {
+			offsets[i + 1] = offsets[i];
+			for (int j = 0; j < matrix.length; j++) {
+				if (matrix[i][j] > 0) {
+					offsets[i + 1]++;
+				}
+			}
+		}
+		int[] neighbors = new int[offsets[matrix.length]];
+		int[] multiplicities = new int[offsets[matrix.length]];
+		int position = 0;
+		for (int i = 0; i < matrix.length; i++) {
+			for (int j = 0; j < matrix.length; j++) {
+				if (matrix[i][j] > 0) {
+					neighbors[position] = j;
+					multiplicities[position] = matrix[i][j];
+					position++;
+				}
+			}
+		}
+		return new CsrGraph(vertices, offsets, neighbors, multiplicities, isDirected);
+	}
+
+	public CsrGraph createCsrGraph(int[][] matrix, boolean isDirected) {
+		List<Vertex> vertices = Vertex.createVertices(matrix.length);
+
+		return createCsrGraph(vertices, matrix, isDirected);
+	}
+
+	public CsrGraph createCsrGraph(List<Vertex> vertices, List<Multiset<Vertex>> adjacencyList, boolean isDirected) {
+		Preconditions.checkArgument(vertices.size() == adjacencyList.size(),
+				"Too many or too few vertices");
+		Map<Vertex, Integer> indices = indicesOf(vertices);
+
+		int[] offsets = new int[vertices.size() + 1];
+		for (int i = 0; i < adjacencyList.size(); i++) {
+			offsets[i + 1] = offsets[i] + adjacencyList.get(i).elementSet().size();
+		}
+		long[] entries = new long[offsets[vertices.size()]];
+		int position = 0;
+		for (int i = 0; i < adjacencyList.size(); i++) {
+			for (Multiset.Entry<Vertex> entry : adjacencyList.get(i).entrySet()) {
+				Integer index = indices.get(entry.getElement());
+				Preconditions.checkArgument(index != null, "Vertex in list not in vertices");
+				entries[position++] = pack(index, entry.getCount());
+			}
+		}
+		return fromEntries(vertices, offsets, entries, isDirected);
+	}
+
+	public CsrGraph createCsrGraph(Set<Vertex> vertices, Multiset<Edge> undirectedEdges, Multiset<Edge> directedEdges) {
+		if (!undirectedEdges.isEmpty()) {
+			Preconditions.checkArgument(directedEdges.isEmpty(), "Choose between directed and undirected graph.");
+		}
+		if (!directedEdges.isEmpty()) {
+			Preconditions.checkArgument(undirectedEdges.isEmpty(), "Choose between directed and undirected graph.");
+		}
+		for (Edge edge : undirectedEdges.elementSet()) {
+			Preconditions.checkArgument(!edge.isDirected(),
+					"Directed edge in edges");
+		}
+		for (Edge edge : directedEdges.elementSet()) {
+			Preconditions.checkArgument(edge.isDirected(),
+					"Nondirected edge in directed edges");
+		}
+
+		List<Vertex> listOfVertices = Lists.newArrayList(vertices);
+		Map<Vertex, Integer> indices = indicesOf(listOfVertices);
+		boolean isDirected = undirectedEdges.isEmpty();
+		Multiset<Edge> edges = isDirected ? directedEdges : undirectedEdges;
+
+		// first count the entries of each row, then fill them in
+		int[] offsets = new int[listOfVertices.size() + 1];
+		for (Edge edge : edges.elementSet()) {
+			Integer start = indices.get(edge.getStart());
+			Integer end = indices.get(edge.getEnd());
+			Preconditions.checkArgument(start != null && end != null,
+					"Endpoints of edges not in vertices");
+			offsets[start + 1]++;
+			if (!isDirected && !edge.isLoop()) {
+				offsets[end + 1]++;
+			}
+		}
+		for (int i = 0; i < listOfVertices.size(); i++) {
+			offsets[i + 1] += offsets[i];
+		}
+		long[] entries = new long[offsets[listOfVertices.size()]];
+		int[] next = Arrays.copyOf(offsets, listOfVertices.size());
+		for (Multiset.Entry<Edge> entry : edges.entrySet()) {
+			int start = indices.get(entry.getElement().getStart());
+			int end = indices.get(entry.getElement().getEnd());
+			entries[next[start]++] = pack(end, entry.getCount());
+			if (!isDirected && start != end) {
+				entries[next[end]++] = pack(start, entry.getCount());
+			}
+		}
+		return fromEntries(listOfVertices, offsets, entries, isDirected);
+	}
+
+	/**
+	 * @param graph any representation of a graph
+	 * @return the same graph, as a CsrGraph
+	 */
+	public CsrGraph createCsrGraph(Graph graph) {
+		if (graph instanceof CsrGraph) {
+			return (CsrGraph) graph;
+		}
+		int n = graph.getNoOfVertices();
+		List<Vertex> vertices = Lists.newArrayListWithCapacity(n);
+		final int[] offsets = new int[n + 1];
+		// the rows one after the other, each counted in offsets as it is read
+		final long[][] entries = { new long[16] };
+		for (int i = 0; i < n; i++) {
+			vertices.add(graph.getVertexAt(i));
+			offsets[i + 1] = offsets[i];
+			graph.forEachNeighbor(i, new EdgeConsumer() {
+				@Override
+				public void accept(int start, int end, int multiplicity) {
+					int position = offsets[start + 1]++;
+					if (position == entries[0].length) {
+						entries[0] = Arrays.copyOf(entries[0], 2 * position);
+					}
+					entries[0][position] = pack(end, multiplicity);
+				}
+			});
+		}
+		return fromEntries(vertices, offsets, Arrays.copyOf(entries[0], offsets[n]), graph.isDirected());
+	}
+
+	private static Map<Vertex, Integer> indicesOf(List<Vertex> vertices) {
+		Map<Vertex, Integer> indices = Maps.newHashMapWithExpectedSize(vertices.size());
+		for (int i = 0; i < vertices.size(); i++) {
+			indices.put(vertices.get(i), i);
+		}
+		return indices;
+	}
+
+	/**
+	 * A (neighbor, multiplicity) entry packed in a long, so that sorting the
+	 * longs sorts the entries by neighbor.
+	 */
+	private static long pack(int neighbor, int multiplicity) {
+		return ((long) neighbor << 32) | (multiplicity & 0xFFFFFFFFL);
+	}
+
+	/**
+	 *
+	 * @param offsets: the entries of row i are entries[offsets[i]] ...
+	 *        entries[offsets[i + 1] - 1], unsorted
+	 */
+	private static CsrGraph fromEntries(List<Vertex> vertices, int[] offsets, long[] entries, boolean isDirected) {
+		int[] neighbors = new int[entries.length];
+		int[] multiplicities = new int[entries.length];
+		for (int i = 0; i < vertices.size(); i++) {
+			Arrays.sort(entries, offsets[i], offsets[i + 1]);
+		}
+		for (int k = 0; k < entries.length; k++) {
+			neighbors[k] = (int) (entries[k] >>> 32);
+			multiplicities[k] = (int) entries[k];
+		}
+		return new CsrGraph(vertices, offsets, neighbors, multiplicities, isDirected);
+	}
+}
@@ -10,7 +10,6 @@ import graphimplementations.Vertex;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.HashMultiset;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.google.common.collect.Multiset;
 
@@ -56,11 +55,7 @@ public class EdgesGraphFactory {
 			}
 		}
 		
-		List<Vertex> vertices = Lists.newArrayList();
-		for (int i = 0; i < matrix.length; i++) { 
-			Vertex v = new Vertex();
-			vertices.add(v);
-		}
+		List<Vertex> vertices = Vertex.createVertices(matrix.length);
 		
 		Set<Vertex> verticesSet = Sets.newHashSet(vertices);		
 
@@ -70,16 +65,16 @@ public class EdgesGraphFactory {
 		if (!isDirected) {
 			for (int i = 0; i < matrix.length; i++) {
 				for (int j = 0; j <= i; j++) {
-					Edge edge = Edge.between(vertices.get(i)).and(vertices.get(j));
+					Edge edge = Edge.undirected(vertices.get(i), vertices.get(j));
 					undirectedEdges.add(edge, matrix[i][j]);
 				}
 			}
 		} else {
 			for (int i = 0; i < matrix.length; i++) {
-				Edge loop = Edge.from(vertices.get(i)).to(vertices.get(i));
+				Edge loop = Edge.directed(vertices.get(i), vertices.get(i));
 				directedEdges.add(loop, matrix[i][i]);
 				for (int j = 0; j < matrix.length; j++) {
-					Edge edge = Edge.from(vertices.get(i)).to(vertices.get(j));
+					Edge edge = Edge.directed(vertices.get(i), vertices.get(j));
 					directedEdges.add(edge, matrix[i][j]);
 				}
 			}
@@ -110,16 +105,16 @@ public class EdgesGraphFactory {
 		if (!isDirected) {
 			for (int i = 0; i < matrix.length; i++) {
 				for (int j = 0; j <= i; j++) {
-					Edge edge = Edge.between(vertices.get(i)).and(vertices.get(j));
+					Edge edge = Edge.undirected(vertices.get(i), vertices.get(j));
 					undirectedEdges.add(edge, matrix[i][j]);
 				}
 			}
 		} else {
 			for (int i = 0; i < matrix.length; i++) {
-				Edge loop = Edge.from(vertices.get(i)).to(vertices.get(i));
+				Edge loop = Edge.directed(vertices.get(i), vertices.get(i));
 				directedEdges.add(loop, matrix[i][i]);
 				for (int j = 0; j < matrix.length; j++) {
-					Edge edge = Edge.from(vertices.get(i)).to(vertices.get(j));
+					Edge edge = Edge.directed(vertices.get(i), vertices.get(j));
 					directedEdges.add(edge, matrix[i][j]);
 				}
 			}
@@ -150,7 +145,7 @@ public class EdgesGraphFactory {
 				for (Vertex vertex : adjacencyList.get(i)) {
 					if (vertices.indexOf(vertex) <= i) {
 						Vertex otherVertex = vertices.get(i);
-						Edge edge = Edge.between(vertex).and(otherVertex);
+						Edge edge = Edge.undirected(vertex, otherVertex);
 						undirectedEdges.add(edge);					
 					}
 				}
@@ -159,7 +154,7 @@ public class EdgesGraphFactory {
 			for (int i = 0; i < adjacencyList.size(); i++) {
 				for (Vertex vertex : adjacencyList.get(i)) {
 					Vertex otherVertex = vertices.get(i);
-					Edge edge = Edge.from(vertex).to(otherVertex);
+					Edge edge = Edge.directed(vertex, otherVertex);
 					directedEdges.add(edge);					
 				}
 			}			
@@ -41,11 +41,7 @@ public class ListGraphFactory {
 			}
 		}
 
-		List<Vertex> vertices = Lists.newArrayList();
-		for (int i = 0; i < matrix.length; i++) {
-			Vertex v = new Vertex();
-			vertices.add(v);
-		}
+		List<Vertex> vertices = Vertex.createVertices(matrix.length);
 		
 		ArrayList<Multiset<Vertex>> adjacencyList = Lists.newArrayList();
 		for (int i = 0; i < matrix.length; i++) {
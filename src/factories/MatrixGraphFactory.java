@@ -1,5 +1,6 @@
 package factories;
 
+import graphimplementations.BitMatrixGraph;
 import graphimplementations.Edge;
 import graphimplementations.MatrixGraph;
 import graphimplementations.Vertex;
@@ -30,6 +31,27 @@ public class MatrixGraphFactory {
 		return new MatrixGraph(vertices, matrix, isDirected);
 	}
 
+	/**
+	 * @return the graph, with the matrix stored in the given layout and cells 
+	 * (see MatrixGraph.Layout)
+	 */
+	public MatrixGraph createMatrixGraph(List<Vertex> vertices, int[][] matrix, boolean isDirected,
+			MatrixGraph.Layout layout, MatrixGraph.CellType cellType) {
+		return new MatrixGraph(vertices, matrix, isDirected, layout, cellType);
+	}
+
+	/**
+	 * @return the graph with the given vertices and edges, stored in the 
+	 * given layout and cells without building a whole matrix first (so that 
+	 * a sparse graph with many vertices fits in memory with Layout.SPARSE)
+	 */
+	public MatrixGraph createMatrixGraph(List<Vertex> vertices, Multiset<Edge> edges, boolean isDirected,
+			MatrixGraph.Layout layout, MatrixGraph.CellType cellType) {
+		MatrixGraph graph = new MatrixGraph(vertices, isDirected, layout, cellType);
+		graph.addEdges(edges);
+		return graph;
+	}
+
 	public MatrixGraph createMatrixGraph(int[][] matrix, boolean isDirected) {
 		for (int i = 0; i < matrix.length; i++) {
 			Preconditions.checkArgument(matrix[i].length == matrix.length,
@@ -42,11 +64,7 @@ public class MatrixGraphFactory {
 			}
 		}		
 		
-		List<Vertex> vertices = Lists.newArrayList();
-		for (int i = 0; i < matrix.length; i++) {
-			Vertex v = new Vertex();
-			vertices.add(v);
-		}
+		List<Vertex> vertices = Vertex.createVertices(matrix.length);
 		
 		return new MatrixGraph(vertices, matrix, isDirected);
 	}
@@ -137,4 +155,15 @@ public class MatrixGraphFactory {
 		
 		return new MatrixGraph(vertices, adjacencyMatrix, isDirected);
 	}
+
+	/**
+	 * @return the same graph, as a MatrixGraph
+	 */
+	public MatrixGraph createMatrixGraph(BitMatrixGraph graph) {
+		List<Vertex> vertices = Lists.newArrayListWithCapacity(graph.getNoOfVertices());
+		for (int i = 0; i < graph.getNoOfVertices(); i++) {
+			vertices.add(graph.getVertexAt(i));
+		}
+		return new MatrixGraph(vertices, graph.getMatrix(), graph.isDirected());
+	}
 }
@@ -0,0 +1,79 @@
+package factories;
+
+import graphimplementations.OffHeapArena;
+import graphimplementations.OffHeapCsrGraph;
+import graphimplementations.Vertex;
+import interfaces.EdgeConsumer;
+import interfaces.Graph;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+public class OffHeapCsrGraphFactory {
+
+	/**
+	 * @param graph any representation of a graph
+	 * @param arena where the rows are allocated
+	 * @return the same graph, as an OffHeapCsrGraph (the rows are copied
+	 * from forEachNeighbor one at a time, so that only one row at a time is
+	 * on the heap)
+	 */
+	public OffHeapCsrGraph createOffHeapCsrGraph(Graph graph, OffHeapArena arena) {
+		int n = graph.getNoOfVertices();
+		List<Vertex> vertices = Lists.newArrayListWithCapacity(n);
+		for (int i = 0; i < n; i++) {
+			vertices.add(graph.getVertexAt(i));
+		}
+
+		// first count the entries of each row, then fill them in
+		final IntBuffer offsets = arena.allocateInts(n + 1);
+		final long[] length = new long[1];
+		for (int i = 0; i < n; i++) {
+			final int row = i;
+			graph.forEachNeighbor(i, new EdgeConsumer() {
+				@Override
+				public void accept(int start, int end, int multiplicity) {
+					offsets.put(row + 1, offsets.get(row + 1) + 1);
+					length[0]++;
+				}
+			});
+			offsets.put(i + 1, offsets.get(i + 1) + offsets.get(i));
+		}
+		Preconditions.checkArgument(length[0] <= OffHeapArena.MAX_INTS,
+				"Too many edges for one buffer");
+		IntBuffer neighbors = arena.allocateInts((int) length[0]);
+		IntBuffer multiplicities = arena.allocateInts((int) length[0]);
+		final long[][] entries = { new long[16] };
+		final int[] size = new int[1];
+		for (int i = 0; i < n; i++) {
+			size[0] = 0;
+			graph.forEachNeighbor(i, new EdgeConsumer() {
+				@Override
+				public void accept(int start, int end, int multiplicity) {
+					if (size[0] == entries[0].length) {
+						entries[0] = Arrays.copyOf(entries[0], 2 * size[0]);
+					}
+					entries[0][size[0]++] = pack(end, multiplicity);
+				}
+			});
+			Arrays.sort(entries[0], 0, size[0]);
+			for (int k = 0; k < size[0]; k++) {
+				neighbors.put(offsets.get(i) + k, (int) (entries[0][k] >>> 32));
+				multiplicities.put(offsets.get(i) + k, (int) entries[0][k]);
+			}
+		}
+		return new OffHeapCsrGraph(vertices, offsets, neighbors, multiplicities, graph.isDirected(), arena);
+	}
+
+	/**
+	 * A (neighbor, multiplicity) entry packed in a long, so that sorting the
+	 * longs sorts the entries by neighbor.
+	 */
+	private static long pack(int neighbor, int multiplicity) {
+		return ((long) neighbor << 32) | (multiplicity & 0xFFFFFFFFL);
+	}
+}
@@ -0,0 +1,293 @@
+package graphimplementations;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+
+/**
+ *
+ * A row of an adjacency list: the indices of the neighbours of a vertex,
+ * sorted, and in a parallel array the number of edges to each of them.
+ * The arrays grow (doubling) as new neighbours are added.
+ *
+ * @author mmcasetti
+ *
+ */
+final class AdjacencyRow {
+	private static final int[] EMPTY = new int[0];
+
+	private int[] neighbors;
+	private int[] multiplicities;
+	private int size;
+	private int degree;
+
+	AdjacencyRow() {
+		this.neighbors = EMPTY;
+		this.multiplicities = EMPTY;
+	}
+
+	private AdjacencyRow(int[] neighbors, int[] multiplicities, int size, int degree) {
+		this.neighbors = neighbors;
+		this.multiplicities = multiplicities;
+		this.size = size;
+		this.degree = degree;
+	}
+
+	/**
+	 *
+	 * @param entries: (neighbor, multiplicity) pairs packed as
+	 * neighbor << 32 | multiplicity, in any order, possibly repeated.
+	 * The array is sorted in place.
+	 * @return the row with those entries
+	 */
+	static AdjacencyRow fromEntries(long[] entries, int length) {
+		Arrays.sort(entries, 0, length);
+		int[] neighbors = new int[length];
+		int[] multiplicities = new int[length];
+		int size = 0;
+		int degree = 0;
+		for (int k = 0; k < length; k++) {
+			int neighbor = (int) (entries[k] >>> 32);
+			int multiplicity = (int) entries[k];
+			Preconditions.checkArgument(multiplicity >= 0, "Negative multiplicity");
+			if (multiplicity == 0) {
+				continue;
+			}
+			if (size > 0 && neighbors[size - 1] == neighbor) {
+				multiplicities[size - 1] += multiplicity;
+			} else {
+				neighbors[size] = neighbor;
+				multiplicities[size] = multiplicity;
+				size++;
+			}
+			degree += multiplicity;
+		}
+		return new AdjacencyRow(neighbors, multiplicities, size, degree);
+	}
+
+	static long pack(int neighbor, int multiplicity) {
+		return ((long) neighbor << 32) | (multiplicity & 0xFFFFFFFFL);
+	}
+
+	AdjacencyRow copy() {
+		return new AdjacencyRow(Arrays.copyOf(neighbors, size),
+				Arrays.copyOf(multiplicities, size), size, degree);
+	}
+
+	/**
+	 * @return number of different neighbours
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return number of edges in the row (sum of the multiplicities)
+	 */
+	int getDegree() {
+		return degree;
+	}
+
+	/**
+	 * @return the k-th neighbour, in increasing order
+	 */
+	int getNeighbor(int k) {
+		return neighbors[k];
+	}
+
+	/**
+	 * @return the multiplicity of the k-th neighbour
+	 */
+	int getMultiplicity(int k) {
+		return multiplicities[k];
+	}
+
+	/**
+	 *
+	 * @param neighbor
+	 * @return number of edges to neighbor (binary search)
+	 */
+	int count(int neighbor) {
+		int position = Arrays.binarySearch(neighbors, 0, size, neighbor);
+		return (position >= 0) ? multiplicities[position] : 0;
+	}
+
+	void add(int neighbor, int times) {
+		Preconditions.checkArgument(times >= 0, "Negative multiplicity");
+		if (times == 0) {
+			return;
+		}
+		int position = Arrays.binarySearch(neighbors, 0, size, neighbor);
+		if (position >= 0) {
+			multiplicities[position] += times;
+		} else {
+			position = -position - 1;
+			if (size == neighbors.length) {
+				int capacity = Math.max(4, size * 2);
+				neighbors = Arrays.copyOf(neighbors, capacity);
+				multiplicities = Arrays.copyOf(multiplicities, capacity);
+			}
+			System.arraycopy(neighbors, position, neighbors, position + 1, size - position);
+			System.arraycopy(multiplicities, position, multiplicities, position + 1, size - position);
+			neighbors[position] = neighbor;
+			multiplicities[position] = times;
+			size++;
+		}
+		degree += times;
+	}
+
+	/**
+	 * Removes up to times edges to neighbor.
+	 *
+	 * @return number of edges removed
+	 */
+	int remove(int neighbor, int times) {
+		int position = Arrays.binarySearch(neighbors, 0, size, neighbor);
+		if (position < 0) {
+			return 0;
+		}
+		int removed = Math.min(times, multiplicities[position]);
+		multiplicities[position] -= removed;
+		degree -= removed;
+		if (multiplicities[position] == 0) {
+			System.arraycopy(neighbors, position + 1, neighbors, position, size - position - 1);
+			System.arraycopy(multiplicities, position + 1, multiplicities, position, size - position - 1);
+			size--;
+		}
+		return removed;
+	}
+
+	/**
+	 * Adds (sign 1) or removes (sign -1) the given edges, merging them with
+	 * the row in one pass.
+	 *
+	 * @param entries: (neighbor, multiplicity) pairs packed as in fromEntries,
+	 * entries[from] ... entries[to - 1]; this range is sorted in place
+	 */
+	void merge(long[] entries, int from, int to, int sign) {
+		Arrays.sort(entries, from, to);
+		int[] newNeighbors = new int[size + to - from];
+		int[] newMultiplicities = new int[size + to - from];
+		int newSize = 0;
+		int k = 0;
+		int h = from;
+		while (k < size || h < to) {
+			int neighbor;
+			int multiplicity = 0;
+			if (h == to || (k < size && neighbors[k] < (int) (entries[h] >>> 32))) {
+				neighbor = neighbors[k];
+			} else {
+				neighbor = (int) (entries[h] >>> 32);
+			}
+			if (k < size && neighbors[k] == neighbor) {
+				multiplicity = multiplicities[k++];
+			}
+			while (h < to && (int) (entries[h] >>> 32) == neighbor) {
+				int times = (int) entries[h++];
+				multiplicity += sign * times;
+				degree += sign * times;
+			}
+			Preconditions.checkArgument(multiplicity >= 0, "Edge not in graph.");
+			if (multiplicity > 0) {
+				newNeighbors[newSize] = neighbor;
+				newMultiplicities[newSize] = multiplicity;
+				newSize++;
+			}
+		}
+		this.neighbors = newNeighbors;
+		this.multiplicities = newMultiplicities;
+		this.size = newSize;
+	}
+
+	/**
+	 * Adds (sign 1) or removes (sign -1) times[e] edges from starts[e] to
+	 * ends[e], for e < length, to the rows: the edges are grouped by row,
+	 * then each row is merged once.
+	 */
+	static void mergeIntoRows(List<AdjacencyRow> rows, int[] starts, int[] ends,
+			int[] times, int length, int sign) {
+		int[] offsets = new int[rows.size() + 1];
+		for (int e = 0; e < length; e++) {
+			offsets[starts[e] + 1]++;
+		}
+		for (int i = 0; i < rows.size(); i++) {
+			offsets[i + 1] += offsets[i];
+		}
+		long[] entries = new long[length];
+		int[] next = Arrays.copyOf(offsets, rows.size());
+		for (int e = 0; e < length; e++) {
+			entries[next[starts[e]]++] = pack(ends[e], times[e]);
+		}
+		for (int i = 0; i < rows.size(); i++) {
+			if (offsets[i] < offsets[i + 1]) {
+				rows.get(i).merge(entries, offsets[i], offsets[i + 1], sign);
+			}
+		}
+	}
+
+	/**
+	 * After some vertices have been removed from the graph: drops the edges
+	 * to them and gives the others their new index.
+	 *
+	 * @param newIndices: for each old index, the new one, or -1 if the vertex
+	 * has been removed (the order of the others does not change)
+	 */
+	void renumber(int[] newIndices) {
+		int newSize = 0;
+		for (int k = 0; k < size; k++) {
+			int newIndex = newIndices[neighbors[k]];
+			if (newIndex < 0) {
+				degree -= multiplicities[k];
+			} else {
+				neighbors[newSize] = newIndex;
+				multiplicities[newSize] = multiplicities[k];
+				newSize++;
+			}
+		}
+		size = newSize;
+	}
+
+	/**
+	 * After the vertex at the given index has been removed from the graph:
+	 * drops the edges to it and moves the following indices back by one.
+	 */
+	void removeIndex(int index) {
+		remove(index, Integer.MAX_VALUE);
+		int position = Arrays.binarySearch(neighbors, 0, size, index);
+		for (int k = -position - 1; k < size; k++) {
+			neighbors[k]--;
+		}
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) {
+			return true;
+		}
+		if (!(obj instanceof AdjacencyRow)) {
+			return false;
+		}
+		AdjacencyRow otherRow = (AdjacencyRow) obj;
+		if (this.size != otherRow.size) {
+			return false;
+		}
+		for (int k = 0; k < size; k++) {
+			if (this.neighbors[k] != otherRow.neighbors[k]
+					|| this.multiplicities[k] != otherRow.multiplicities[k]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = 1;
+		for (int k = 0; k < size; k++) {
+			hash = 31 * hash + neighbors[k];
+			hash = 31 * hash + multiplicities[k];
+		}
+		return hash;
+	}
+}
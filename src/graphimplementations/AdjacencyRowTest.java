@@ -0,0 +1,95 @@
+package graphimplementations;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class AdjacencyRowTest {
+
+	@Test
+	public void add_keepsNeighborsSorted() {
+		AdjacencyRow row = new AdjacencyRow();
+		row.add(5, 1);
+		row.add(2, 2);
+		row.add(7, 1);
+		row.add(2, 1);
+		
+		assertEquals(3, row.size());
+		assertEquals(2, row.getNeighbor(0));
+		assertEquals(5, row.getNeighbor(1));
+		assertEquals(7, row.getNeighbor(2));
+		assertEquals(3, row.count(2));
+		assertEquals(5, row.getDegree());
+	}
+	
+	@Test
+	public void remove_dropsEmptyEntries() {
+		AdjacencyRow row = new AdjacencyRow();
+		row.add(1, 2);
+		row.add(3, 1);
+		
+		assertEquals(1, row.remove(3, 1));
+		assertEquals(0, row.remove(3, 1));
+		assertEquals(1, row.size());
+		assertEquals(0, row.count(3));
+		assertEquals(2, row.getDegree());
+	}
+	
+	@Test
+	public void fromEntries_mergesRepeatedNeighbors() {
+		long[] entries = { AdjacencyRow.pack(4, 1), AdjacencyRow.pack(0, 2), AdjacencyRow.pack(4, 3) };
+		AdjacencyRow row = AdjacencyRow.fromEntries(entries, entries.length);
+		
+		assertEquals(2, row.size());
+		assertEquals(2, row.count(0));
+		assertEquals(4, row.count(4));
+		assertEquals(6, row.getDegree());
+	}
+	
+	@Test
+	public void removeIndex_shiftsFollowingNeighbors() {
+		AdjacencyRow row = new AdjacencyRow();
+		row.add(0, 1);
+		row.add(2, 2);
+		row.add(4, 1);
+		row.removeIndex(2);
+		
+		assertEquals(2, row.size());
+		assertEquals(1, row.count(0));
+		assertEquals(1, row.count(3));
+		assertEquals(2, row.getDegree());
+	}
+	
+	@Test
+	public void merge_addsAndRemoves() {
+		AdjacencyRow row = new AdjacencyRow();
+		row.add(1, 2);
+		row.add(3, 1);
+		long[] entries = { AdjacencyRow.pack(4, 1), AdjacencyRow.pack(0, 2), AdjacencyRow.pack(1, 1) };
+		row.merge(entries, 0, 3, 1);
+		
+		assertEquals(4, row.size());
+		assertEquals(3, row.count(1));
+		assertEquals(7, row.getDegree());
+		
+		long[] removed = { AdjacencyRow.pack(1, 3), AdjacencyRow.pack(4, 1) };
+		row.merge(removed, 0, 2, -1);
+		assertEquals(2, row.size());
+		assertEquals(0, row.getNeighbor(0));
+		assertEquals(3, row.getNeighbor(1));
+		assertEquals(3, row.getDegree());
+	}
+	
+	@Test
+	public void renumber_dropsRemovedVertices() {
+		AdjacencyRow row = new AdjacencyRow();
+		row.add(0, 1);
+		row.add(2, 2);
+		row.add(3, 1);
+		row.renumber(new int[] { 0, 1, -1, 2 });
+		
+		assertEquals(2, row.size());
+		assertEquals(2, row.getNeighbor(1));
+		assertEquals(2, row.getDegree());
+	}
+}
@@ -0,0 +1,570 @@
+package graphimplementations;
+
+import interfaces.EdgeConsumer;
+import interfaces.Graph;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import abstractclasses.AbstractGraph;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Sets;
+
+/**
+ *
+ * A class to implement a simple graph (no loops, at most one edge between
+ * two vertices, or one in each direction if directed) as an adjacency matrix
+ * of bits: the row of each vertex is an array of longs, and bit j of it
+ * (bit j % 64 of the long j / 64) is set if there is an edge to the j-th
+ * vertex. Degrees and common neighbours are counted 64 vertices at a time
+ * with Long.bitCount.
+ *
+ * There are spare rows (and bits in each row), whose number doubles when 
+ * they run out, so adding a vertex does not copy the rows every time.
+ *
+ * @author mmcasetti
+ *
+ */
+
+public class BitMatrixGraph extends AbstractGraph {
+	private List<Vertex> vertices;
+	private Map<Vertex, Integer> indices;
+	// one row per vertex, then the spare ones (all 0)
+	private long[][] rows;
+	private boolean isDirected;
+
+	/**
+	 * @param matrix: entries 0 or 1, and 0 on the diagonal
+	 */
+	public BitMatrixGraph(List<Vertex> vertices, int[][] matrix, boolean isDirected) {
+		Preconditions.checkArgument(matrix.length == vertices.size(),
+				"Too many or too few vertices");
+		for (int i = 0; i < matrix.length; i++) {
+			Preconditions.checkArgument(matrix[i].length == matrix.length,
+					"Matrix not square");
+			Preconditions.checkArgument(matrix[i][i] == 0, "Loop in simple graph");
+			for (int j = 0; j < matrix.length; j++) {
+				Preconditions.checkArgument(matrix[i][j] == 0 || matrix[i][j] == 1,
+						"Multiple edges in simple graph");
+				if (!isDirected) {
+					Preconditions.checkArgument(matrix[i][j] == matrix[j][i],
+							"Matrix not symmetric in undirected graph");
+				}
+			}
+		}
+
+		this.vertices = Lists.newArrayList(vertices);
+		this.indices = Maps.newHashMapWithExpectedSize(vertices.size());
+		for (int i = 0; i < vertices.size(); i++) {
+			indices.put(vertices.get(i), i);
+		}
+		Preconditions.checkArgument(indices.size() == vertices.size(), "Repeated vertex");
+		this.rows = new long[vertices.size()][words(vertices.size())];
+		for (int i = 0; i < matrix.length; i++) {
+			for (int j = 0; j < matrix.length; j++) {
+				if (matrix[i][j] == 1) {
+					setBit(rows[i], j);
+				}
+			}
+		}
+		this.isDirected = isDirected;
+	}
+
+	/**
+	 * @return number of longs for n bits
+	 */
+	private static int words(int n) {
+		return (n + 63) >>> 6;
+	}
+
+	private static boolean getBit(long[] row, int j) {
+		return (row[j >>> 6] & (1L << j)) != 0;
+	}
+
+	private static void setBit(long[] row, int j) {
+		row[j >>> 6] |= 1L << j;
+	}
+
+	private static void clearBit(long[] row, int j) {
+		row[j >>> 6] &= ~(1L << j);
+	}
+
+	/**
+	 * Drops bit index from the row: the following bits move back by one.
+	 */
+	private static void removeBit(long[] row, int index) {
+		int w = index >>> 6;
+		long lowBits = (1L << index) - 1;
+		row[w] = (row[w] & lowBits) | ((row[w] >>> 1) & ~lowBits);
+		for (int k = w + 1; k < row.length; k++) {
+			row[k - 1] |= row[k] << 63;
+			row[k] >>>= 1;
+		}
+	}
+
+	private static int bitCount(long[] row) {
+		int count = 0;
+		for (long word : row) {
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	@Override
+	public Set<Vertex> getVertices() {
+		return Collections.unmodifiableSet(indices.keySet());
+	}
+
+	@Override
+	public int getNoOfVertices() {
+		return vertices.size();
+	}
+
+	@Override
+	public boolean isDirected() {
+		return isDirected;
+	}
+
+	@Override
+	public int getIndexOf(Vertex vertex) {
+		Integer index = indices.get(vertex);
+		Preconditions.checkArgument(index != null, "Vertex not in graph.");
+		return index;
+	}
+
+	@Override
+	public Vertex getVertexAt(int index) {
+		return vertices.get(index);
+	}
+
+	/**
+	 *
+	 * @return if there is an edge between start and end (from start to end,
+	 * if the graph is directed)
+	 */
+	public boolean containsEdge(Vertex start, Vertex end) {
+		return getBit(rows[getIndexOf(start)], getIndexOf(end));
+	}
+
+	/**
+	 * @return the adjacency matrix (a copy, entries 0 or 1)
+	 */
+	public int[][] getMatrix() {
+		int[][] matrix = new int[getNoOfVertices()][getNoOfVertices()];
+		for (int i = 0; i < getNoOfVertices(); i++) {
+			for (int j = 0; j < getNoOfVertices(); j++) {
+				matrix[i][j] = getBit(rows[i], j) ? 1 : 0;
+			}
+		}
+		return matrix;
+	}
+
+	@Override
+	public void forEachEdge(EdgeConsumer consumer) {
+		for (int i = 0; i < getNoOfVertices(); i++) {
+			long[] row = rows[i];
+			for (int k = 0; k < row.length; k++) {
+				long word = row[k];
+				while (word != 0) {
+					int j = (k << 6) + Long.numberOfTrailingZeros(word);
+					word &= word - 1;
+					if (isDirected || i < j) {
+						consumer.accept(i, j, 1);
+					}
+				}
+			}
+		}
+	}
+
+	@Override
+	public void forEachNeighbor(int index, EdgeConsumer consumer) {
+		long[] row = rows[index];
+		for (int k = 0; k < row.length; k++) {
+			long word = row[k];
+			while (word != 0) {
+				consumer.accept(index, (k << 6) + Long.numberOfTrailingZeros(word), 1);
+				word &= word - 1;
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @return number of vertices with an edge from both v and w (at both, if
+	 * the graph is undirected)
+	 */
+	public int getNoOfCommonNeighbors(Vertex v, Vertex w) {
+		long[] rowV = rows[getIndexOf(v)];
+		long[] rowW = rows[getIndexOf(w)];
+		int count = 0;
+		for (int k = 0; k < rowV.length; k++) {
+			count += Long.bitCount(rowV[k] & rowW[k]);
+		}
+		return count;
+	}
+
+	/**
+	 *
+	 * @return the vertices with an edge from both v and w (at both, if the
+	 * graph is undirected)
+	 */
+	public Set<Vertex> getCommonNeighbors(Vertex v, Vertex w) {
+		long[] rowV = rows[getIndexOf(v)];
+		long[] rowW = rows[getIndexOf(w)];
+		Set<Vertex> common = Sets.newHashSet();
+		for (int k = 0; k < rowV.length; k++) {
+			long word = rowV[k] & rowW[k];
+			while (word != 0) {
+				common.add(vertices.get((k << 6) + Long.numberOfTrailingZeros(word)));
+				word &= word - 1;
+			}
+		}
+		return common;
+	}
+
+	@Override
+	public Multiset<Edge> getUndirectedEdges() {
+		final Multiset<Edge> edges = HashMultiset.create();
+		if (!isDirected()) {
+			forEachEdge(new EdgeConsumer() {
+				@Override
+				public void accept(int start, int end, int multiplicity) {
+					edges.add(Edge.undirected(vertices.get(start), vertices.get(end)));
+				}
+			});
+		}
+		return edges;
+	}
+
+	@Override
+	public Multiset<Edge> getDirectedEdges() {
+		final Multiset<Edge> edges = HashMultiset.create();
+		if (isDirected()) {
+			forEachEdge(new EdgeConsumer() {
+				@Override
+				public void accept(int start, int end, int multiplicity) {
+					edges.add(Edge.directed(vertices.get(start), vertices.get(end)));
+				}
+			});
+		}
+		return edges;
+	}
+
+	/**
+	 * @return the same graph, undirected: a MatrixGraph, since two opposite
+	 *         directed edges become two edges between the same vertices
+	 */
+	@Override
+	public Graph makeUndirected() {
+		if (!isDirected()) {
+			return this;
+		}
+		int[][] matrix = getMatrix();
+		int[][] newMatrix = new int[matrix.length][matrix.length];
+		for (int i = 0; i < matrix.length; i++) {
+			for (int j = 0; j < matrix.length; j++) {
+				newMatrix[i][j] = matrix[i][j] + matrix[j][i];
+			}
+		}
+		return new MatrixGraph(vertices, newMatrix, false);
+	}
+
+	/**
+	 * @return the same graph, directed: each edge becomes two opposite
+	 *         directed edges
+	 */
+	@Override
+	public Graph makeDirected() {
+		if (isDirected()) {
+			return this;
+		}
+		return new BitMatrixGraph(vertices, getMatrix(), true);
+	}
+
+	@Override
+	public Multiset<Edge> getEdgesAt(Vertex vertex) {
+		Preconditions.checkArgument(!isDirected(), "Use getEdgesFrom and getEdgesTo.");
+
+		return getEdgesOfRow(vertex, false);
+	}
+
+	@Override
+	public Multiset<Edge> getEdgesFrom(Vertex vertex) {
+		Preconditions.checkArgument(isDirected(), "Use getEdgesAt.");
+
+		return getEdgesOfRow(vertex, true);
+	}
+
+	private Multiset<Edge> getEdgesOfRow(final Vertex vertex, final boolean directed) {
+		final Multiset<Edge> edges = HashMultiset.create();
+		forEachNeighbor(getIndexOf(vertex), new EdgeConsumer() {
+			@Override
+			public void accept(int start, int end, int multiplicity) {
+				Vertex other = vertices.get(end);
+				edges.add(directed ? Edge.directed(vertex, other) : Edge.undirected(vertex, other));
+			}
+		});
+		return edges;
+	}
+
+	@Override
+	public Multiset<Edge> getEdgesTo(Vertex vertex) {
+		Preconditions.checkArgument(isDirected(), "Use getEdgesAt.");
+
+		int index = getIndexOf(vertex);
+		Multiset<Edge> edges = HashMultiset.create();
+		for (int i = 0; i < getNoOfVertices(); i++) {
+			if (getBit(rows[i], index)) {
+				edges.add(Edge.directed(vertices.get(i), vertex));
+			}
+		}
+		return edges;
+	}
+
+	@Override
+	public int getDegreeAt(Vertex vertex) {
+		Preconditions.checkArgument(!isDirected(), "Use getOutdegreeAt and getIndegreeAt.");
+
+		return bitCount(rows[getIndexOf(vertex)]);
+	}
+
+	@Override
+	public int getOutdegreeAt(Vertex vertex) {
+		Preconditions.checkArgument(isDirected(), "Use getDegreeAt.");
+
+		return bitCount(rows[getIndexOf(vertex)]);
+	}
+
+	@Override
+	public int getIndegreeAt(Vertex vertex) {
+		Preconditions.checkArgument(isDirected(), "Use getDegreeAt.");
+
+		int index = getIndexOf(vertex);
+		int indegree = 0;
+		for (int i = 0; i < getNoOfVertices(); i++) {
+			if (getBit(rows[i], index)) {
+				indegree++;
+			}
+		}
+		return indegree;
+	}
+
+	@Override
+	public void addVertices(Set<Vertex> newVertices) {
+		for (Vertex v : newVertices) {
+			Preconditions.checkArgument(!indices.containsKey(v),
+					"New vertex already in graph.");
+		}
+
+		int newNoOfVertices = getNoOfVertices() + newVertices.size();
+		if (newNoOfVertices > rows.length) {
+			int capacity = Math.max(newNoOfVertices, 2 * rows.length);
+			long[][] newRows = new long[capacity][];
+			for (int i = 0; i < capacity; i++) {
+				newRows[i] = (i < getNoOfVertices()) ? Arrays.copyOf(rows[i], words(capacity))
+						: new long[words(capacity)];
+			}
+			rows = newRows;
+		}
+		for (Vertex v : newVertices) {
+			indices.put(v, vertices.size());
+			vertices.add(v);
+		}
+	}
+
+	@Override
+	public void removeVertex(Vertex vertex) {
+		int index = getIndexOf(vertex);
+
+		long[] removedRow = rows[index];
+		System.arraycopy(rows, index + 1, rows, index, getNoOfVertices() - index - 1);
+		Arrays.fill(removedRow, 0);
+		rows[getNoOfVertices() - 1] = removedRow;
+		for (int i = 0; i < getNoOfVertices() - 1; i++) {
+			removeBit(rows[i], index);
+		}
+		vertices.remove(index);
+		indices.remove(vertex);
+		for (int i = index; i < vertices.size(); i++) {
+			indices.put(vertices.get(i), i);
+		}
+		verticesRemoved();
+	}
+
+	@Override
+	public void removeVertices(Set<Vertex> verticesToRemove) {
+		for (Vertex v : verticesToRemove) {
+			Preconditions.checkArgument(indices.containsKey(v),
+					"Vertex not in graph.");
+		}
+
+		int n = getNoOfVertices();
+		int[] newIndices = new int[n];
+		List<Vertex> newVertices = Lists.newArrayListWithCapacity(n - verticesToRemove.size());
+		List<long[]> removedRows = Lists.newArrayListWithCapacity(verticesToRemove.size());
+		for (int i = 0; i < n; i++) {
+			if (verticesToRemove.contains(vertices.get(i))) {
+				newIndices[i] = -1;
+				indices.remove(vertices.get(i));
+				removedRows.add(rows[i]);
+			} else {
+				newIndices[i] = newVertices.size();
+				indices.put(vertices.get(i), newVertices.size());
+				// the kept rows move back, in order
+				rows[newVertices.size()] = rows[i];
+				newVertices.add(vertices.get(i));
+			}
+		}
+		for (int i = 0; i < newVertices.size(); i++) {
+			renumberBits(rows[i], newIndices);
+		}
+		// the rows removed are the first spare ones
+		for (int k = 0; k < removedRows.size(); k++) {
+			long[] removedRow = removedRows.get(k);
+			Arrays.fill(removedRow, 0);
+			rows[newVertices.size() + k] = removedRow;
+		}
+		vertices = newVertices;
+		verticesRemoved();
+	}
+
+	/**
+	 * Moves each bit j of the row to newIndices[j] (dropped if -1), in 
+	 * place: newIndices[j] <= j, so each word is read before it is written.
+	 */
+	private static void renumberBits(long[] row, int[] newIndices) {
+		for (int k = 0; k < row.length; k++) {
+			long word = row[k];
+			row[k] = 0;
+			while (word != 0) {
+				int j = (k << 6) + Long.numberOfTrailingZeros(word);
+				word &= word - 1;
+				if (newIndices[j] >= 0) {
+					setBit(row, newIndices[j]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks that the edge can be added (sign 1) or removed (sign -1).
+	 */
+	private void checkEdge(Vertex start, Vertex end, boolean directed, int sign) {
+		Preconditions.checkArgument(indices.containsKey(start) && indices.containsKey(end),
+				"Edge's endpoints not in graph.");
+		Preconditions.checkArgument(directed == isDirected(),
+				isDirected() ? "Undirected edge in directed graph." : "Directed edge in undirected graph.");
+		if (sign > 0) {
+			Preconditions.checkArgument(!start.equals(end), "Loop in simple graph");
+			Preconditions.checkArgument(!containsEdge(start, end), "Edge already in simple graph.");
+		} else {
+			Preconditions.checkArgument(containsEdge(start, end), "Edge not in graph.");
+		}
+	}
+
+	/**
+	 * Sets (sign 1) or clears (sign -1) the bit of the edge, checked.
+	 */
+	private void changeEdge(Vertex start, Vertex end, int sign) {
+		int i = getIndexOf(start);
+		int j = getIndexOf(end);
+		if (sign > 0) {
+			setBit(rows[i], j);
+			if (!isDirected()) {
+				setBit(rows[j], i);
+			}
+		} else {
+			clearBit(rows[i], j);
+			if (!isDirected()) {
+				clearBit(rows[j], i);
+			}
+		}
+		edgesChanged(i, j, sign);
+	}
+
+	@Override
+	public void addUndirectedEdge(Edge edge) {
+		Preconditions.checkArgument(!edge.isDirected(), "Use addDirectedEdge.");
+
+		addUndirectedEdge(edge.getStart(), edge.getEnd());
+	}
+
+	@Override
+	public void addDirectedEdge(Edge edge) {
+		Preconditions.checkArgument(edge.isDirected(), "Use addUndirectedEdge.");
+
+		addDirectedEdge(edge.getStart(), edge.getEnd());
+	}
+
+	@Override
+	public void addUndirectedEdge(Vertex start, Vertex end) {
+		checkEdge(start, end, false, 1);
+		changeEdge(start, end, 1);
+	}
+
+	@Override
+	public void addDirectedEdge(Vertex start, Vertex end) {
+		checkEdge(start, end, true, 1);
+		changeEdge(start, end, 1);
+	}
+
+	@Override
+	public void removeUndirectedEdge(Edge edge) {
+		Preconditions.checkArgument(!edge.isDirected(), "Use removeDirectedEdge.");
+
+		removeUndirectedEdge(edge.getStart(), edge.getEnd());
+	}
+
+	@Override
+	public void removeDirectedEdge(Edge edge) {
+		Preconditions.checkArgument(edge.isDirected(), "Use removeUndirectedEdge.");
+
+		removeDirectedEdge(edge.getStart(), edge.getEnd());
+	}
+
+	@Override
+	public void removeUndirectedEdge(Vertex start, Vertex end) {
+		checkEdge(start, end, false, -1);
+		changeEdge(start, end, -1);
+	}
+
+	@Override
+	public void removeDirectedEdge(Vertex start, Vertex end) {
+		checkEdge(start, end, true, -1);
+		changeEdge(start, end, -1);
+	}
+
+	@Override
+	public void addEdges(Multiset<Edge> edges) {
+		for (Multiset.Entry<Edge> entry : edges.entrySet()) {
+			Edge edge = entry.getElement();
+			checkEdge(edge.getStart(), edge.getEnd(), edge.isDirected(), 1);
+			Preconditions.checkArgument(entry.getCount() == 1, "Edge repeated in simple graph.");
+		}
+
+		for (Edge edge : edges.elementSet()) {
+			changeEdge(edge.getStart(), edge.getEnd(), 1);
+		}
+	}
+
+	@Override
+	public void removeEdges(Multiset<Edge> edges) {
+		for (Multiset.Entry<Edge> entry : edges.entrySet()) {
+			Edge edge = entry.getElement();
+			checkEdge(edge.getStart(), edge.getEnd(), edge.isDirected(), -1);
+			Preconditions.checkArgument(entry.getCount() == 1, "Edge not in graph.");
+		}
+
+		for (Edge edge : edges.elementSet()) {
+			changeEdge(edge.getStart(), edge.getEnd(), -1);
+		}
+	}
+}
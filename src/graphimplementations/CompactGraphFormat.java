@@ -0,0 +1,365 @@
+package graphimplementations;
+
+import interfaces.EdgeConsumer;
+import interfaces.Graph;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Sets;
+
+/**
+ *
+ * A compact serialized form of a graph, for sending graphs between
+ * processes: the rows are sorted and gap-encoded with varints, and the
+ * multiplicities are run-length encoded (in a simple graph, a row has a
+ * single run of 1s). The format is:
+ * <pre>
+ * magic "GWVC" (4 bytes), version (1 byte), flags (1 byte: 1 = directed),
+ * kind (1 byte: 0 ListGraph, 1 MatrixGraph, 2 EdgesGraph, 3 other),
+ * layout and cell type of a MatrixGraph (1 byte each, ordinals)
+ * varint n, number of vertices
+ * n labels: zigzag varint of the difference from the previous label
+ * for each vertex i, its row (only the neighbors j >= i, if undirected):
+ *     varint c, number of entries
+ *     c varints: the first neighbor (minus i, if undirected), then the
+ *     gaps between consecutive neighbors minus 1
+ *     pairs of varints (run length, multiplicity) covering the c entries
+ * CRC32 of all the bytes above (4 bytes, big endian)
+ * </pre>
+ * A varint is 7 bits per byte, least significant first, with the high bit
+ * set on all bytes but the last.
+ *
+ * The graph read has the same kind (a ListGraph for other kinds), with the
+ * labels of the vertices in a new IdSpace (see GraphFile). The reader
+ * decodes the rows into arrays of ints, grown as the input is actually
+ * read, and builds the graph only once the checksum matches: the rows of
+ * a ListGraph and the cells of a MatrixGraph are filled in directly, and
+ * Edges are built only for an EdgesGraph. The streams are not closed; the
+ * reader buffers its input, so it may read past the end of the graph.
+ *
+ * @author mmcasetti
+ *
+ */
+public final class CompactGraphFormat {
+	static final int MAGIC = 0x47575643;
+	static final int VERSION = 1;
+	private static final int DIRECTED = 1;
+	private static final int LIST = 0;
+	private static final int MATRIX = 1;
+	private static final int EDGES = 2;
+	private static final int OTHER = 3;
+
+	private CompactGraphFormat() {
+	}
+
+	public static void write(Graph graph, WritableByteChannel channel) throws IOException {
+		write(graph, Channels.newOutputStream(channel));
+	}
+
+	/**
+	 * Writes the graph, one row at a time. The vertices must be all in the
+	 * same IdSpace.
+	 */
+	public static void write(Graph graph, OutputStream out) throws IOException {
+		int n = graph.getNoOfVertices();
+		IdSpace space = (n == 0) ? IdSpace.GLOBAL : graph.getVertexAt(0).getIdSpace();
+		for (int i = 0; i < n; i++) {
+			Preconditions.checkArgument(graph.getVertexAt(i).getIdSpace() == space,
+					"Vertices in different id spaces");
+		}
+
+		BufferedOutputStream buffered = new BufferedOutputStream(out);
+		CRC32 crc = new CRC32();
+		OutputStream checked = new CheckedOutputStream(buffered, crc);
+		writeInt(checked, MAGIC);
+		checked.write(VERSION);
+		checked.write(graph.isDirected() ? DIRECTED : 0);
+		if (graph instanceof MatrixGraph) {
+			MatrixGraph matrixGraph = (MatrixGraph) graph;
+			checked.write(MATRIX);
+			checked.write(matrixGraph.getLayout().ordinal());
+			checked.write(matrixGraph.getCellType().ordinal());
+		} else {
+			checked.write((graph instanceof ListGraph) ? LIST : (graph instanceof EdgesGraph) ? EDGES : OTHER);
+			checked.write(0);
+			checked.write(0);
+		}
+
+		writeVarint(checked, n);
+		long previous = 0;
+		for (int i = 0; i < n; i++) {
+			long label = graph.getVertexAt(i).label;
+			writeVarint(checked, (label - previous) << 1 ^ (label - previous) >> 63);
+			previous = label;
+		}
+
+		RowCollector collector = new RowCollector();
+		for (int i = 0; i < n; i++) {
+			collector.size = 0;
+			graph.forEachNeighbor(i, collector);
+			AdjacencyRow row = AdjacencyRow.fromEntries(collector.entries, collector.size);
+			// the neighbors before i are in their own rows
+			int first = 0;
+			if (!graph.isDirected()) {
+				while (first < row.size() && row.getNeighbor(first) < i) {
+					first++;
+				}
+			}
+			writeVarint(checked, row.size() - first);
+			int last = graph.isDirected() ? -1 : i - 1;
+			for (int k = first; k < row.size(); k++) {
+				writeVarint(checked, row.getNeighbor(k) - last - 1);
+				last = row.getNeighbor(k);
+			}
+			int k = first;
+			while (k < row.size()) {
+				int run = 1;
+				while (k + run < row.size() && row.getMultiplicity(k + run) == row.getMultiplicity(k)) {
+					run++;
+				}
+				writeVarint(checked, run);
+				writeVarint(checked, row.getMultiplicity(k));
+				k += run;
+			}
+		}
+
+		writeInt(buffered, (int) crc.getValue());
+		buffered.flush();
+	}
+
+	public static Graph read(ReadableByteChannel channel) throws IOException {
+		return read(Channels.newInputStream(channel));
+	}
+
+	/**
+	 * @return the graph written by write
+	 * @throws IOException if the stream is not a graph in this format, or
+	 * its checksum does not match
+	 */
+	public static Graph read(InputStream in) throws IOException {
+		BufferedInputStream buffered = new BufferedInputStream(in);
+		CRC32 crc = new CRC32();
+		InputStream checked = new CheckedInputStream(buffered, crc);
+		if (readInt(checked) != MAGIC) {
+			throw new IOException("Not a compact graph.");
+		}
+		int version = readByte(checked);
+		if (version != VERSION) {
+			throw new IOException("Unknown compact graph version " + version);
+		}
+		boolean isDirected = (readByte(checked) & DIRECTED) != 0;
+		int kind = readByte(checked);
+		int layout = readByte(checked);
+		int cellType = readByte(checked);
+		if (kind > OTHER || layout >= MatrixGraph.Layout.values().length
+				|| cellType >= MatrixGraph.CellType.values().length) {
+			throw new IOException("Corrupt compact graph header.");
+		}
+
+		// n is not trusted until its labels are read: the arrays grow with
+		// the bytes actually read
+		int n = readInt(checked, Integer.MAX_VALUE);
+		long[] labels = new long[Math.min(n, 1024)];
+		long firstFreeLabel = 0;
+		long previous = 0;
+		for (int i = 0; i < n; i++) {
+			if (i == labels.length) {
+				labels = Arrays.copyOf(labels, (int) Math.min(n, 2L * i));
+			}
+			long zigzag = readVarint(checked);
+			labels[i] = previous + (zigzag >>> 1 ^ -(zigzag & 1));
+			previous = labels[i];
+			firstFreeLabel = Math.max(firstFreeLabel, labels[i] + 1);
+		}
+
+		Entries entries = new Entries();
+		int[] neighbors = new int[16];
+		for (int i = 0; i < n; i++) {
+			int size = readInt(checked, n);
+			long last = isDirected ? -1 : i - 1;
+			for (int k = 0; k < size; k++) {
+				last += readInt(checked, n) + 1;
+				if (last < 0 || last >= n) {
+					throw new IOException("Corrupt compact graph: neighbor not in graph.");
+				}
+				if (k == neighbors.length) {
+					neighbors = Arrays.copyOf(neighbors, 2 * k);
+				}
+				neighbors[k] = (int) last;
+			}
+			int k = 0;
+			while (k < size) {
+				int run = readInt(checked, size - k);
+				int multiplicity = readInt(checked, Integer.MAX_VALUE);
+				if (run == 0 || multiplicity == 0) {
+					throw new IOException("Corrupt compact graph: empty run.");
+				}
+				for (int r = 0; r < run; r++, k++) {
+					entries.add(i, neighbors[k], multiplicity);
+				}
+			}
+		}
+
+		int expected = (int) crc.getValue();
+		if (readInt(buffered) != expected) {
+			throw new IOException("Compact graph checksum does not match.");
+		}
+		IdSpace space = new IdSpace(firstFreeLabel);
+		List<Vertex> vertices = Lists.newArrayListWithCapacity(n);
+		for (int i = 0; i < n; i++) {
+			vertices.add(new Vertex(space, labels[i]));
+		}
+		return create(kind, MatrixGraph.Layout.values()[layout], MatrixGraph.CellType.values()[cellType],
+				vertices, entries, isDirected);
+	}
+
+	/**
+	 * @param entries: the rows read (for an undirected graph, only the 
+	 * neighbors j >= i of each vertex i)
+	 */
+	private static Graph create(int kind, MatrixGraph.Layout layout, MatrixGraph.CellType cellType,
+			List<Vertex> vertices, Entries entries, boolean isDirected) {
+		switch (kind) {
+		case MATRIX:
+			MatrixGraph matrixGraph = new MatrixGraph(vertices, isDirected, layout, cellType);
+			for (int e = 0; e < entries.length; e++) {
+				matrixGraph.addToEntry(entries.starts[e], entries.ends[e], entries.times[e]);
+			}
+			return matrixGraph;
+		case EDGES:
+			Multiset<Edge> edges = HashMultiset.create();
+			for (int e = 0; e < entries.length; e++) {
+				Vertex start = vertices.get(entries.starts[e]);
+				Vertex end = vertices.get(entries.ends[e]);
+				edges.add(isDirected ? Edge.directed(start, end) : Edge.undirected(start, end), entries.times[e]);
+			}
+			Set<Vertex> verticesSet = Sets.newLinkedHashSet(vertices);
+			return isDirected ? new EdgesGraph(verticesSet, HashMultiset.<Edge>create(), edges)
+					: new EdgesGraph(verticesSet, edges, HashMultiset.<Edge>create());
+		default:
+			if (!isDirected) {
+				// each edge also in the row of its other endpoint
+				int length = entries.length;
+				for (int e = 0; e < length; e++) {
+					if (entries.starts[e] != entries.ends[e]) {
+						entries.add(entries.ends[e], entries.starts[e], entries.times[e]);
+					}
+				}
+			}
+			List<AdjacencyRow> rows = Lists.newArrayListWithCapacity(vertices.size());
+			for (int i = 0; i < vertices.size(); i++) {
+				rows.add(new AdjacencyRow());
+			}
+			AdjacencyRow.mergeIntoRows(rows, entries.starts, entries.ends, entries.times, entries.length, 1);
+			return ListGraph.fromRows(vertices, rows, isDirected);
+		}
+	}
+
+	/**
+	 * The entries of the rows read: times edges from starts[e] to ends[e],
+	 * for e < length, in arrays that double as they fill up.
+	 */
+	private static final class Entries {
+		private int[] starts = new int[16];
+		private int[] ends = new int[16];
+		private int[] times = new int[16];
+		private int length;
+
+		void add(int start, int end, int multiplicity) {
+			if (length == starts.length) {
+				starts = Arrays.copyOf(starts, 2 * length);
+				ends = Arrays.copyOf(ends, 2 * length);
+				times = Arrays.copyOf(times, 2 * length);
+			}
+			starts[length] = start;
+			ends[length] = end;
+			times[length] = multiplicity;
+			length++;
+		}
+	}
+
+	/**
+	 * Collects the entries of a row, packed as neighbor << 32 | multiplicity
+	 * (see AdjacencyRow.fromEntries).
+	 */
+	private static final class RowCollector implements EdgeConsumer {
+		private long[] entries = new long[16];
+		private int size;
+
+		@Override
+		public void accept(int start, int end, int multiplicity) {
+			if (size == entries.length) {
+				entries = Arrays.copyOf(entries, 2 * size);
+			}
+			entries[size++] = ((long) end << 32) | (multiplicity & 0xFFFFFFFFL);
+		}
+	}
+
+	private static void writeVarint(OutputStream out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.write((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	private static void writeInt(OutputStream out, int value) throws IOException {
+		out.write(value >>> 24);
+		out.write(value >>> 16);
+		out.write(value >>> 8);
+		out.write(value);
+	}
+
+	private static int readByte(InputStream in) throws IOException {
+		int b = in.read();
+		if (b < 0) {
+			throw new EOFException("Compact graph truncated.");
+		}
+		return b;
+	}
+
+	private static long readVarint(InputStream in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = readByte(in);
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Corrupt compact graph: varint too long.");
+	}
+
+	/**
+	 * @return a varint between 0 and max
+	 */
+	private static int readInt(InputStream in, int max) throws IOException {
+		long value = readVarint(in);
+		if (value < 0 || value > max) {
+			throw new IOException("Corrupt compact graph: " + value + " out of range.");
+		}
+		return (int) value;
+	}
+
+	private static int readInt(InputStream in) throws IOException {
+		return readByte(in) << 24 | readByte(in) << 16 | readByte(in) << 8 | readByte(in);
+	}
+}
@@ -0,0 +1,435 @@
+package graphimplementations;
+
+import interfaces.EdgeConsumer;
+import interfaces.Graph;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import abstractclasses.AbstractGraph;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multiset;
+
+/**
+ *
+ * A class to implement an immutable multigraph in compressed sparse row form.
+ * The neighbours of the vertex at index i are the (sorted) entries
+ * neighbors[offsets[i]] ... neighbors[offsets[i + 1] - 1], and the number of
+ * edges to each of them is in the same position of multiplicities. As in the
+ * adjacency matrix, an undirected edge is stored in the rows of both its
+ * endpoints (a loop only once). A directed graph also keeps the transposed
+ * arrays, so that the edges to a vertex are found without scanning every row.
+ *
+ * The arrays passed to the constructor are not copied: they must not be
+ * modified afterwards. All the methods that modify the graph throw an
+ * UnsupportedOperationException.
+ *
+ * @author mmcasetti
+ *
+ */
+
+public class CsrGraph extends AbstractGraph {
+	private final ImmutableList<Vertex> vertices;
+	private final ImmutableSet<Vertex> verticesSet;
+	private final Map<Vertex, Integer> indices;
+	private final int[] offsets;
+	private final int[] neighbors;
+	private final int[] multiplicities;
+	private final int[] inOffsets;
+	private final int[] inNeighbors;
+	private final int[] inMultiplicities;
+	private final boolean isDirected;
+
+	public CsrGraph(List<Vertex> vertices, int[] offsets, int[] neighbors, int[] multiplicities, boolean isDirected) {
+		Preconditions.checkArgument(offsets.length == vertices.size() + 1,
+				"Too many or too few vertices");
+		Preconditions.checkArgument(neighbors.length == multiplicities.length,
+				"Neighbors and multiplicities of different length");
+		Preconditions.checkArgument(offsets[0] == 0 && offsets[vertices.size()] == neighbors.length,
+				"Offsets do not cover the neighbors");
+		for (int i = 0; i < vertices.size(); i++) {
+			Preconditions.checkArgument(offsets[i] <= offsets[i + 1],
+					"Offsets not increasing");
+			for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+				Preconditions.checkArgument(neighbors[k] >= 0 && neighbors[k] < vertices.size(),
+						"Neighbor not in graph");
+				Preconditions.checkArgument(k == offsets[i] || neighbors[k - 1] < neighbors[k],
+						"Neighbors not sorted");
+				Preconditions.checkArgument(multiplicities[k] > 0,
+						"Multiplicities must be > 0");
+			}
+		}
+		if (!isDirected) {
+			for (int i = 0; i < vertices.size(); i++) {
+				for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+					Preconditions.checkArgument(multiplicities[k] == count(offsets, neighbors, multiplicities, neighbors[k], i),
+							"Rows not symmetric in undirected graph");
+				}
+			}
+		}
+
+		this.vertices = ImmutableList.copyOf(vertices);
+		this.verticesSet = ImmutableSet.copyOf(vertices);
+		Preconditions.checkArgument(verticesSet.size() == vertices.size(),
+				"Repeated vertex");
+		this.indices = Maps.newHashMapWithExpectedSize(vertices.size());
+		for (int i = 0; i < vertices.size(); i++) {
+			indices.put(vertices.get(i), i);
+		}
+		this.offsets = offsets;
+		this.neighbors = neighbors;
+		this.multiplicities = multiplicities;
+		this.isDirected = isDirected;
+
+		if (isDirected) {
+			// transpose with a counting sort: walking the rows in order, each
+			// transposed row is filled in increasing order
+			int n = vertices.size();
+			this.inOffsets = new int[n + 1];
+			for (int k = 0; k < neighbors.length; k++) {
+				inOffsets[neighbors[k] + 1]++;
+			}
+			for (int i = 0; i < n; i++) {
+				inOffsets[i + 1] += inOffsets[i];
+			}
+			this.inNeighbors = new int[neighbors.length];
+			this.inMultiplicities = new int[neighbors.length];
+			int[] next = Arrays.copyOf(inOffsets, n);
+			for (int i = 0; i < n; i++) {
+				for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+					int position = next[neighbors[k]]++;
+					inNeighbors[position] = i;
+					inMultiplicities[position] = multiplicities[k];
+				}
+			}
+		} else {
+			this.inOffsets = offsets;
+			this.inNeighbors = neighbors;
+			this.inMultiplicities = multiplicities;
+		}
+	}
+
+	/**
+	 *
+	 * @return the multiplicity of (start, end) in the rows, 0 if there is
+	 * no such entry (binary search in the row of start)
+	 */
+	private static int count(int[] offsets, int[] neighbors, int[] multiplicities, int start, int end) {
+		int position = Arrays.binarySearch(neighbors, offsets[start], offsets[start + 1], end);
+		return (position >= 0) ? multiplicities[position] : 0;
+	}
+
+	@Override
+	public Set<Vertex> getVertices() {
+		return verticesSet;
+	}
+
+	@Override
+	public int getNoOfVertices() {
+		return vertices.size();
+	}
+
+	@VisibleForTesting
+	List<Vertex> getListOfVertices() {
+		return vertices;
+	}
+
+	/**
+	 *
+	 * @param vertex
+	 * @return its index in the list of vertices of the graph
+	 */
+	@Override
+	public int getIndexOf(Vertex vertex) {
+		Integer index = indices.get(vertex);
+		Preconditions.checkArgument(index != null, "Vertex not in graph.");
+		return index;
+	}
+
+	@Override
+	public Vertex getVertexAt(int index) {
+		return vertices.get(index);
+	}
+
+	@Override
+	public void forEachEdge(EdgeConsumer consumer) {
+		for (int i = 0; i < vertices.size(); i++) {
+			for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+				if (isDirected || i <= neighbors[k]) {
+					consumer.accept(i, neighbors[k], multiplicities[k]);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void forEachNeighbor(int index, EdgeConsumer consumer) {
+		Preconditions.checkElementIndex(index, vertices.size());
+		for (int k = offsets[index]; k < offsets[index + 1]; k++) {
+			consumer.accept(index, neighbors[k], multiplicities[k]);
+		}
+	}
+
+	@Override
+	public boolean isDirected() {
+		return isDirected;
+	}
+
+	/**
+	 *
+	 * @param start
+	 * @param end
+	 * @return number of edges between start and end (from start to end, if
+	 *         the graph is directed)
+	 */
+	public int getMultiplicity(Vertex start, Vertex end) {
+		return count(offsets, neighbors, multiplicities, getIndexOf(start), getIndexOf(end));
+	}
+
+	@Override
+	public Multiset<Edge> getUndirectedEdges() {
+		if (isDirected()) {
+			return HashMultiset.<Edge>create();
+		}
+
+		Multiset<Edge> edges = HashMultiset.create();
+		for (int i = 0; i < vertices.size(); i++) {
+			Vertex start = vertices.get(i);
+			for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+				if (i <= neighbors[k]) {
+					Edge edge = Edge.undirected(start, vertices.get(neighbors[k]));
+					edges.add(edge, multiplicities[k]);
+				}
+			}
+		}
+		return edges;
+	}
+
+	@Override
+	public Multiset<Edge> getDirectedEdges() {
+		if (!isDirected()) {
+			return HashMultiset.<Edge>create();
+		}
+
+		Multiset<Edge> edges = HashMultiset.create();
+		for (int i = 0; i < vertices.size(); i++) {
+			Vertex start = vertices.get(i);
+			for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+				Edge edge = Edge.directed(start, vertices.get(neighbors[k]));
+				edges.add(edge, multiplicities[k]);
+			}
+		}
+		return edges;
+	}
+
+	/**
+	 * @return the same graph, undirected: the directed edges between i and j
+	 *         (in both directions) become as many undirected edges
+	 */
+	@Override
+	public Graph makeUndirected() {
+		if (!isDirected()) {
+			return this;
+		}
+
+		// row i of the undirected graph merges row i and transposed row i
+		int n = vertices.size();
+		int[] newOffsets = new int[n + 1];
+		int[] newNeighbors = new int[neighbors.length * 2];
+		int[] newMultiplicities = new int[neighbors.length * 2];
+		int position = 0;
+		for (int i = 0; i < n; i++) {
+			int k = offsets[i];
+			int h = inOffsets[i];
+			while (k < offsets[i + 1] || h < inOffsets[i + 1]) {
+				int out = (k < offsets[i + 1]) ? neighbors[k] : Integer.MAX_VALUE;
+				int in = (h < inOffsets[i + 1]) ? inNeighbors[h] : Integer.MAX_VALUE;
+				int neighbor = Math.min(out, in);
+				int multiplicity = 0;
+				if (out == neighbor) {
+					multiplicity += multiplicities[k++];
+				}
+				if (in == neighbor) {
+					// a loop is already counted once in its row
+					if (neighbor != i) {
+						multiplicity += inMultiplicities[h];
+					}
+					h++;
+				}
+				newNeighbors[position] = neighbor;
+				newMultiplicities[position] = multiplicity;
+				position++;
+			}
+			newOffsets[i + 1] = position;
+		}
+		return new CsrGraph(vertices, newOffsets, Arrays.copyOf(newNeighbors, position),
+				Arrays.copyOf(newMultiplicities, position), false);
+	}
+
+	/**
+	 * @return the same graph, directed: each undirected edge becomes two
+	 *         directed edges, one in each direction (a loop becomes two loops)
+	 */
+	@Override
+	public Graph makeDirected() {
+		if (isDirected()) {
+			return this;
+		}
+
+		int[] newMultiplicities = Arrays.copyOf(multiplicities, multiplicities.length);
+		for (int i = 0; i < vertices.size(); i++) {
+			int position = Arrays.binarySearch(neighbors, offsets[i], offsets[i + 1], i);
+			if (position >= 0) {
+				newMultiplicities[position] *= 2;
+			}
+		}
+		return new CsrGraph(vertices, offsets, neighbors, newMultiplicities, true);
+	}
+
+	@Override
+	public Multiset<Edge> getEdgesAt(Vertex vertex) {
+		Preconditions.checkArgument(!isDirected(),
+				"Use getEdgesFrom and getEdgesTo.");
+
+		int index = getIndexOf(vertex);
+		Multiset<Edge> edgesAt = HashMultiset.create();
+		for (int k = offsets[index]; k < offsets[index + 1]; k++) {
+			Edge edge = Edge.undirected(vertex, vertices.get(neighbors[k]));
+			edgesAt.add(edge, multiplicities[k]);
+		}
+		return edgesAt;
+	}
+
+	@Override
+	public Multiset<Edge> getEdgesFrom(Vertex vertex) {
+		Preconditions.checkArgument(isDirected(), "Use getEdgesAt.");
+
+		int index = getIndexOf(vertex);
+		Multiset<Edge> edgesFrom = HashMultiset.create();
+		for (int k = offsets[index]; k < offsets[index + 1]; k++) {
+			Edge edge = Edge.directed(vertex, vertices.get(neighbors[k]));
+			edgesFrom.add(edge, multiplicities[k]);
+		}
+		return edgesFrom;
+	}
+
+	@Override
+	public Multiset<Edge> getEdgesTo(Vertex vertex) {
+		Preconditions.checkArgument(isDirected(), "Use getEdgesAt.");
+
+		int index = getIndexOf(vertex);
+		Multiset<Edge> edgesTo = HashMultiset.create();
+		for (int h = inOffsets[index]; h < inOffsets[index + 1]; h++) {
+			Edge edge = Edge.directed(vertices.get(inNeighbors[h]), vertex);
+			edgesTo.add(edge, inMultiplicities[h]);
+		}
+		return edgesTo;
+	}
+
+	@Override
+	public int getDegreeAt(Vertex vertex) {
+		Preconditions.checkArgument(!isDirected(),
+				"Use getOutdegreeAt and getIndegreeAt.");
+
+		return sum(multiplicities, offsets, getIndexOf(vertex));
+	}
+
+	@Override
+	public int getOutdegreeAt(Vertex vertex) {
+		Preconditions.checkArgument(isDirected(), "Use getDegreeAt.");
+
+		return sum(multiplicities, offsets, getIndexOf(vertex));
+	}
+
+	@Override
+	public int getIndegreeAt(Vertex vertex) {
+		Preconditions.checkArgument(isDirected(), "Use getDegreeAt.");
+
+		return sum(inMultiplicities, inOffsets, getIndexOf(vertex));
+	}
+
+	/**
+	 *
+	 * @return sum of the multiplicities in the given row
+	 */
+	private static int sum(int[] multiplicities, int[] offsets, int row) {
+		int sum = 0;
+		for (int k = offsets[row]; k < offsets[row + 1]; k++) {
+			sum += multiplicities[k];
+		}
+		return sum;
+	}
+
+	@Override
+	public void addVertices(Set<Vertex> newVertices) {
+		throw new UnsupportedOperationException("CsrGraph is immutable.");
+	}
+
+	@Override
+	public void removeVertex(Vertex vertex) {
+		throw new UnsupportedOperationException("CsrGraph is immutable.");
+	}
+
+	@Override
+	public void addUndirectedEdge(Edge edge) {
+		throw new UnsupportedOperationException("CsrGraph is immutable.");
+	}
+
+	@Override
+	public void addDirectedEdge(Edge edge) {
+		throw new UnsupportedOperationException("CsrGraph is immutable.");
+	}
+
+	@Override
+	public void addUndirectedEdge(Vertex start, Vertex end) {
+		throw new UnsupportedOperationException("CsrGraph is immutable.");
+	}
+
+	@Override
+	public void addDirectedEdge(Vertex start, Vertex end) {
+		throw new UnsupportedOperationException("CsrGraph is immutable.");
+	}
+
+	@Override
+	public void removeUndirectedEdge(Edge edge) {
+		throw new UnsupportedOperationException("CsrGraph is immutable.");
+	}
+
+	@Override
+	public void removeDirectedEdge(Edge edge) {
+		throw new UnsupportedOperationException("CsrGraph is immutable.");
+	}
+
+	@Override
+	public void removeUndirectedEdge(Vertex start, Vertex end) {
+		throw new UnsupportedOperationException("CsrGraph is immutable.");
+	}
+
+	@Override
+	public void removeDirectedEdge(Vertex start, Vertex end) {
+		throw new UnsupportedOperationException("CsrGraph is immutable.");
+	}
+
+	@Override
+	public void addEdges(Multiset<Edge> edges) {
+		throw new UnsupportedOperationException("CsrGraph is immutable.");
+	}
+
+	@Override
+	public void removeEdges(Multiset<Edge> edges) {
+		throw new UnsupportedOperationException("CsrGraph is immutable.");
+	}
+
+	@Override
+	public void removeVertices(Set<Vertex> vertices) {
+		throw new UnsupportedOperationException("CsrGraph is immutable.");
+	}
+}
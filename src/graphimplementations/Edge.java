@@ -58,13 +58,44 @@ public class Edge implements EdgeInterface {
 		this.isDirected = dir;
 	}
 
+/**
+ * Edge.between(start).and(end) creates the edge and adds it to the edges of
+ * start and end.
+ */
 	public static UndirectedBuilder between(Vertex start) {
 		return new UndirectedBuilder(start);
 	}
 	
+/**
+ * Edge.from(start).to(end) creates the edge and adds it to the edges of
+ * start and end.
+ */
 	public static DirectedBuilder from(Vertex start) {
 		return new DirectedBuilder(start);
 	}
+
+/**
+ * 
+ * @param start
+ * @param end
+ * @return the undirected edge between start and end, as a value: it is not
+ * added to the edges of its vertices. The graphs use it to build the edges
+ * they return, since they keep track of the edges at a vertex themselves.
+ */
+	public static Edge undirected(Vertex start, Vertex end) {
+		return new Edge(start, end, false);
+	}
+
+/**
+ * 
+ * @param start
+ * @param end
+ * @return the directed edge from start to end, as a value: it is not added
+ * to the edges of its vertices.
+ */
+	public static Edge directed(Vertex start, Vertex end) {
+		return new Edge(start, end, true);
+	}
 	
 	@Override
 	public Vertex getStart() {
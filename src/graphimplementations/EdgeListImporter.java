@@ -0,0 +1,471 @@
+package graphimplementations;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+/**
+ *
+ * Reads a text edge list (SNAP style): one edge per line, as two
+ * non-negative integer ids separated by spaces, tabs or a comma; anything
+ * after the two ids is ignored, and lines starting with '#' or '%' are
+ * comments. Each line is one edge (a line repeated gives a multiple edge).
+ *
+ * The file is split into chunks of whole lines, each memory-mapped and
+ * parsed by a task of a fork-join pool. The ids are then sorted: the
+ * vertex at index i is the one with the i-th smallest id (see
+ * getExternalId), and the rows of the graph are built, sorted and merged
+ * in parallel, without Edge objects.
+ *
+ * An importer keeps the number of edges, the time taken and the ids of the
+ * last file imported.
+ *
+ * @author mmcasetti
+ *
+ */
+public final class EdgeListImporter {
+	public static final int DEFAULT_CHUNK_SIZE = 64 << 20;
+	// vertices per task when sorting the rows
+	private static final int ROWS_PER_TASK = 4096;
+
+	private final ForkJoinPool pool;
+	private final int chunkSize;
+	private long noOfEdges;
+	private long nanos;
+	private long[] externalIds = new long[0];
+	// the entries of row i of the last file are from rowOffsets[i] to rowOffsets[i + 1]
+	private int[] rowOffsets;
+
+	public EdgeListImporter() {
+		this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * @param chunkSize: bytes of the file parsed by each task (a chunk is
+	 * extended to the end of its last line)
+	 */
+	public EdgeListImporter(ForkJoinPool pool, int chunkSize) {
+		Preconditions.checkArgument(chunkSize > 0, "Chunk size must be > 0");
+		this.pool = pool;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * @return the edge list in the file, as a CsrGraph
+	 * @throws IOException if the file cannot be read or a line is malformed
+	 */
+	public CsrGraph importCsrGraph(File file, boolean isDirected) throws IOException {
+		long start = System.nanoTime();
+		final long[] entries = readEntries(file, isDirected);
+		final int[] offsets = rowOffsets;
+		final int n = externalIds.length;
+
+		// each row is sorted and its repeated neighbors merged in place;
+		// then the rows are moved together
+		final int[] sizes = new int[n];
+		pool.invoke(new RowsTask(0, n) {
+			@Override
+			void computeRow(int i) {
+				sizes[i] = mergeRow(entries, offsets[i], offsets[i + 1]) - offsets[i];
+			}
+		});
+		int[] newOffsets = new int[n + 1];
+		for (int i = 0; i < n; i++) {
+			newOffsets[i + 1] = newOffsets[i] + sizes[i];
+		}
+		int[] neighbors = new int[newOffsets[n]];
+		int[] multiplicities = new int[newOffsets[n]];
+		for (int i = 0; i < n; i++) {
+			for (int k = 0; k < sizes[i]; k++) {
+				long entry = entries[offsets[i] + k];
+				neighbors[newOffsets[i] + k] = (int) (entry >>> 32);
+				multiplicities[newOffsets[i] + k] = (int) entry;
+			}
+		}
+		CsrGraph graph = new CsrGraph(Vertex.createVertices(n), newOffsets, neighbors, multiplicities, isDirected);
+		nanos = System.nanoTime() - start;
+		return graph;
+	}
+
+	/**
+	 * @return the edge list in the file, as a ListGraph
+	 * @throws IOException if the file cannot be read or a line is malformed
+	 */
+	public ListGraph importListGraph(File file, boolean isDirected) throws IOException {
+		long start = System.nanoTime();
+		final long[] entries = readEntries(file, isDirected);
+		final int[] offsets = rowOffsets;
+		int n = externalIds.length;
+
+		final AdjacencyRow[] rows = new AdjacencyRow[n];
+		pool.invoke(new RowsTask(0, n) {
+			@Override
+			void computeRow(int i) {
+				long[] row = Arrays.copyOfRange(entries, offsets[i], offsets[i + 1]);
+				rows[i] = AdjacencyRow.fromEntries(row, row.length);
+			}
+		});
+		ListGraph graph = ListGraph.fromRows(Vertex.createVertices(n), Lists.newArrayList(rows), isDirected);
+		nanos = System.nanoTime() - start;
+		return graph;
+	}
+
+	/**
+	 * @return number of edges (lines that are not comments) in the last file
+	 */
+	public long getNoOfEdges() {
+		return noOfEdges;
+	}
+
+	/**
+	 * @return edges per second of the last import, from opening the file to
+	 * building the graph
+	 */
+	public double getEdgesPerSecond() {
+		return (nanos == 0) ? 0 : noOfEdges * 1e9 / nanos;
+	}
+
+	/**
+	 * @return the id in the last file of the vertex at the given index
+	 */
+	public long getExternalId(int index) {
+		Preconditions.checkElementIndex(index, externalIds.length);
+		return externalIds[index];
+	}
+
+	/**
+	 * Parses the file, sets externalIds and rowOffsets, and returns the
+	 * entries of the rows, unsorted, packed as neighbor << 32 | 1.
+	 */
+	private long[] readEntries(File file, boolean isDirected) throws IOException {
+		final long[][] ids = parse(file);
+		long total = 0;
+		for (long[] chunkIds : ids) {
+			total += chunkIds.length - 1;
+		}
+		noOfEdges = total / 2;
+		Preconditions.checkArgument(total <= Integer.MAX_VALUE - 8, "Too many edges");
+
+		// the distinct ids, sorted
+		long[] sorted = new long[(int) total];
+		int position = 0;
+		for (long[] chunkIds : ids) {
+			int length = (int) chunkIds[chunkIds.length - 1];
+			System.arraycopy(chunkIds, 0, sorted, position, length);
+			position += length;
+		}
+		Arrays.parallelSort(sorted);
+		int n = 0;
+		for (int k = 0; k < sorted.length; k++) {
+			if (k == 0 || sorted[k] != sorted[k - 1]) {
+				sorted[n++] = sorted[k];
+			}
+		}
+		Preconditions.checkArgument(n < Integer.MAX_VALUE, "Too many vertices");
+		final long[] distinct = Arrays.copyOf(sorted, n);
+		sorted = null;
+
+		// the ids become indices, chunk by chunk
+		pool.invoke(new ChunksTask(ids, 0, ids.length) {
+			@Override
+			void computeChunk(long[] chunkIds, int length) {
+				for (int k = 0; k < length; k++) {
+					chunkIds[k] = Arrays.binarySearch(distinct, chunkIds[k]);
+				}
+			}
+		});
+
+		// first count the entries of each row, then fill them in
+		int[] offsets = new int[n + 1];
+		for (long[] chunkIds : ids) {
+			int length = (int) chunkIds[chunkIds.length - 1];
+			for (int k = 0; k < length; k += 2) {
+				offsets[(int) chunkIds[k] + 1]++;
+				if (!isDirected && chunkIds[k] != chunkIds[k + 1]) {
+					offsets[(int) chunkIds[k + 1] + 1]++;
+				}
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			offsets[i + 1] += offsets[i];
+		}
+		long[] entries = new long[offsets[n]];
+		int[] next = Arrays.copyOf(offsets, n);
+		for (int c = 0; c < ids.length; c++) {
+			long[] chunkIds = ids[c];
+			int length = (int) chunkIds[chunkIds.length - 1];
+			for (int k = 0; k < length; k += 2) {
+				int start = (int) chunkIds[k];
+				int end = (int) chunkIds[k + 1];
+				entries[next[start]++] = AdjacencyRow.pack(end, 1);
+				if (!isDirected && start != end) {
+					entries[next[end]++] = AdjacencyRow.pack(start, 1);
+				}
+			}
+			ids[c] = null;
+		}
+
+		externalIds = distinct;
+		rowOffsets = offsets;
+		return entries;
+	}
+
+	/**
+	 * Sorts entries[from] ... entries[to - 1] and merges the entries with the
+	 * same neighbor, adding their multiplicities.
+	 *
+	 * @return the end of the merged entries
+	 */
+	private static int mergeRow(long[] entries, int from, int to) {
+		Arrays.sort(entries, from, to);
+		int end = from;
+		for (int k = from; k < to; k++) {
+			if (end > from && entries[end - 1] >>> 32 == entries[k] >>> 32) {
+				entries[end - 1] += (int) entries[k];
+			} else {
+				entries[end++] = entries[k];
+			}
+		}
+		return end;
+	}
+
+	/**
+	 * @return for each chunk, the ids of the ends of its edges, two by two,
+	 * followed by the number of ids (the last element of the array)
+	 */
+	private long[][] parse(File file) throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = randomAccessFile.getChannel();
+			long size = channel.size();
+			List<ByteBuffer> chunks = Lists.newArrayList();
+			List<Long> starts = Lists.newArrayList();
+			long start = 0;
+			while (start < size) {
+				long end = nextLine(channel, Math.min(size, start + chunkSize), size);
+				if (end - start > Integer.MAX_VALUE) {
+					throw new IOException("Line too long at byte " + start);
+				}
+				chunks.add(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+				starts.add(start);
+				start = end;
+			}
+
+			long[][] ids = new long[chunks.size()][];
+			try {
+				pool.invoke(new ParseTask(chunks, starts, ids, 0, chunks.size()));
+			} catch (IllegalArgumentException e) {
+				throw new IOException(e.getMessage() + " in " + file, e);
+			}
+			return ids;
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	/**
+	 * @return the start of the first line that starts at position or after
+	 */
+	private static long nextLine(FileChannel channel, long position, long size) throws IOException {
+		if (position == size) {
+			return size;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(4096);
+		// the byte before position may be the end of a line
+		long from = position - 1;
+		while (from < size) {
+			buffer.clear();
+			int read = channel.read(buffer, from);
+			for (int k = 0; k < read; k++) {
+				if (buffer.get(k) == '\n') {
+					return from + k + 1;
+				}
+			}
+			from += Math.max(read, 0);
+			if (read <= 0) {
+				break;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Appends the two ids of each line of the chunk to a growing array.
+	 *
+	 * @return the ids, followed by their number
+	 */
+	static long[] parseChunk(ByteBuffer bytes, long start) {
+		long[] ids = new long[64];
+		int size = 0;
+		int limit = bytes.limit();
+		int position = 0;
+		while (position < limit) {
+			byte b = bytes.get(position);
+			if (b == '#' || b == '%') {
+				while (position < limit && bytes.get(position) != '\n') {
+					position++;
+				}
+				position++;
+				continue;
+			}
+			int lineStart = position;
+			int fields = 0;
+			while (position < limit && (b = bytes.get(position)) != '\n') {
+				if (fields == 2) {
+					// the rest of the line is ignored
+					position++;
+				} else if (b >= '0' && b <= '9') {
+					long value = 0;
+					while (position < limit && (b = bytes.get(position)) >= '0' && b <= '9') {
+						if (value > (Long.MAX_VALUE - 9) / 10) {
+							throw new IllegalArgumentException("Id too large at byte " + (start + lineStart));
+						}
+						value = 10 * value + (b - '0');
+						position++;
+					}
+					if (size + 1 >= ids.length) {
+						ids = Arrays.copyOf(ids, 2 * ids.length);
+					}
+					ids[size + fields] = value;
+					fields++;
+				} else if (b == ' ' || b == '\t' || b == ',' || b == '\r') {
+					position++;
+				} else {
+					throw new IllegalArgumentException("Malformed line at byte " + (start + lineStart));
+				}
+			}
+			position++;
+			if (fields == 1) {
+				throw new IllegalArgumentException("Only one id at byte " + (start + lineStart));
+			}
+			if (fields == 2) {
+				size += 2;
+			}
+		}
+		ids = Arrays.copyOf(ids, size + 1);
+		ids[size] = size;
+		return ids;
+	}
+
+	private static final class ParseTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final List<ByteBuffer> chunks;
+		private final List<Long> starts;
+		private final long[][] ids;
+		private final int from;
+		private final int to;
+
+		ParseTask(List<ByteBuffer> chunks, List<Long> starts, long[][] ids, int from, int to) {
+			this.chunks = chunks;
+			this.starts = starts;
+			this.ids = ids;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= 1) {
+				for (int c = from; c < to; c++) {
+					ids[c] = parseChunk(chunks.get(c), starts.get(c));
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new ParseTask(chunks, starts, ids, from, middle),
+					new ParseTask(chunks, starts, ids, middle, to));
+		}
+	}
+
+	/**
+	 * Calls computeChunk on each chunk, in parallel.
+	 */
+	private abstract static class ChunksTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final long[][] ids;
+		private final int from;
+		private final int to;
+
+		ChunksTask(long[][] ids, int from, int to) {
+			this.ids = ids;
+			this.from = from;
+			this.to = to;
+		}
+
+		abstract void computeChunk(long[] chunkIds, int length);
+
+		@Override
+		protected void compute() {
+			if (to - from <= 1) {
+				for (int c = from; c < to; c++) {
+					computeChunk(ids[c], (int) ids[c][ids[c].length - 1]);
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			final ChunksTask outer = this;
+			invokeAll(new ChunksTask(ids, from, middle) {
+				@Override
+				void computeChunk(long[] chunkIds, int length) {
+					outer.computeChunk(chunkIds, length);
+				}
+			}, new ChunksTask(ids, middle, to) {
+				@Override
+				void computeChunk(long[] chunkIds, int length) {
+					outer.computeChunk(chunkIds, length);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Calls computeRow on each row, in parallel.
+	 */
+	private abstract static class RowsTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+
+		RowsTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		abstract void computeRow(int i);
+
+		@Override
+		protected void compute() {
+			if (to - from <= ROWS_PER_TASK) {
+				for (int i = from; i < to; i++) {
+					computeRow(i);
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			final RowsTask outer = this;
+			invokeAll(new RowsTask(from, middle) {
+				@Override
+				void computeRow(int i) {
+					outer.computeRow(i);
+				}
+			}, new RowsTask(middle, to) {
+				@Override
+				void computeRow(int i) {
+					outer.computeRow(i);
+				}
+			});
+		}
+	}
+}
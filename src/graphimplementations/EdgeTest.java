@@ -54,4 +54,22 @@ public class EdgeTest {
 		
 		assertTrue(loop.isLoop());
 	}
-}
\ No newline at end of file
+	
+	@Theory
+	public void undirectedValue_equalsBuilt_notAttached(Vertex v, Vertex w) {
+		int noOfEdges = v.getNoOfEdges();
+		Edge value = Edge.undirected(w, v);
+		
+		assertEquals(Edge.between(v).and(w), value);
+		assertEquals(noOfEdges + 1, v.getNoOfEdges());
+	}
+	
+	@Theory
+	public void directedValue_notAttached(Vertex v, Vertex w) {
+		int noOfEdges = v.getNoOfEdges();
+		Edge value = Edge.directed(v, w);
+		
+		assertTrue(value.isDirected());
+		assertEquals(noOfEdges, v.getNoOfEdges());
+	}
+}
@@ -1,24 +1,31 @@
 package graphimplementations;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
-import com.google.common.base.Predicate;
 import com.google.common.collect.HashMultiset;
-import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multiset;
+import com.google.common.collect.Multisets;
 import com.google.common.collect.Sets;
 
 import abstractclasses.AbstractGraph;
+import interfaces.EdgeConsumer;
 
 /**
  * 
  * A class to implement a multigraph, seen as a collection of vertices and edges
  * (possibly repeated) between these. The graph can be directed or undirected.
+ * For each vertex, the graph also keeps the edges at it (or from it and to 
+ * it, if directed), so that the edges at one vertex are found without 
+ * looking at all the edges. The vertices are numbered 0 ... n - 1 (see 
+ * getIndexOf): when a vertex is removed, the last one takes its index.
  * 
  * @author mmcasetti
  * 
@@ -26,9 +33,16 @@ import abstractclasses.AbstractGraph;
 
 public class EdgesGraph extends AbstractGraph {
 
+	private List<Vertex> listOfVertices;
+	private Map<Vertex, Integer> indices;
+	// the keys of indices
 	private Set<Vertex> vertices;
 	private Multiset<Edge> undirectedEdges;
 	private Multiset<Edge> directedEdges;
+	// for each vertex, the edges at it (undirected) or from it (directed)
+	private Map<Vertex, Multiset<Edge>> incidentEdges;
+	// for each vertex, the directed edges to it
+	private Map<Vertex, Multiset<Edge>> incomingEdges;
 
 	/**
 	 * @param vertices: vertices of the graph
@@ -36,12 +50,13 @@ public class EdgesGraph extends AbstractGraph {
 	 * @param directed: directed edges of the graph
 	 * if there are directed edges, there are no undirected edges - and 
 	 * vice versa.
+	 * The vertices and the edges are copied.
 	 * 
 	 */
 	public EdgesGraph(Set<Vertex> vertices, Multiset<Edge> undirectedEdges, Multiset<Edge> directedEdges) {
 		if (!undirectedEdges.isEmpty()) {
 			Preconditions.checkArgument(directedEdges.isEmpty(), "Choose between directed and undirected graph.");
-			for (Edge edge : undirectedEdges) {
+			for (Edge edge : undirectedEdges.elementSet()) {
 				Preconditions.checkArgument(
 						vertices.contains(edge.getStart()) && vertices.contains(edge.getEnd()),
 						"Endpoints of edges not in vertices");
@@ -50,7 +65,7 @@ public class EdgesGraph extends AbstractGraph {
 		}
 		if (!directedEdges.isEmpty()) {
 			Preconditions.checkArgument(undirectedEdges.isEmpty(), "Choose between directed and undirected graph.");
-			for (Edge edge : directedEdges) {
+			for (Edge edge : directedEdges.elementSet()) {
 				Preconditions.checkArgument(
 						vertices.contains(edge.getStart()) && vertices.contains(edge.getEnd()),
 						"Endpoints of edges not in vertices");
@@ -58,24 +73,35 @@ public class EdgesGraph extends AbstractGraph {
 			}
 		}
 		
-		this.vertices = vertices;
-		this.undirectedEdges = undirectedEdges;
-		this.directedEdges = directedEdges;
+		this.listOfVertices = Lists.newArrayList(vertices);
+		this.indices = Maps.newHashMapWithExpectedSize(vertices.size());
+		for (int i = 0; i < listOfVertices.size(); i++) {
+			indices.put(listOfVertices.get(i), i);
+		}
+		this.vertices = indices.keySet();
+		this.undirectedEdges = HashMultiset.create();
+		this.directedEdges = HashMultiset.create();
+		this.incidentEdges = Maps.newHashMapWithExpectedSize(vertices.size());
+		this.incomingEdges = Maps.newHashMapWithExpectedSize(vertices.size());
+		for (Vertex v : vertices) {
+			incidentEdges.put(v, HashMultiset.<Edge>create());
+			incomingEdges.put(v, HashMultiset.<Edge>create());
+		}
+		for (Multiset.Entry<Edge> entry : undirectedEdges.entrySet()) {
+			putEdge(entry.getElement(), entry.getCount());
+		}
+		for (Multiset.Entry<Edge> entry : directedEdges.entrySet()) {
+			putEdge(entry.getElement(), entry.getCount());
+		}
 	}
 
 	/**
 	 * @param originalGraph is copied
 	 */
 	public EdgesGraph(EdgesGraph originalGraph) {
-		Set<Vertex> newVertices = Sets.newHashSet(originalGraph.getVertices());
-		Multiset<Edge> newUndirectedEdges = HashMultiset.create();
-		newUndirectedEdges.addAll(originalGraph.getUndirectedEdges());
-		Multiset<Edge> newDirectedEdges = HashMultiset.create();
-		newDirectedEdges.addAll(originalGraph.getDirectedEdges());
-		
-		this.vertices = newVertices;
-		this.undirectedEdges = newUndirectedEdges;
-		this.directedEdges = newDirectedEdges;
+		this(originalGraph.getVertices(), 
+				originalGraph.getUndirectedEdges(), 
+				originalGraph.getDirectedEdges());
 	}
 
 	/**
@@ -87,19 +113,87 @@ public class EdgesGraph extends AbstractGraph {
 				HashMultiset.<Edge>create());
 	}
 
+	/**
+	 * Adds the edge (times times) to the edges of the graph and to the edges 
+	 * at its endpoints.
+	 */
+	private void putEdge(Edge edge, int times) {
+		incidentEdges.get(edge.getStart()).add(edge, times);
+		if (edge.isDirected()) {
+			directedEdges.add(edge, times);
+			incomingEdges.get(edge.getEnd()).add(edge, times);
+		} else {
+			undirectedEdges.add(edge, times);
+			if (!edge.isLoop()) {
+				incidentEdges.get(edge.getEnd()).add(edge, times);
+			}
+		}
+		edgesChanged(indices.get(edge.getStart()), indices.get(edge.getEnd()), times);
+	}
+
+	/**
+	 * Removes the edge (times times) from the edges of the graph and from the 
+	 * edges at its endpoints.
+	 */
+	private void takeEdge(Edge edge, int times) {
+		incidentEdges.get(edge.getStart()).remove(edge, times);
+		if (edge.isDirected()) {
+			directedEdges.remove(edge, times);
+			incomingEdges.get(edge.getEnd()).remove(edge, times);
+		} else {
+			undirectedEdges.remove(edge, times);
+			if (!edge.isLoop()) {
+				incidentEdges.get(edge.getEnd()).remove(edge, times);
+			}
+		}
+		edgesChanged(indices.get(edge.getStart()), indices.get(edge.getEnd()), -times);
+	}
+
+	/**
+	 * 
+	 * @param vertex
+	 * @return the edges at vertex (undirected graph) or from vertex (directed 
+	 * graph) - not a copy
+	 */
+	private Multiset<Edge> getIncidentEdges(Vertex vertex) {
+		Multiset<Edge> edges = incidentEdges.get(vertex);
+		Preconditions.checkArgument(edges != null, "Vertex not in graph.");
+		return edges;
+	}
+
+	/**
+	 * 
+	 * @param vertex
+	 * @return the directed edges to vertex - not a copy
+	 */
+	private Multiset<Edge> getIncomingEdges(Vertex vertex) {
+		Multiset<Edge> edges = incomingEdges.get(vertex);
+		Preconditions.checkArgument(edges != null, "Vertex not in graph.");
+		return edges;
+	}
+
+	/**
+	 * @return the vertices of the graph (read-only)
+	 */
 	@Override
 	public Set<Vertex> getVertices() {
-		return vertices;
+		return Collections.unmodifiableSet(vertices);
 	}
 
+	/**
+	 * @return the undirected edges of the graph (read-only)
+	 */
 	@Override
 	public Multiset<Edge> getUndirectedEdges() {
-		return undirectedEdges;
+		return Multisets.unmodifiableMultiset(undirectedEdges);
 	}
 
+	/**
+	 * @return the directed edges of the graph (read-only)
+	 */
 	@Override
 	public Multiset<Edge> getDirectedEdges() {
-		return directedEdges;
+		return Multisets.unmodifiableMultiset(directedEdges);
 	}
 
 	@Override
@@ -115,7 +209,7 @@ public class EdgesGraph extends AbstractGraph {
 		
 		Multiset<Edge> edges = HashMultiset.create();
 		for (Edge d : getDirectedEdges()) {
-			Edge e = Edge.between(d.getStart()).and(d.getEnd());
+			Edge e = Edge.undirected(d.getStart(), d.getEnd());
 			edges.add(e);
 		}
 		Multiset<Edge> directed = HashMultiset.create();		
@@ -130,9 +224,9 @@ public class EdgesGraph extends AbstractGraph {
 		
 		Multiset<Edge> directed = HashMultiset.create();
 		for (Edge e : getUndirectedEdges()) {
-			Edge d1 = Edge.from(e.getStart()).to(e.getEnd());
+			Edge d1 = Edge.directed(e.getStart(), e.getEnd());
 			directed.add(d1);
-			Edge d2 = Edge.from(e.getEnd()).to(e.getStart());
+			Edge d2 = Edge.directed(e.getEnd(), e.getStart());
 			directed.add(d2);
 		}
 		Multiset<Edge> edges = HashMultiset.create();		
@@ -144,211 +238,275 @@ public class EdgesGraph extends AbstractGraph {
 		return getVertices().size();
 	}
 
+	@Override
+	public int getIndexOf(Vertex vertex) {
+		Integer index = indices.get(vertex);
+		Preconditions.checkArgument(index != null, "Vertex not in graph.");
+		return index;
+	}
+
+	@Override
+	public Vertex getVertexAt(int index) {
+		return listOfVertices.get(index);
+	}
+
+	@Override
+	public void forEachEdge(EdgeConsumer consumer) {
+		for (Multiset.Entry<Edge> entry : undirectedEdges.entrySet()) {
+			int start = indices.get(entry.getElement().getStart());
+			int end = indices.get(entry.getElement().getEnd());
+			consumer.accept(Math.min(start, end), Math.max(start, end), entry.getCount());
+		}
+		for (Multiset.Entry<Edge> entry : directedEdges.entrySet()) {
+			int start = indices.get(entry.getElement().getStart());
+			int end = indices.get(entry.getElement().getEnd());
+			consumer.accept(start, end, entry.getCount());
+		}
+	}
+
+	@Override
+	public void forEachNeighbor(int index, EdgeConsumer consumer) {
+		Vertex vertex = listOfVertices.get(index);
+		for (Multiset.Entry<Edge> entry : getIncidentEdges(vertex).entrySet()) {
+			Edge edge = entry.getElement();
+			Vertex neighbor = edge.getStart().equals(vertex) ? edge.getEnd() : edge.getStart();
+			consumer.accept(index, indices.get(neighbor), entry.getCount());
+		}
+	}
+
 	@Override
 	public Multiset<Edge> getEdgesAt(Vertex vertex) {
 		Preconditions.checkArgument(!isDirected(), "Undirected graph");
-		Multiset<Edge> edgesAt = HashMultiset.create();
-		for (Edge e : getUndirectedEdges()) {
-			if (e.getStart().equals(vertex) || e.getEnd().equals(vertex)) {
-				edgesAt.add(e);
-			}
-		}
-		return edgesAt;
+
+		return HashMultiset.create(getIncidentEdges(vertex));
 	}	
 	
 	@Override
 	public Multiset<Edge> getEdgesFrom(Vertex vertex) {
 		Preconditions.checkArgument(isDirected(), "Directed graph");
 		
-		Multiset<Edge> edgesFrom = HashMultiset.create(); 
-		for (Edge d : getDirectedEdges()) {
-			if (d.getStart().equals(vertex)) {
-				edgesFrom.add(d);
-			}
-		}
-		return edgesFrom;
+		return HashMultiset.create(getIncidentEdges(vertex));
 	}
 
 	@Override
 	public Multiset<Edge> getEdgesTo(Vertex vertex) {
 		Preconditions.checkArgument(isDirected(), "Directed graph");
 
-		Multiset<Edge> edgesTo = HashMultiset.create(); 
-		for (Edge d : getDirectedEdges()) {
-			if (d.getEnd().equals(vertex)) {
-				edgesTo.add(d);
-			}
-		}
-		return edgesTo;
+		return HashMultiset.create(getIncomingEdges(vertex));
 	}
 
 	@Override
 	public int getDegreeAt(Vertex vertex) {
-		return getEdgesAt(vertex).size();
+		Preconditions.checkArgument(!isDirected(), "Undirected graph");
+
+		return getIncidentEdges(vertex).size();
 	}
 
 	@Override
 	public int getOutdegreeAt(Vertex vertex) {
-		return getEdgesFrom(vertex).size();
+		Preconditions.checkArgument(isDirected(), "Directed graph");
+
+		return getIncidentEdges(vertex).size();
 	}
 
 	@Override
 	public int getIndegreeAt(Vertex vertex) {
-		return getEdgesTo(vertex).size();
+		Preconditions.checkArgument(isDirected(), "Directed graph");
+
+		return getIncomingEdges(vertex).size();
 	}
 
 	@Override
 	public void addVertices(Set<Vertex> newVertices) {
 		for (Vertex v : newVertices) {
-			Preconditions.checkArgument(!getVertices().contains(v),
+			Preconditions.checkArgument(!vertices.contains(v),
 					"New vertex already in graph.");
 		}
 
-		getVertices().addAll(newVertices);
+		for (Vertex v : newVertices) {
+			indices.put(v, listOfVertices.size());
+			listOfVertices.add(v);
+			incidentEdges.put(v, HashMultiset.<Edge>create());
+			incomingEdges.put(v, HashMultiset.<Edge>create());
+		}
 	}
 
 	@Override
 	public void removeVertex(Vertex vertex) {
-		Preconditions.checkArgument(getVertices().contains(vertex),
+		Preconditions.checkArgument(vertices.contains(vertex),
 				"Vertex not in graph.");
 
-		if (!isDirected()) {
-			for (Edge e : getEdgesAt(vertex)) {
-				getUndirectedEdges().remove(e);
-			}			
-		} else {
-			for (Edge d : getEdgesFrom(vertex)) {
-				getDirectedEdges().remove(d);
-			}
-			for (Edge d : getEdgesTo(vertex)) {
-				getDirectedEdges().remove(d);
-			}
+		for (Multiset.Entry<Edge> entry : HashMultiset.create(getIncidentEdges(vertex)).entrySet()) {
+			takeEdge(entry.getElement(), entry.getCount());
+		}
+		for (Multiset.Entry<Edge> entry : HashMultiset.create(getIncomingEdges(vertex)).entrySet()) {
+			takeEdge(entry.getElement(), entry.getCount());
 		}
-		getVertices().remove(vertex);
+		// the last vertex takes the index of the removed one
+		int index = indices.remove(vertex);
+		Vertex last = listOfVertices.remove(listOfVertices.size() - 1);
+		if (index < listOfVertices.size()) {
+			listOfVertices.set(index, last);
+			indices.put(last, index);
+		}
+		incidentEdges.remove(vertex);
+		incomingEdges.remove(vertex);
+		verticesRemoved();
 	}
 
 	@Override
 	public void addUndirectedEdge(Edge edge) {
-		Preconditions.checkArgument(getVertices().contains(edge.getStart())
-				&& getVertices().contains(edge.getEnd()),
+		Preconditions.checkArgument(vertices.contains(edge.getStart())
+				&& vertices.contains(edge.getEnd()),
 				"Edge's endpoints not in graph.");
 		Preconditions.checkArgument(!edge.isDirected() && !isDirected(), 
 				"Use addDirectedEdge.");
 
-		getUndirectedEdges().add(edge);
+		putEdge(edge, 1);
 	}
 
 	@Override
 	public void addDirectedEdge(Edge edge) {
-		Preconditions.checkArgument(getVertices().contains(edge.getStart())
-				&& getVertices().contains(edge.getEnd()),
+		Preconditions.checkArgument(vertices.contains(edge.getStart())
+				&& vertices.contains(edge.getEnd()),
 				"Edge's endpoints not in graph.");
 		Preconditions.checkArgument(edge.isDirected() && isDirected(), 
 				"Use addUndirectedEdge");
 
-		getDirectedEdges().add(edge);
+		putEdge(edge, 1);
 	}
 
 	@Override
 	public void addUndirectedEdge(Vertex start, Vertex end) {
 		Preconditions.checkArgument(
-				getVertices().contains(start) && getVertices().contains(end),
+				vertices.contains(start) && vertices.contains(end),
 				"Edge's endpoints not in graph.");
 		Preconditions.checkArgument(!isDirected(), 
 				"Use addDirectedEdge.");
 
-		Edge edge = Edge.between(start).and(end);
-		getUndirectedEdges().add(edge);
+		Edge edge = Edge.undirected(start, end);
+		putEdge(edge, 1);
 	}
 
 	@Override
 	public void addDirectedEdge(Vertex start, Vertex end) {
 		Preconditions.checkArgument(
-				getVertices().contains(start) && getVertices().contains(end),
+				vertices.contains(start) && vertices.contains(end),
 				"Edge's endpoints not in graph.");
 		Preconditions.checkArgument(isDirected(), 
 				"Use addUndirectedEdge.");
 
-		Edge edge = Edge.from(start).to(end);
-		getDirectedEdges().add(edge);
+		Edge edge = Edge.directed(start, end);
+		putEdge(edge, 1);
 	}
 
 	@Override
 	public void removeUndirectedEdge(Edge edge) {
-		Preconditions.checkArgument(getVertices().contains(edge.getStart())
-				&& getVertices().contains(edge.getEnd()),
+		Preconditions.checkArgument(vertices.contains(edge.getStart())
+				&& vertices.contains(edge.getEnd()),
 				"Edge's endpoints not in graph.");
 		Preconditions.checkArgument(!edge.isDirected() && !isDirected(),
 				"Use removeDirectedEdge.");
-		Preconditions.checkArgument(getUndirectedEdges().contains(edge), 
+		Preconditions.checkArgument(undirectedEdges.contains(edge), 
 				"Edge not in graph.");
 
-		getUndirectedEdges().remove(edge);
+		takeEdge(edge, 1);
 	}
 
 	@Override
 	public void removeDirectedEdge(Edge edge) {
-		Preconditions.checkArgument(getVertices().contains(edge.getStart())
-				&& getVertices().contains(edge.getEnd()),
+		Preconditions.checkArgument(vertices.contains(edge.getStart())
+				&& vertices.contains(edge.getEnd()),
 				"Edge's endpoints not in graph.");
 		Preconditions.checkArgument(edge.isDirected() && isDirected(), 
 				"Use removeUndirectedEdge.");
 		Preconditions.checkArgument(
-				getDirectedEdges().contains(edge),
+				directedEdges.contains(edge),
 				"Edge not in graph.");
 
-		getDirectedEdges().remove(edge);
+		takeEdge(edge, 1);
 	}
 
 	@Override
 	public void removeUndirectedEdge(Vertex start, Vertex end) {
-		Preconditions.checkArgument(getVertices().contains(start) && 
-				getVertices().contains(end), "Edge's endpoints not in graph.");
+		Preconditions.checkArgument(vertices.contains(start) && 
+				vertices.contains(end), "Edge's endpoints not in graph.");
 		Preconditions.checkArgument(!isDirected(), 
 				"Use removeDirectedEdge.");
 		
-		Edge edge = Edge.between(start).and(end);
-		Preconditions.checkArgument(getUndirectedEdges().contains(edge), 
+		Edge edge = Edge.undirected(start, end);
+		Preconditions.checkArgument(undirectedEdges.contains(edge), 
 				"Edge not in graph.");
 
-		getUndirectedEdges().remove(edge);
+		takeEdge(edge, 1);
 	}
 
 	@Override
 	public void removeDirectedEdge(Vertex start, Vertex end) {
 		Preconditions.checkArgument(
-				getVertices().contains(start) && getVertices().contains(end),
+				vertices.contains(start) && vertices.contains(end),
 				"Edge's endpoints not in graph.");
 		Preconditions.checkArgument(isDirected(), 
 				"Use removeUndirectedEdge.");
-		Edge edge = Edge.from(start).to(end);
+		Edge edge = Edge.directed(start, end);
 		Preconditions.checkArgument(directedEdges.contains(edge),
 				"Edge not in graph.");
 
-		getDirectedEdges().remove(edge);
+		takeEdge(edge, 1);
 	}
 	
-	public boolean isEulerian() {
-		if (!isDirected()) {
-			for (Vertex v : getVertices()) {
-				Multiset<Edge> edgesWithoutLoopsAt = HashMultiset.create();
-				for (Edge e : getEdgesAt(v)) {
-					if (!e.isLoop()) {
-						edgesWithoutLoopsAt.add(e);
-					}
-				}
-				if (edgesWithoutLoopsAt.size() % 2 != 0) {
-					return false;
-				}
-			}
-		} else {
-			for (Vertex v : getVertices()) {
-				if ((getOutdegreeAt(v) != getIndegreeAt(v))) {
-					return false;
-				}
+	/**
+	 * Checks that the edges are all directed or all undirected, like the 
+	 * edges already in the graph, with endpoints in the graph.
+	 */
+	private void checkEdges(Multiset<Edge> edges) {
+		boolean hasEdges = !undirectedEdges.isEmpty() || !directedEdges.isEmpty();
+		Boolean directed = hasEdges ? isDirected() : null;
+		for (Edge edge : edges.elementSet()) {
+			Preconditions.checkArgument(vertices.contains(edge.getStart())
+					&& vertices.contains(edge.getEnd()),
+					"Edge's endpoints not in graph.");
+			if (directed == null) {
+				directed = edge.isDirected();
 			}
+			Preconditions.checkArgument(edge.isDirected() == directed,
+					"Choose between directed and undirected graph.");
+		}
+	}
+
+	@Override
+	public void addEdges(Multiset<Edge> edges) {
+		checkEdges(edges);
+
+		for (Multiset.Entry<Edge> entry : edges.entrySet()) {
+			putEdge(entry.getElement(), entry.getCount());
+		}
+	}
+
+	@Override
+	public void removeEdges(Multiset<Edge> edges) {
+		checkEdges(edges);
+		for (Multiset.Entry<Edge> entry : edges.entrySet()) {
+			Multiset<Edge> graphEdges = entry.getElement().isDirected() ? directedEdges : undirectedEdges;
+			Preconditions.checkArgument(graphEdges.count(entry.getElement()) >= entry.getCount(),
+					"Edge not in graph.");
+		}
+
+		for (Multiset.Entry<Edge> entry : edges.entrySet()) {
+			takeEdge(entry.getElement(), entry.getCount());
+		}
+	}
+
+	@Override
+	public void removeVertices(Set<Vertex> verticesToRemove) {
+		for (Vertex v : verticesToRemove) {
+			Preconditions.checkArgument(vertices.contains(v),
+					"Vertex not in graph.");
+		}
+
+		for (Vertex v : Lists.newArrayList(verticesToRemove)) {
+			removeVertex(v);
 		}
-		return true;
 	}
 
 	public boolean isPerfectMatching(Multiset<Edge> subset) {
@@ -388,188 +546,37 @@ public class EdgesGraph extends AbstractGraph {
 		return true;
 	}
 	
-	public Optional<List<Vertex>> mergeTours(Optional<List<Vertex>> tour1,
-			Optional<List<Vertex>> tour2, Vertex junction) {
-		Preconditions.checkArgument(vertices.contains(junction),
-				"Junction not in graph");
-		Preconditions.checkArgument(tour1.get().contains(junction),
-				"Junction not in tour1");
-		Preconditions.checkArgument(tour2.get().contains(junction),
-				"Junction not in tour2");
-		Preconditions.checkArgument(getVertices().containsAll(tour1.get())
-				&& vertices.containsAll(tour2.get()),
-				"Tours not a subset of vertices");
-
-		List<Vertex> tour3 = Lists.newArrayList();
-
-		if (!tour1.isPresent() && !tour2.isPresent()) {
-			return Optional.absent();
-		} else if (!tour1.isPresent()) {
-			return tour2;
-		} else if (!tour2.isPresent()) {
-			return tour1;
-		}
-
-		int i = 0;
-		while (i <= tour1.get().indexOf(junction)) {
-			tour3.add(tour1.get().get(i));
-			i++;
-		}
-		int j = 1;
-		while (j < tour2.get().size()) {
-			tour3.add(tour2.get().get((j + tour2.get().indexOf(junction)) % tour2.get().size()));
-			j++;
-		}
-		while (i < tour1.get().size()) {
-			tour3.add(tour1.get().get(i));
-			i++;
-		}
-
-		return Optional.of(tour3);
-	}
-
-	public List<Vertex> getCycleInEulerian(EdgesGraph graph,
-			Vertex startNode) {
-		Preconditions.checkArgument(vertices.contains(startNode),
-				"Start node not in graph");
-		Preconditions.checkArgument(graph.isEulerian(), "Use getCycle");
-
-		List<Vertex> cycle = Lists.newArrayList();
-		Vertex currentNode = startNode;
-		EdgesGraph copyOfGraph = new EdgesGraph(graph);
-
-		if (!graph.isDirected()) {
-			do {
-				cycle.add(currentNode);
-				
-				Edge loop = Edge.between(currentNode).and(currentNode);
-				while (copyOfGraph.getUndirectedEdges().contains(loop)) {
-					cycle.add(currentNode);
-					copyOfGraph.removeUndirectedEdge(loop);
-				}
-				Multiset<Edge> edgesAt = copyOfGraph.getEdgesAt(currentNode);
-				
-				if (edgesAt.isEmpty()) {
-					return cycle;
-				}
-				Edge edgeFromCurrentNode = Iterables.getLast(edgesAt);
-				Vertex nextNode = (edgeFromCurrentNode.getStart()
-						.equals(currentNode)) ? edgeFromCurrentNode.getEnd()
-						: edgeFromCurrentNode.getStart();
-
-				copyOfGraph.removeUndirectedEdge(currentNode, nextNode);
-				currentNode = nextNode;
-			} while (!currentNode.equals(startNode));			
-		} else {
-			do {
-				cycle.add(currentNode);
-				
-				Edge loop = Edge.from(currentNode).to(currentNode);
-				while (copyOfGraph.getDirectedEdges().contains(loop)) {
-					cycle.add(currentNode);
-					copyOfGraph.removeDirectedEdge(loop);
-				}
-
-				Multiset<Edge> edgesFrom = copyOfGraph.getEdgesFrom(currentNode);
-				if (edgesFrom.isEmpty()) {
-					return cycle;
-				}
-				Edge edgeFromCurrentNode = Iterables.getLast(edgesFrom);
-				Vertex nextNode = edgeFromCurrentNode.getEnd();
-
-				copyOfGraph.removeDirectedEdge(currentNode, nextNode);
-				currentNode = nextNode;
-			} while (!currentNode.equals(startNode));			
-		}
-		
-		return cycle;
-	}
-	
-	// TODO check from here (test etc)
-
-	// TODO (error/failure in tests!)
-	// Hierholzer's algorithm	
+	/**
+	 * Hierholzer's algorithm (see EulerianWalk), in time O(V + E).
+	 * 
+	 * @return the vertices of a closed walk from startNode using each edge 
+	 * once, without startNode again at the end (just startNode, if there 
+	 * are no edges)
+	 */
 	public List<Vertex> getEulerianCycle(EdgesGraph graph, Vertex startNode) {
-		Preconditions.checkArgument(vertices.contains(startNode),
+		Preconditions.checkArgument(graph.getVertices().contains(startNode),
 				"Start node not in graph");
-		Preconditions.checkArgument(graph.isEulerian(), "Graph not Eulerian.");
-		Preconditions.checkArgument(graph.isConnected(), "Graph not connected.");
 		
-		if (!graph.isDirected()) {			
-			final EdgesGraph copyOfGraph = new EdgesGraph(graph);
-
-			List<Vertex> cycle1 = copyOfGraph.getCycleInEulerian(copyOfGraph, startNode);			
-			
-			for (int i = 0; i < cycle1.size() - 1; i++) {
-				copyOfGraph.removeUndirectedEdge(cycle1.get(i), cycle1.get(i + 1));
-			}
-			copyOfGraph.removeUndirectedEdge(cycle1.get(cycle1.size() - 1), cycle1.get(0));
-
-			while (!copyOfGraph.getUndirectedEdges().isEmpty()) {
-				Vertex junction = Iterables.find(cycle1,
-						new Predicate<Vertex>() {
-							@Override
-							public boolean apply(Vertex vertex) {
-								return copyOfGraph.getDegreeAt(vertex) > 0;
-							}
-						});
-								
-				List<Vertex> cycle2 = copyOfGraph.getCycleInEulerian(copyOfGraph, junction);				
-				for (int i = 0; i < cycle2.size() - 1; i++) {
-					copyOfGraph.removeUndirectedEdge(cycle2.get(i), cycle2.get(i + 1));
-				}
-				copyOfGraph.removeUndirectedEdge(cycle2.get(cycle2.size() - 1), cycle2.get(0));
-				
-				cycle1 = graph.mergeTours(Optional.of(cycle1),
-						Optional.of(cycle2), junction).get();
-			}
-			
-			return cycle1;
-		} else {
-			final EdgesGraph copyOfGraph = new EdgesGraph(graph);
-			List<Vertex> cycle1 = copyOfGraph.getCycleInEulerian(copyOfGraph, startNode);
-			
-			for (int i = 0; i < cycle1.size() - 1; i++) {
-				copyOfGraph.removeDirectedEdge(cycle1.get(i), cycle1.get(i + 1));
-			}
-			copyOfGraph.removeDirectedEdge(cycle1.get(cycle1.size() - 1), cycle1.get(0));
-			
-			while (!copyOfGraph.getDirectedEdges().isEmpty()) {
-				Vertex junction = Iterables.find(cycle1,
-						new Predicate<Vertex>() {
-							@Override
-							public boolean apply(Vertex vertex) {
-								return copyOfGraph.getOutdegreeAt(vertex) > 0;
-							}
-						});
-				
-				List<Vertex> cycle2 = copyOfGraph.getCycleInEulerian(copyOfGraph, junction);				
-				for (int i = 0; i < cycle2.size() - 1; i++) {
-					copyOfGraph.removeDirectedEdge(cycle2.get(i), cycle2.get(i + 1));
-				}
-				copyOfGraph.removeDirectedEdge(cycle2.get(cycle2.size() - 1), cycle2.get(0));
-				
-				cycle1 = graph.mergeTours(Optional.of(cycle1),
-						Optional.of(cycle2), junction).get();
-			}			
-			return cycle1;
-		}
+		return EulerianWalk.cycle(graph, startNode);
 	}
 
-	// TODO (with DFS on edges)
+	/**
+	 * @return the Eulerian cycle from startNode (see getEulerianCycle), or 
+	 * absent if the graph is not Eulerian, or its edges are not all 
+	 * reachable from startNode
+	 */
 	public Optional<List<Vertex>> getCycle(EdgesGraph graph, Vertex startNode) {
 		Preconditions.checkArgument(graph.getVertices().contains(startNode), "startNode not in graph");
 		
-		if (graph.isEulerian()) {
-			return Optional.of(graph.getCycleInEulerian(graph, startNode));
+		boolean hasEdges = !graph.undirectedEdges.isEmpty() || !graph.directedEdges.isEmpty();
+		boolean isStartIsolated = graph.getIncidentEdges(startNode).isEmpty() 
+				&& graph.getIncomingEdges(startNode).isEmpty();
+		if (!graph.isEulerian() || !graph.isConnectedIgnoringIsolatedVertices() 
+				|| (hasEdges && isStartIsolated)) {
+			return Optional.absent();
 		}
 		
-		return Optional.absent();
-	}
-	
-	// TODO
-	public boolean isConnected() {
-		return true;
+		return Optional.of(EulerianWalk.cycle(graph, startNode));
 	}
 	
 }
\ No newline at end of file
@@ -0,0 +1,246 @@
+package graphimplementations;
+
+import interfaces.EdgeConsumer;
+import interfaces.Graph;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+/**
+ *
+ * Hierholzer's algorithm, iterative, in time O(V + E): walks from a vertex
+ * using the edges not used yet, and when stuck at a vertex, backs up to the
+ * last vertex of the walk with edges left and walks from there, splicing
+ * the new closed walk into the old one.
+ *
+ * The edges are copied once, via forEachEdge, into rows like those of a
+ * CsrGraph (offsets, neighbors, remaining multiplicities), so that using an
+ * edge decrements a counter and no Edge is built; a cursor per vertex skips
+ * the entries already used up. In an undirected graph, each entry of a row
+ * knows the position of the same edges in the row of the other endpoint
+ * (a loop is a single entry). A walk can be computed only once.
+ *
+ * The degrees are counted while copying the edges, so that the start of an
+ * open walk is found without asking the graph for them.
+ *
+ * @author mmcasetti
+ *
+ */
+final class EulerianWalk {
+	private final int[] offsets;
+	private final int[] neighbors;
+	private final int[] remaining;
+	// for each entry of an undirected graph, the entry of the same edges in
+	// the other row (itself, for a loop); null if directed
+	private final int[] mirror;
+	// out minus in, if directed; the degree without loops, if undirected
+	private final int[] balance;
+	private final long noOfEdges;
+	private boolean isUsed;
+
+	EulerianWalk(Graph graph) {
+		final boolean isDirected = graph.isDirected();
+		final int n = graph.getNoOfVertices();
+		// first count the entries of each row, then fill them in
+		final int[] offsets = new int[n + 1];
+		final int[] balance = new int[n];
+		final long[] noOfEdges = new long[1];
+		graph.forEachEdge(new EdgeConsumer() {
+			@Override
+			public void accept(int start, int end, int multiplicity) {
+				offsets[start + 1]++;
+				if (!isDirected && start != end) {
+					offsets[end + 1]++;
+				}
+				if (isDirected) {
+					balance[start] += multiplicity;
+					balance[end] -= multiplicity;
+				} else if (start != end) {
+					balance[start] += multiplicity;
+					balance[end] += multiplicity;
+				}
+				noOfEdges[0] += multiplicity;
+			}
+		});
+		for (int i = 0; i < n; i++) {
+			offsets[i + 1] += offsets[i];
+		}
+		final int[] neighbors = new int[offsets[n]];
+		final int[] remaining = new int[offsets[n]];
+		final int[] mirror = isDirected ? null : new int[offsets[n]];
+		final int[] next = Arrays.copyOf(offsets, n);
+		graph.forEachEdge(new EdgeConsumer() {
+			@Override
+			public void accept(int start, int end, int multiplicity) {
+				int position = next[start]++;
+				neighbors[position] = end;
+				remaining[position] = multiplicity;
+				if (!isDirected) {
+					if (start == end) {
+						mirror[position] = position;
+					} else {
+						int other = next[end]++;
+						neighbors[other] = start;
+						remaining[other] = multiplicity;
+						mirror[position] = other;
+						mirror[other] = position;
+					}
+				}
+			}
+		});
+
+		this.offsets = offsets;
+		this.neighbors = neighbors;
+		this.remaining = remaining;
+		this.mirror = mirror;
+		this.balance = balance;
+		this.noOfEdges = noOfEdges[0];
+	}
+
+	long getNoOfEdges() {
+		return noOfEdges;
+	}
+
+	/**
+	 * @return if each vertex has even degree (if undirected) or as many
+	 * edges in as out (if directed)
+	 */
+	boolean isEulerian() {
+		for (int v = 0; v < balance.length; v++) {
+			if (!isBalanced(v)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean isBalanced(int v) {
+		return (mirror == null) ? balance[v] == 0 : balance[v] % 2 == 0;
+	}
+
+	/**
+	 * @return the vertex an open Eulerian walk must start from: the first of
+	 * the two vertices of odd degree (if undirected), or the vertex with one
+	 * edge out more than in (if directed); if there are none, the first
+	 * vertex with edges (or 0); -1 if the degrees allow no Eulerian walk
+	 */
+	int getPathStart() {
+		int start = -1;
+		int noOfUnbalanced = 0;
+		for (int v = 0; v < balance.length; v++) {
+			if (isBalanced(v)) {
+				continue;
+			}
+			noOfUnbalanced++;
+			if (mirror == null && (balance[v] < -1 || balance[v] > 1)) {
+				return -1;
+			}
+			if (start == -1 && (mirror != null || balance[v] == 1)) {
+				start = v;
+			}
+		}
+		if (noOfUnbalanced == 2) {
+			return start;
+		}
+		if (noOfUnbalanced > 0) {
+			return -1;
+		}
+		for (int v = 0; v < balance.length; v++) {
+			if (offsets[v + 1] > offsets[v]) {
+				return v;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * The degrees are not checked: if the graph is Eulerian (or, for an open
+	 * walk, start is one of the two vertices of odd degree, or the one with
+	 * an edge out more than in), the walk is Eulerian.
+	 *
+	 * @return the indices of the vertices of a walk from start using each
+	 * edge once (noOfEdges + 1 of them, the first one start), or null if
+	 * some edges cannot be reached from start
+	 */
+	int[] from(int start) {
+		Preconditions.checkState(!isUsed, "Walk already computed.");
+		Preconditions.checkElementIndex(start, offsets.length - 1);
+		isUsed = true;
+		if (noOfEdges + 1 > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("Too many edges for one walk.");
+		}
+
+		int length = (int) noOfEdges + 1;
+		int[] cursors = Arrays.copyOf(offsets, offsets.length - 1);
+		// the walk so far; the vertices popped from it, in reverse order,
+		// are the Eulerian walk (one per edge used, plus start)
+		int[] stack = new int[length];
+		int[] walk = new int[length];
+		int top = 0;
+		int size = length;
+		stack[top++] = start;
+		while (top > 0) {
+			int vertex = stack[top - 1];
+			int k = cursors[vertex];
+			int end = offsets[vertex + 1];
+			while (k < end && remaining[k] == 0) {
+				k++;
+			}
+			cursors[vertex] = k;
+			if (k < end) {
+				remaining[k]--;
+				if (mirror != null && mirror[k] != k) {
+					remaining[mirror[k]]--;
+				}
+				stack[top++] = neighbors[k];
+			} else {
+				top--;
+				walk[--size] = vertex;
+			}
+		}
+		// size > 0 if some edges were not reached
+		return (size == 0) ? walk : null;
+	}
+
+	/**
+	 * @return the vertices of a closed walk from startNode using each edge
+	 * once, without startNode again at the end (just startNode, if there
+	 * are no edges)
+	 */
+	static List<Vertex> cycle(Graph graph, Vertex startNode) {
+		EulerianWalk eulerianWalk = new EulerianWalk(graph);
+		Preconditions.checkArgument(eulerianWalk.isEulerian(), "Graph not Eulerian.");
+		Preconditions.checkArgument(graph.isConnectedIgnoringIsolatedVertices(), "Graph not connected.");
+
+		int[] walk = eulerianWalk.from(graph.getIndexOf(startNode));
+		Preconditions.checkArgument(walk != null, "Start node has no edges.");
+		return toVertices(graph, walk, Math.max(1, walk.length - 1));
+	}
+
+	/**
+	 * @return the vertices of a walk using each edge once (noOfEdges + 1 of
+	 * them): open if two vertices have odd degree, or in and out degrees
+	 * that differ by one; closed otherwise
+	 */
+	static List<Vertex> path(Graph graph) {
+		Preconditions.checkArgument(graph.getNoOfVertices() > 0, "Graph empty.");
+		EulerianWalk eulerianWalk = new EulerianWalk(graph);
+		int start = eulerianWalk.getPathStart();
+		Preconditions.checkArgument(start != -1, "Graph has no Eulerian path.");
+		Preconditions.checkArgument(graph.isConnectedIgnoringIsolatedVertices(), "Graph not connected.");
+
+		int[] walk = eulerianWalk.from(start);
+		return toVertices(graph, walk, walk.length);
+	}
+
+	private static List<Vertex> toVertices(Graph graph, int[] walk, int length) {
+		List<Vertex> vertices = Lists.newArrayListWithCapacity(length);
+		for (int k = 0; k < length; k++) {
+			vertices.add(graph.getVertexAt(walk[k]));
+		}
+		return vertices;
+	}
+}
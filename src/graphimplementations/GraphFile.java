@@ -0,0 +1,267 @@
+package graphimplementations;
+
+import interfaces.EdgeConsumer;
+import interfaces.Graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+import com.google.common.base.Preconditions;
+
+/**
+ *
+ * A binary file format for graphs, read by memory-mapping the file: opening
+ * a graph does not read its edges, whatever its size, and the processes
+ * that open the same file share its pages in the page cache.
+ *
+ * The file is little endian, with each section starting at a multiple of 8:
+ * <pre>
+ * header (64 bytes):  int magic ("GWV1"), int version (1), int flags
+ *                     (1 = directed), int 0, long n (vertices),
+ *                     long m (entries of the rows), long first free label,
+ *                     24 bytes 0
+ * vertex table:       n longs, the label of each vertex
+ * offsets:            n + 1 ints
+ * neighbors:          m ints
+ * multiplicities:     m ints
+ * if directed, the transposed rows: n + 1 ints, m ints, m ints
+ * </pre>
+ * The rows are as in CsrGraph: the entries of row i are offsets[i] ...
+ * offsets[i + 1] - 1, sorted by neighbor.
+ *
+ * The graph read is an OffHeapCsrGraph on the mapped file. Its vertices are
+ * created when first asked for, with the labels of the vertex table in a
+ * new IdSpace (so they are not equal to the vertices written). Each section
+ * is mapped on its own, so it must be less than 2 GB.
+ *
+ * @author mmcasetti
+ *
+ */
+public final class GraphFile {
+	static final int MAGIC = 0x47575631;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 64;
+	private static final int DIRECTED = 1;
+
+	private GraphFile() {
+	}
+
+	/**
+	 * Writes the graph to the file (replacing it), building the rows in the
+	 * mapped file itself: only one row at a time is on the heap. The
+	 * vertices must be all in the same IdSpace.
+	 */
+	public static void write(final Graph graph, File file) throws IOException {
+		int n = graph.getNoOfVertices();
+		IdSpace space = (n == 0) ? IdSpace.GLOBAL : graph.getVertexAt(0).getIdSpace();
+		long firstFreeLabel = 0;
+		for (int i = 0; i < n; i++) {
+			Vertex vertex = graph.getVertexAt(i);
+			Preconditions.checkArgument(vertex.getIdSpace() == space,
+					"Vertices in different id spaces");
+			firstFreeLabel = Math.max(firstFreeLabel, vertex.label + 1);
+		}
+		final long[] m = new long[1];
+		graph.forEachEdge(new EdgeConsumer() {
+			@Override
+			public void accept(int start, int end, int multiplicity) {
+				m[0] += (graph.isDirected() || start == end) ? 1 : 2;
+			}
+		});
+		Preconditions.checkArgument(m[0] <= OffHeapArena.MAX_INTS,
+				"Too many edges for one section");
+		boolean isDirected = graph.isDirected();
+		long[] sections = sections(n, m[0], isDirected);
+
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+		try {
+			randomAccessFile.setLength(0);
+			randomAccessFile.setLength(sections[sections.length - 1]);
+			FileChannel channel = randomAccessFile.getChannel();
+
+			MappedByteBuffer header = map(channel, FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+			header.putInt(MAGIC).putInt(VERSION).putInt(isDirected ? DIRECTED : 0).putInt(0);
+			header.putLong(n).putLong(m[0]).putLong(firstFreeLabel);
+			header.force();
+
+			MappedByteBuffer labelBytes = map(channel, FileChannel.MapMode.READ_WRITE, sections[0], 8L * n);
+			LongBuffer labels = labelBytes.asLongBuffer();
+			for (int i = 0; i < n; i++) {
+				labels.put(i, graph.getVertexAt(i).label);
+			}
+			labelBytes.force();
+
+			MappedByteBuffer offsetBytes = map(channel, FileChannel.MapMode.READ_WRITE, sections[1], 4L * (n + 1));
+			MappedByteBuffer neighborBytes = map(channel, FileChannel.MapMode.READ_WRITE, sections[2], 4 * m[0]);
+			MappedByteBuffer multiplicityBytes = map(channel, FileChannel.MapMode.READ_WRITE, sections[3], 4 * m[0]);
+			IntBuffer offsets = offsetBytes.asIntBuffer();
+			IntBuffer neighbors = neighborBytes.asIntBuffer();
+			IntBuffer multiplicities = multiplicityBytes.asIntBuffer();
+			fillRows(graph, offsets, neighbors, multiplicities);
+			offsetBytes.force();
+			neighborBytes.force();
+			multiplicityBytes.force();
+
+			if (isDirected) {
+				MappedByteBuffer inOffsetBytes = map(channel, FileChannel.MapMode.READ_WRITE, sections[4], 4L * (n + 1));
+				MappedByteBuffer inNeighborBytes = map(channel, FileChannel.MapMode.READ_WRITE, sections[5], 4 * m[0]);
+				MappedByteBuffer inMultiplicityBytes = map(channel, FileChannel.MapMode.READ_WRITE, sections[6], 4 * m[0]);
+				OffHeapCsrGraph.transpose(n, offsets, neighbors, multiplicities, inOffsetBytes.asIntBuffer(),
+						inNeighborBytes.asIntBuffer(), inMultiplicityBytes.asIntBuffer());
+				inOffsetBytes.force();
+				inNeighborBytes.force();
+				inMultiplicityBytes.force();
+			}
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	/**
+	 * Fills in the rows from forEachNeighbor, one at a time, sorted.
+	 */
+	private static void fillRows(Graph graph, final IntBuffer offsets, IntBuffer neighbors, IntBuffer multiplicities) {
+		final long[][] entries = { new long[16] };
+		final int[] size = new int[1];
+		for (int i = 0; i < graph.getNoOfVertices(); i++) {
+			size[0] = 0;
+			graph.forEachNeighbor(i, new EdgeConsumer() {
+				@Override
+				public void accept(int start, int end, int multiplicity) {
+					if (size[0] == entries[0].length) {
+						entries[0] = Arrays.copyOf(entries[0], 2 * size[0]);
+					}
+					// packed so that sorting the longs sorts by neighbor
+					entries[0][size[0]++] = ((long) end << 32) | (multiplicity & 0xFFFFFFFFL);
+				}
+			});
+			Arrays.sort(entries[0], 0, size[0]);
+			int from = offsets.get(i);
+			for (int k = 0; k < size[0]; k++) {
+				neighbors.put(from + k, (int) (entries[0][k] >>> 32));
+				multiplicities.put(from + k, (int) entries[0][k]);
+			}
+			offsets.put(i + 1, from + size[0]);
+		}
+	}
+
+	/**
+	 * Maps the file and checks its header: the edges are not read.
+	 *
+	 * @return the graph in the file, read only, valid until the arena is
+	 * closed
+	 * @throws IOException if the file is not a graph file
+	 */
+	public static OffHeapCsrGraph open(File file, OffHeapArena arena) throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = randomAccessFile.getChannel();
+			if (channel.size() < HEADER_SIZE) {
+				throw new IOException("Not a graph file: " + file);
+			}
+			MappedByteBuffer header = map(channel, FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+			if (header.getInt() != MAGIC) {
+				throw new IOException("Not a graph file: " + file);
+			}
+			int version = header.getInt();
+			if (version != VERSION) {
+				throw new IOException("Unknown graph file version " + version + ": " + file);
+			}
+			boolean isDirected = (header.getInt() & DIRECTED) != 0;
+			header.getInt();
+			long n = header.getLong();
+			long m = header.getLong();
+			long firstFreeLabel = header.getLong();
+			if (n < 0 || n >= OffHeapArena.MAX_INTS || m < 0 || m > OffHeapArena.MAX_INTS) {
+				throw new IOException("Corrupt graph file header: " + file);
+			}
+			long[] sections = sections((int) n, m, isDirected);
+			if (channel.size() != sections[sections.length - 1]) {
+				throw new IOException("Graph file of wrong size: " + file);
+			}
+
+			LongBuffer labels = map(channel, FileChannel.MapMode.READ_ONLY, sections[0], 8 * n).asLongBuffer();
+			IntBuffer offsets = mapInts(channel, sections[1], n + 1);
+			IntBuffer neighbors = mapInts(channel, sections[2], m);
+			IntBuffer multiplicities = mapInts(channel, sections[3], m);
+			IntBuffer inOffsets = isDirected ? mapInts(channel, sections[4], n + 1) : null;
+			IntBuffer inNeighbors = isDirected ? mapInts(channel, sections[5], m) : null;
+			IntBuffer inMultiplicities = isDirected ? mapInts(channel, sections[6], m) : null;
+			// the mappings stay valid after the channel is closed
+			return new OffHeapCsrGraph(new MappedVertices(labels, new IdSpace(firstFreeLabel)),
+					offsets, neighbors, multiplicities, inOffsets, inNeighbors, inMultiplicities,
+					isDirected, arena);
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	/**
+	 * @return the start of each section, then the end of the file
+	 */
+	private static long[] sections(int n, long m, boolean isDirected) {
+		long[] sizes = isDirected
+				? new long[] { 8L * n, 4L * (n + 1), 4 * m, 4 * m, 4L * (n + 1), 4 * m, 4 * m }
+				: new long[] { 8L * n, 4L * (n + 1), 4 * m, 4 * m };
+		long[] sections = new long[sizes.length + 1];
+		sections[0] = HEADER_SIZE;
+		for (int s = 0; s < sizes.length; s++) {
+			sections[s + 1] = (sections[s] + sizes[s] + 7) & ~7L;
+		}
+		return sections;
+	}
+
+	private static MappedByteBuffer map(FileChannel channel, FileChannel.MapMode mode, long position, long size)
+			throws IOException {
+		MappedByteBuffer buffer = channel.map(mode, position, size);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		return buffer;
+	}
+
+	private static IntBuffer mapInts(FileChannel channel, long position, long length) throws IOException {
+		ByteBuffer bytes = map(channel, FileChannel.MapMode.READ_ONLY, position, 4 * length);
+		return bytes.asIntBuffer();
+	}
+
+	/**
+	 * The vertices of the vertex table, each created the first time it is
+	 * asked for.
+	 */
+	private static final class MappedVertices extends AbstractList<Vertex> implements RandomAccess {
+		private final LongBuffer labels;
+		private final IdSpace space;
+		private Vertex[] vertices;
+
+		MappedVertices(LongBuffer labels, IdSpace space) {
+			this.labels = labels;
+			this.space = space;
+		}
+
+		@Override
+		public Vertex get(int index) {
+			Preconditions.checkElementIndex(index, size());
+			if (vertices == null) {
+				vertices = new Vertex[size()];
+			}
+			if (vertices[index] == null) {
+				vertices[index] = new Vertex(space, labels.get(index));
+			}
+			return vertices[index];
+		}
+
+		@Override
+		public int size() {
+			return labels.limit();
+		}
+	}
+}
@@ -2,7 +2,21 @@ package graphimplementations;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 import java.util.Set;
 
 import org.junit.Before;
@@ -12,15 +26,22 @@ import com.google.common.base.Optional;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multiset;
 import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableMultiset;
+import com.google.common.collect.Multisets;
 import com.google.common.collect.Sets;
 
+import factories.BitMatrixGraphFactory;
+import factories.CsrGraphFactory;
 import factories.EdgesGraphFactory;
 import factories.ListGraphFactory;
 import factories.MatrixGraphFactory;
+import factories.OffHeapCsrGraphFactory;
 import graphimplementations.EdgesGraph;
 import graphimplementations.MatrixGraph;
 import graphimplementations.Edge;
 import graphimplementations.Vertex;
+import interfaces.EdgeConsumer;
+import interfaces.Graph;
 
 public class GraphTest {
 	public Vertex v1 = new Vertex();
@@ -433,6 +454,13 @@ public class GraphTest {
 		assertEquals(graphMatrix, graphList);
 	}
 	
+	@Test
+	public void listGraph_adjacencyList_view() {
+		ListGraph graph = listGraphFactory.createListGraph(verticesList, list1, false);
+		
+		assertEquals(list1, graph.getAdjacencyList());
+	}
+	
 	// makeUndirected, makeDirected
 	// EdgesGraph 
 	
@@ -766,6 +794,18 @@ public class GraphTest {
 		assertEquals(graph, largerGraph);
 	}
 	
+	@Test
+	public void matrixGraph_removeVertex_middle() {
+		MatrixGraph graph = matrixGraphFactory.createMatrixGraph(verticesList, matrix1, false);
+		int[][] matrixWithoutV2 = {{ 1, 1 },
+								   { 1, 0 }};
+		MatrixGraph smallerGraph = matrixGraphFactory.createMatrixGraph(Lists.newArrayList(v1, v3), matrixWithoutV2, false);
+		graph.removeVertex(v2);
+		
+		assertEquals(smallerGraph, graph);
+		assertEquals(1, graph.getDegreeAt(v3));
+	}
+	
 	// add/removeEdge
 	
 	public Edge e4u = Edge.between(v3).and(v2);
@@ -964,6 +1004,67 @@ public class GraphTest {
 		assertEquals(largerGraph, graph);		
 	}
 	
+	@Test
+	public void matrixGraph_removeEdge_vertices_directed() {
+		MatrixGraph graph = matrixGraphFactory.createMatrixGraph(verticesList, matrix5, true);
+		MatrixGraph smallerGraph = matrixGraphFactory.createMatrixGraph(verticesList, matrix1, true);
+		graph.removeDirectedEdge(v3, v2);
+		
+		assertEquals(smallerGraph, graph);
+	}
+	
+	@Test
+	public void listGraph_removeEdge_vertices_directed() {
+		ListGraph graph = listGraphFactory.createListGraph(verticesList, list5, true);
+		ListGraph smallerGraph = listGraphFactory.createListGraph(verticesList, list1, true);
+		graph.removeDirectedEdge(v3, v2);
+		
+		assertEquals(smallerGraph, graph);
+	}
+	
+	@Test
+	public void edgesGraph_edgesTo_afterChanges() {
+		EdgesGraph graph = edgesGraphFactory.createEdgesGraph(verticesSet, HashMultiset.<Edge>create(), directedEdges1);
+		graph.addDirectedEdge(v3, v2);
+		graph.removeDirectedEdge(v1, v2);
+		graph.removeVertex(v1);
+		Multiset<Edge> edgesTo2 = HashMultiset.create();
+		edgesTo2.add(e4d);
+		
+		assertEquals(edgesTo2, graph.getEdgesTo(v2));
+		assertEquals(1, graph.getOutdegreeAt(v2));
+		assertEquals(1, graph.getIndegreeAt(v3));
+		assertEquals(2, graph.getDirectedEdges().size());
+	}
+	
+	// the incoming rows, once built, follow the changes to the graph
+	@Test
+	public void matrixGraph_indegreeAt_afterChanges() {
+		MatrixGraph graph = matrixGraphFactory.createMatrixGraph(verticesList, matrix1, true);
+		assertEquals(3, graph.getIndegreeAt(v2));
+		graph.addDirectedEdge(v3, v2);
+		assertEquals(4, graph.getIndegreeAt(v2));
+		graph.removeDirectedEdge(v1, v2);
+		graph.removeVertex(v1);
+		
+		assertEquals(2, graph.getIndegreeAt(v2));
+		assertEquals(1, graph.getIndegreeAt(v3));
+	}
+	
+	@Test
+	public void listGraph_edgesTo_afterChanges() {
+		ListGraph graph = listGraphFactory.createListGraph(verticesList, list1, true);
+		assertEquals(3, graph.getIndegreeAt(v2));
+		graph.addDirectedEdge(v3, v2);
+		graph.removeVertex(v1);
+		Multiset<Edge> edgesTo2 = HashMultiset.create();
+		edgesTo2.add(e2dOpposite);
+		edgesTo2.add(e2dOpposite);
+		
+		assertEquals(edgesTo2, graph.getEdgesTo(v2));
+		assertEquals(2, graph.getIndegreeAt(v2));
+	}
+	
 	// isEulerian
 	
 	public Multiset<Edge> undirectedEulerianEdges = HashMultiset.create();
@@ -1156,7 +1257,7 @@ public class GraphTest {
 		assertTrue(graph.isPerfectMatching(matrixDirectedPerfectMatching));
 	}
 	
-	// getCycle, mergeTours, getEulerianCycle (EdgesGraph)
+	// getCycle, getEulerianCycle (EdgesGraph)
 	public Edge e6u = Edge.between(v4).and(v5);
 	public Edge e7u = Edge.between(v5).and(v3);
 	public Multiset<Edge> undirectedEdgesForCycle = HashMultiset.create();
@@ -1188,25 +1289,11 @@ public class GraphTest {
 		directedEdgesForCycle.add(directedLoop);
 	}
 	
-	public List<Vertex> tour1List = Lists.newArrayList(v1, v2, v3);
-	public Optional<List<Vertex>> tour1 = Optional.of(tour1List);
-	public List<Vertex> tour2List = Lists.newArrayList(v5, v3, v4);
-	public Optional<List<Vertex>> tour2 = Optional.of(tour2List);
-	public List<Vertex> tour3List = Lists.newArrayList(v1, v2, v3, v4, v5);
-	public Optional<List<Vertex>> tour3 = Optional.of(tour3List);
-
-	@Test
-	public void edgesGraph_mergeTours() {
-		EdgesGraph graph = edgesGraphFactory.createEdgesGraph(largerVerticesSet, undirectedEdgesForCycle, HashMultiset.<Edge>create());
-
-		assertEquals(tour3, graph.mergeTours(tour1, tour2, v3));
-	}
-
 	@Test
-	public void edgesGraph_getCycleInEulerian_undirected_isolated() {
+	public void edgesGraph_getCycle_undirected_isolated() {
 		EdgesGraph graph = edgesGraphFactory.createEdgesGraph(Sets.newHashSet(v1), HashMultiset.<Edge>create(), HashMultiset.<Edge>create());
 		
-		List<Vertex> cycle = graph.getCycleInEulerian(graph, v1);
+		List<Vertex> cycle = graph.getCycle(graph, v1).get();
 		assertEquals(cycle, Lists.newArrayList(v1));
 	}
 	
@@ -1217,11 +1304,11 @@ public class GraphTest {
 	}
 	
 	@Test
-	public void edgesGraph_getCycleInEulerian_undirected_isolated_loop() {
+	public void edgesGraph_getCycle_undirected_isolated_loop() {
 		EdgesGraph graph = edgesGraphFactory.createEdgesGraph(Sets.newHashSet(v1), justLoop, HashMultiset.<Edge>create());
 		
-		List<Vertex> cycle = graph.getCycleInEulerian(graph, v1);
-		assertEquals(cycle, Lists.newArrayList(v1, v1));
+		List<Vertex> cycle = graph.getCycle(graph, v1).get();
+		assertEquals(cycle, Lists.newArrayList(v1));
 	}
 	
 	public Multiset<Edge> twoEdges = HashMultiset.create();
@@ -1232,36 +1319,38 @@ public class GraphTest {
 	}
 	
 	@Test
-	public void edgesGraph_getCycleInEulerian_undirected_backForth() {
+	public void edgesGraph_getCycle_undirected_backForth() {
 		EdgesGraph graph = edgesGraphFactory.createEdgesGraph(Sets.newHashSet(v1, v3), twoEdges, HashMultiset.<Edge>create());
 		
-		List<Vertex> cycle = graph.getCycleInEulerian(graph, v1);
+		List<Vertex> cycle = graph.getCycle(graph, v1).get();
 		assertEquals(cycle, Lists.newArrayList(v1, v3));
 	}
 	
 	@Test
-	public void edgesGraph_getCycleInEulerian_undirected() {
+	public void edgesGraph_getCycle_undirected() {
 		EdgesGraph graph = edgesGraphFactory.createEdgesGraph(largerVerticesSet, undirectedEdgesForCycle, HashMultiset.<Edge>create());
-		List<Vertex> cycle = graph.getCycleInEulerian(graph, v4);
-		assertTrue((cycle.size() == 3) ||
-				(cycle.size() == 5) ||
-				(cycle.size() == 6) ||
-				(cycle.size() == 7) ||
-				(cycle.size() == 8) ||
-				(cycle.size() == 9));
+		List<Vertex> cycle = graph.getCycle(graph, v4).get();
+		assertEquals(9, cycle.size());
 	}
 
 	@Test
-	public void edgesGraph_getCycleInEulerian_directed() {
+	public void edgesGraph_getCycle_directed() {
 		EdgesGraph graph = edgesGraphFactory.createEdgesGraph(largerVerticesSet, HashMultiset.<Edge>create(), directedEdgesForCycle);
-		List<Vertex> cycle = graph.getCycleInEulerian(graph, v4);
+		List<Vertex> cycle = graph.getCycle(graph, v4).get();
+		
+		assertEquals(9, cycle.size());
+	}
+	
+	@Test
+	public void edgesGraph_getCycle_absent() {
+		Multiset<Edge> path = HashMultiset.create(smallUndirected);
+		path.remove(e1u);
+		EdgesGraph notEulerian = edgesGraphFactory.createEdgesGraph(smallVerticesSet, path, HashMultiset.<Edge>create());
+		EdgesGraph startIsolated = edgesGraphFactory.createEdgesGraph(largerVerticesSet, smallUndirected, HashMultiset.<Edge>create());
 		
-		assertTrue((cycle.size() == 3) ||
-				(cycle.size() == 5) ||
-				(cycle.size() == 6) ||
-				(cycle.size() == 7) ||
-				(cycle.size() == 8) ||
-				(cycle.size() == 9));
+		assertFalse(notEulerian.getCycle(notEulerian, v1).isPresent());
+		assertFalse(startIsolated.getCycle(startIsolated, v5).isPresent());
+		assertTrue(startIsolated.getCycle(startIsolated, v1).isPresent());
 	}
 
 	public Set<Vertex> smallVerticesSet = Sets.newHashSet(v1, v2, v3);
@@ -1298,7 +1387,6 @@ public class GraphTest {
 		assertTrue(graph.getEulerianCycle(graph, v1).equals(smallCycle));
 	}
 	
-	// Test returns an error
 	@Test
 	public void edgesGraph_getEulerianCycle_undirected() {
 		EdgesGraph graph = edgesGraphFactory.createEdgesGraph(largerVerticesSet, undirectedEdgesForCycle, HashMultiset.<Edge>create());
@@ -1306,7 +1394,6 @@ public class GraphTest {
 		assertEquals(9, graph.getEulerianCycle(graph, v1).size());
 	}
 	
-	// Test returns an error
 	@Test
 	public void edgesGraph_getEulerianCycle_directed() {
 		EdgesGraph graph = edgesGraphFactory.createEdgesGraph(largerVerticesSet, HashMultiset.<Edge>create(), directedEdgesForCycle);
@@ -1314,15 +1401,1026 @@ public class GraphTest {
 		assertEquals(9, graph.getEulerianCycle(graph, v1).size());
 	}
 	
-	// TODO (method to do, too!)
+	// CsrGraph
+	public CsrGraphFactory csrGraphFactory = new CsrGraphFactory();
+	
 	@Test
-	public void edgesGraph_getCycle_undirected() {
+	public void csrGraph_edges_matrix_list_factory_true() {
+		CsrGraph graphEdges = csrGraphFactory.createCsrGraph(verticesSet, undirectedEdges1, HashMultiset.<Edge>create());
+		CsrGraph graphMatrix = csrGraphFactory.createCsrGraph(verticesList, matrix1, false);
+		CsrGraph graphList = csrGraphFactory.createCsrGraph(verticesList, list1, false);
 		
+		assertEquals(graphEdges, graphMatrix);
+		assertEquals(graphMatrix, graphList);
 	}
 	
-	// TODO (method to do, too!)
 	@Test
-	public void edgesGraph_getCycle_directed() {
+	public void abstractGraph_csr_matrix_directed_equals_true() {
+		MatrixGraph graphMatrix = matrixGraphFactory.createMatrixGraph(verticesList, matrix1, true);
+		CsrGraph graphCsr = csrGraphFactory.createCsrGraph(graphMatrix);
+		
+		assertEquals(graphMatrix, graphCsr);
+		assertEquals(graphCsr, graphMatrix);
+	}
+	
+	@Test
+	public void csrGraph_fromGraph_keepsDirection() {
+		ListGraph edgeless = listGraphFactory.createListGraph(verticesList, new int[3][3], false);
+		CsrGraph graphCsr = csrGraphFactory.createCsrGraph(edgeless);
 		
+		assertFalse(graphCsr.isDirected());
+		for (int i = 0; i < verticesList.size(); i++) {
+			assertEquals(verticesList.get(i), graphCsr.getVertexAt(i));
+		}
+		assertEquals(edgeless, graphCsr);
+		
+		ListGraph undirected = listGraphFactory.createListGraph(verticesList, matrix1, false);
+		assertArrayEquals(matrixOf(undirected), matrixOf(csrGraphFactory.createCsrGraph(undirected)));
 	}
-}
\ No newline at end of file
+	
+	@Test
+	public void csrGraph_makeDirected_true() {
+		CsrGraph undirected = csrGraphFactory.createCsrGraph(verticesSet, undirectedEdges1, HashMultiset.<Edge>create());
+		EdgesGraph directed = edgesGraphFactory.createEdgesGraph(verticesSet, HashMultiset.<Edge>create(), directedEdges2);
+		
+		assertEquals(directed, undirected.makeDirected());
+	}
+	
+	@Test
+	public void csrGraph_makeUndirected_true() {
+		CsrGraph directed = csrGraphFactory.createCsrGraph(verticesSet, HashMultiset.<Edge>create(), directedEdges1);
+		EdgesGraph undirected = edgesGraphFactory.createEdgesGraph(verticesSet, undirectedEdges1, HashMultiset.<Edge>create());
+		
+		assertEquals(undirected, directed.makeUndirected());
+	}
+	
+	@Test
+	public void csrGraph_edgesTo() {
+		CsrGraph graph = csrGraphFactory.createCsrGraph(verticesList, matrix1, true);
+		Multiset<Edge> edgesTo1 = HashMultiset.create();
+		edgesTo1.add(e1dOpposite);
+		edgesTo1.add(e1dOpposite);
+		edgesTo1.add(e3d);
+		edgesTo1.add(directedLoop);
+		
+		assertEquals(edgesTo1, graph.getEdgesTo(v1));
+		assertEquals(4, graph.getIndegreeAt(v1));
+		assertEquals(4, graph.getOutdegreeAt(v1));
+	}
+	
+	@Test
+	public void csrGraph_isEulerian() {
+		assertTrue(csrGraphFactory.createCsrGraph(verticesList, matrix6, false).isEulerian());
+		assertTrue(csrGraphFactory.createCsrGraph(verticesList, matrix7, true).isEulerian());
+	}
+	
+	@Test(expected = UnsupportedOperationException.class)
+	public void csrGraph_addEdge_unsupported() {
+		CsrGraph graph = csrGraphFactory.createCsrGraph(verticesList, matrix1, false);
+		
+		graph.addUndirectedEdge(v2, v3);
+	}
+	
+	@Test
+	public void readQueries_doNotChangeVertexEdges() {
+		MatrixGraph matrixGraph = matrixGraphFactory.createMatrixGraph(verticesList, matrix1, false);
+		ListGraph listGraph = listGraphFactory.createListGraph(verticesList, matrix1, false);
+		EdgesGraph edgesGraph = edgesGraphFactory.createEdgesGraph(verticesList, matrix1, false);
+		int noOfEdges = v1.getNoOfEdges();
+		
+		for (int i = 0; i < 10; i++) {
+			matrixGraph.getUndirectedEdges();
+			matrixGraph.getEdgesAt(v1);
+			listGraph.getUndirectedEdges();
+			listGraph.getEdgesAt(v1);
+			edgesGraph.makeDirected();
+		}
+		assertEquals(noOfEdges, v1.getNoOfEdges());
+	}
+	
+	/**
+	 * @return the edges given by forEachEdge, as edges between vertices
+	 */
+	private static Multiset<Edge> collectEdges(final Graph graph) {
+		final Multiset<Edge> edges = HashMultiset.create();
+		graph.forEachEdge(new EdgeConsumer() {
+			@Override
+			public void accept(int start, int end, int multiplicity) {
+				Vertex s = graph.getVertexAt(start);
+				Vertex e = graph.getVertexAt(end);
+				edges.add(graph.isDirected() ? Edge.directed(s, e) : Edge.undirected(s, e), multiplicity);
+			}
+		});
+		return edges;
+	}
+	
+	@Test
+	public void forEachEdge_sameAsEdges() {
+		List<Graph> graphs = Lists.<Graph>newArrayList(
+				edgesGraphFactory.createEdgesGraph(verticesList, matrix1, false),
+				matrixGraphFactory.createMatrixGraph(verticesList, matrix1, false),
+				listGraphFactory.createListGraph(verticesList, matrix1, false),
+				csrGraphFactory.createCsrGraph(verticesList, matrix1, false),
+				edgesGraphFactory.createEdgesGraph(verticesList, matrix1, true),
+				matrixGraphFactory.createMatrixGraph(verticesList, matrix1, true),
+				listGraphFactory.createListGraph(verticesList, matrix1, true),
+				csrGraphFactory.createCsrGraph(verticesList, matrix1, true));
+		for (Graph graph : graphs) {
+			Multiset<Edge> edges = graph.isDirected() ? graph.getDirectedEdges() : graph.getUndirectedEdges();
+			assertEquals(edges, collectEdges(graph));
+		}
+	}
+	
+	@Test
+	public void forEachNeighbor_degree() {
+		List<Graph> graphs = Lists.<Graph>newArrayList(
+				edgesGraphFactory.createEdgesGraph(verticesList, matrix1, true),
+				matrixGraphFactory.createMatrixGraph(verticesList, matrix1, true),
+				listGraphFactory.createListGraph(verticesList, matrix1, true),
+				csrGraphFactory.createCsrGraph(verticesList, matrix1, true));
+		for (final Graph graph : graphs) {
+			final int[] outdegree = new int[1];
+			int index = graph.getIndexOf(v2);
+			graph.forEachNeighbor(index, new EdgeConsumer() {
+				@Override
+				public void accept(int start, int end, int multiplicity) {
+					outdegree[0] += multiplicity;
+				}
+			});
+			assertEquals(v2, graph.getVertexAt(index));
+			assertEquals(graph.getOutdegreeAt(v2), outdegree[0]);
+		}
+	}
+	
+	@Test
+	public void edgesGraph_removeVertex_indices() {
+		EdgesGraph graph = edgesGraphFactory.createEdgesGraph(verticesList, matrix1, false);
+		graph.removeVertex(graph.getVertexAt(0));
+		
+		assertEquals(2, graph.getNoOfVertices());
+		for (int i = 0; i < graph.getNoOfVertices(); i++) {
+			assertEquals(i, graph.getIndexOf(graph.getVertexAt(i)));
+		}
+		assertEquals(graph.getUndirectedEdges(), collectEdges(graph));
+	}
+	
+	@Test
+	public void addEdges_sameAsAddingOneByOne() {
+		List<Graph> graphs = Lists.<Graph>newArrayList(
+				edgesGraphFactory.createEdgesGraph(verticesList, matrix1, false),
+				matrixGraphFactory.createMatrixGraph(verticesList, matrix1, false),
+				listGraphFactory.createListGraph(verticesList, matrix1, false));
+		for (Graph graph : graphs) {
+			graph.addEdges(undirectedEdges1);
+			
+			assertEquals(listGraphFactory.createListGraph(verticesList, matrix2, false).getUndirectedEdges(),
+					graph.getUndirectedEdges());
+			assertEquals(8, graph.getDegreeAt(v1));
+		}
+	}
+	
+	@Test
+	public void removeEdges_directed() {
+		List<Graph> graphs = Lists.<Graph>newArrayList(
+				edgesGraphFactory.createEdgesGraph(verticesSet, HashMultiset.<Edge>create(), directedEdges2),
+				matrixGraphFactory.createMatrixGraph(verticesSet, HashMultiset.<Edge>create(), directedEdges2),
+				listGraphFactory.createListGraph(verticesSet, HashMultiset.<Edge>create(), directedEdges2));
+		for (Graph graph : graphs) {
+			graph.getIndegreeAt(v1);
+			graph.removeEdges(directedEdges1);
+			
+			assertEquals(Multisets.difference(directedEdges2, directedEdges1), graph.getDirectedEdges());
+			assertEquals(3, graph.getIndegreeAt(v1));
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void listGraph_removeEdges_notInGraph() {
+		ListGraph graph = listGraphFactory.createListGraph(verticesSet, HashMultiset.<Edge>create(), directedEdges1);
+		
+		graph.removeEdges(directedEdges2);
+	}
+	
+	@Test
+	public void removeVertices_directed() {
+		List<Graph> graphs = Lists.<Graph>newArrayList(
+				edgesGraphFactory.createEdgesGraph(verticesSet, HashMultiset.<Edge>create(), directedEdges2),
+				matrixGraphFactory.createMatrixGraph(verticesSet, HashMultiset.<Edge>create(), directedEdges2),
+				listGraphFactory.createListGraph(verticesSet, HashMultiset.<Edge>create(), directedEdges2));
+		for (Graph graph : graphs) {
+			graph.getIndegreeAt(v1);
+			graph.removeVertices(Sets.newHashSet(v3));
+			
+			assertEquals(Sets.newHashSet(v1, v2), graph.getVertices());
+			assertEquals(4, graph.getIndegreeAt(v1));
+			assertEquals(2, graph.getIndegreeAt(v2));
+			assertEquals(6, graph.getDirectedEdges().size());
+			for (int i = 0; i < graph.getNoOfVertices(); i++) {
+				assertEquals(i, graph.getIndexOf(graph.getVertexAt(i)));
+			}
+		}
+	}
+	
+	@Test
+	public void matrixGraph_addVertices_growsCapacity() {
+		MatrixGraph graph = matrixGraphFactory.createMatrixGraph(verticesList, matrix1, false);
+		Multiset<Edge> edges = graph.getUndirectedEdges();
+		for (int i = 0; i < 10; i++) {
+			graph.addVertices(Sets.newHashSet(new Vertex()));
+		}
+		
+		assertEquals(13, graph.getNoOfVertices());
+		assertEquals(24, graph.getCapacity());
+		assertEquals(edges, graph.getUndirectedEdges());
+		assertEquals(2, graph.getEntry(0, 1));
+		assertEquals(13, graph.getMatrix().length);
+	}
+	
+	@Test
+	public void matrixGraph_removeVertex_reusesSlotAndCompacts() {
+		MatrixGraph graph = matrixGraphFactory.createMatrixGraph(verticesList, matrix1, true);
+		graph.removeVertex(v1);
+		Vertex v4 = new Vertex();
+		graph.addVertices(Sets.newHashSet(v4));
+		
+		assertEquals(3, graph.getCapacity());
+		assertEquals(0, graph.getOutdegreeAt(v4));
+		assertEquals(0, graph.getIndegreeAt(v4));
+		assertEquals(1, graph.getEntry(0, 1));
+		
+		graph.removeVertex(v4);
+		graph.removeVertex(v2);
+		assertEquals(1, graph.getCapacity());
+		assertArrayEquals(new int[][] {{ 0 }}, graph.getMatrix());
+	}
+	
+	@Test
+	public void matrixGraph_packedSymmetric_sameGraph() {
+		MatrixGraph graph = matrixGraphFactory.createMatrixGraph(verticesList, matrix1, false,
+				MatrixGraph.Layout.PACKED_SYMMETRIC, MatrixGraph.CellType.BYTE);
+		MatrixGraph expected = matrixGraphFactory.createMatrixGraph(verticesList, matrix1, false);
+		
+		assertEquals(expected, graph);
+		assertEquals(expected.getUndirectedEdges(), graph.getUndirectedEdges());
+		assertEquals(4, graph.getDegreeAt(v1));
+		graph.addUndirectedEdge(v1, v2);
+		assertEquals(3, graph.getEntry(1, 0));
+		assertEquals(5, graph.getDegreeAt(v1));
+		graph.addVertices(Sets.newHashSet(new Vertex()));
+		graph.removeVertex(v3);
+		assertArrayEquals(new int[][] {{ 1, 3, 0 }, { 3, 0, 0 }, { 0, 0, 0 }}, graph.getMatrix());
+		assertEquals(MatrixGraph.Layout.ROW_MAJOR, ((MatrixGraph) graph.makeDirected()).getLayout());
+	}
+	
+	@Test
+	public void matrixGraph_rowMajor_widensCells() {
+		MatrixGraph graph = matrixGraphFactory.createMatrixGraph(verticesList, matrix1, true,
+				MatrixGraph.Layout.ROW_MAJOR, MatrixGraph.CellType.BYTE);
+		for (int i = 0; i < 200; i++) {
+			graph.addDirectedEdge(v2, v3);
+		}
+		
+		assertEquals(MatrixGraph.CellType.SHORT, graph.getCellType());
+		assertEquals(201, graph.getEntry(1, 2));
+		assertEquals(203, graph.getOutdegreeAt(v2));
+		assertEquals(202, graph.getIndegreeAt(v3));
+	}
+	
+	public BitMatrixGraphFactory bitMatrixGraphFactory = new BitMatrixGraphFactory();
+	public int[][] triangle = {{ 0, 1, 1 },
+							   { 1, 0, 1 },
+							   { 1, 1, 0 }};
+	
+	@Test
+	public void bitMatrixGraph_sameAsMatrixGraph() {
+		BitMatrixGraph graph = bitMatrixGraphFactory.createBitMatrixGraph(verticesList, triangle, false);
+		MatrixGraph matrixGraph = matrixGraphFactory.createMatrixGraph(verticesList, triangle, false);
+		
+		assertEquals(matrixGraph.getUndirectedEdges(), graph.getUndirectedEdges());
+		assertEquals(2, graph.getDegreeAt(v1));
+		assertEquals(1, graph.getNoOfCommonNeighbors(v1, v2));
+		assertEquals(Sets.newHashSet(v3), graph.getCommonNeighbors(v1, v2));
+		assertTrue(graph.isEulerian());
+		assertEquals(matrixGraph, matrixGraphFactory.createMatrixGraph(graph));
+		assertEquals(graph.getUndirectedEdges(), bitMatrixGraphFactory.createBitMatrixGraph(matrixGraph).getUndirectedEdges());
+	}
+	
+	@Test
+	public void bitMatrixGraph_manyVertices() {
+		BitMatrixGraph graph = bitMatrixGraphFactory.createBitMatrixGraph(verticesList, triangle, true);
+		List<Vertex> newVertices = Vertex.createVertices(100);
+		graph.addVertices(Sets.newHashSet(newVertices));
+		for (Vertex v : newVertices) {
+			graph.addDirectedEdge(v3, v);
+			graph.addDirectedEdge(v, v2);
+		}
+		graph.removeVertex(v1);
+		graph.removeVertex(newVertices.get(0));
+		
+		assertEquals(101, graph.getNoOfVertices());
+		assertEquals(100, graph.getOutdegreeAt(v3));
+		assertEquals(100, graph.getIndegreeAt(v2));
+		assertTrue(graph.containsEdge(newVertices.get(99), v2));
+		assertFalse(graph.containsEdge(v2, newVertices.get(99)));
+		assertEquals(Sets.newHashSet(v2), graph.getCommonNeighbors(v3, newVertices.get(1)));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void bitMatrixGraph_addEdge_notSimple() {
+		BitMatrixGraph graph = bitMatrixGraphFactory.createBitMatrixGraph(verticesList, triangle, false);
+		
+		graph.addUndirectedEdge(v1, v2);
+	}
+	
+	@Test
+	public void matrixGraph_sparse_sameGraph() {
+		MatrixGraph graph = matrixGraphFactory.createMatrixGraph(verticesList, matrix1, true,
+				MatrixGraph.Layout.SPARSE, MatrixGraph.CellType.INT);
+		MatrixGraph expected = matrixGraphFactory.createMatrixGraph(verticesList, matrix1, true);
+		
+		assertEquals(expected, graph);
+		assertEquals(expected.getDirectedEdges(), graph.getDirectedEdges());
+		assertEquals(2, graph.getIndegreeAt(v3));
+		for (int i = 0; i < 3; i++) {
+			for (int j = 0; j < 3; j++) {
+				graph.addDirectedEdge(verticesList.get(i), verticesList.get(j));
+				graph.removeDirectedEdge(verticesList.get(j), verticesList.get(i));
+				expected.addDirectedEdge(verticesList.get(i), verticesList.get(j));
+				expected.removeDirectedEdge(verticesList.get(j), verticesList.get(i));
+			}
+		}
+		graph.removeVertex(v2);
+		expected.removeVertex(v2);
+		
+		assertArrayEquals(expected.getMatrix(), graph.getMatrix());
+		assertEquals(expected.getOutdegreeAt(v1), graph.getOutdegreeAt(v1));
+		assertEquals(expected.getIndegreeAt(v3), graph.getIndegreeAt(v3));
+		assertEquals(MatrixGraph.Layout.SPARSE, ((MatrixGraph) graph.makeUndirected()).getLayout());
+	}
+	
+	@Test
+	public void matrixGraph_sparse_manyVertices() {
+		int n = 100000;
+		List<Vertex> vertices = Vertex.createVertices(n);
+		Multiset<Edge> cycle = HashMultiset.create();
+		for (int i = 0; i < n; i++) {
+			cycle.add(Edge.undirected(vertices.get(i), vertices.get((i + 1) % n)));
+		}
+		MatrixGraph graph = matrixGraphFactory.createMatrixGraph(vertices, cycle, false,
+				MatrixGraph.Layout.SPARSE, MatrixGraph.CellType.INT);
+		
+		assertEquals(1, graph.getEntry(n - 1, 0));
+		assertEquals(0, graph.getEntry(0, 2));
+		assertEquals(2, graph.getDegreeAt(vertices.get(12345)));
+		assertTrue(graph.isEulerian());
+		assertEquals(cycle, graph.getUndirectedEdges());
+		
+		graph.removeVertices(Sets.newHashSet(vertices.subList(0, n / 2)));
+		
+		assertEquals(n / 2, graph.getNoOfVertices());
+		assertEquals(1, graph.getEntry(0, 1));
+		assertEquals(1, graph.getDegreeAt(vertices.get(n / 2)));
+		assertEquals(n / 2 - 1, graph.getUndirectedEdges().size());
+	}
+	
+	public OffHeapCsrGraphFactory offHeapCsrGraphFactory = new OffHeapCsrGraphFactory();
+	
+	@Test
+	public void offHeapCsrGraph_sameAsCsrGraph() throws IOException {
+		OffHeapArena arena = new OffHeapArena();
+		MatrixGraph directed = matrixGraphFactory.createMatrixGraph(verticesList, matrix1, true);
+		OffHeapCsrGraph graph = offHeapCsrGraphFactory.createOffHeapCsrGraph(directed, arena);
+		CsrGraph expected = csrGraphFactory.createCsrGraph(directed);
+		
+		assertEquals(expected, graph);
+		assertEquals(expected.getIndegreeAt(v3), graph.getIndegreeAt(v3));
+		assertEquals(expected.getEdgesTo(v1), graph.getEdgesTo(v1));
+		assertEquals(2, graph.getMultiplicity(v1, v2));
+		assertEquals(expected.makeUndirected(), graph.makeUndirected());
+		assertEquals(expected.makeUndirected().makeDirected(), graph.makeUndirected().makeDirected());
+		assertEquals(expected.isEulerian(), graph.isEulerian());
+		assertTrue(arena.getAllocatedBytes() > 0);
+		arena.close();
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void offHeapCsrGraph_closedArena() throws IOException {
+		OffHeapArena arena = new OffHeapArena();
+		OffHeapCsrGraph graph = offHeapCsrGraphFactory.createOffHeapCsrGraph(
+				matrixGraphFactory.createMatrixGraph(verticesList, matrix1, false), arena);
+		arena.close();
+		
+		graph.getDegreeAt(v1);
+	}
+	
+	/**
+	 * @return the adjacency matrix of the graph, by index
+	 */
+	private static int[][] matrixOf(Graph graph) {
+		final int[][] matrix = new int[graph.getNoOfVertices()][graph.getNoOfVertices()];
+		final boolean isDirected = graph.isDirected();
+		graph.forEachEdge(new EdgeConsumer() {
+			@Override
+			public void accept(int start, int end, int multiplicity) {
+				matrix[start][end] = multiplicity;
+				if (!isDirected) {
+					matrix[end][start] = multiplicity;
+				}
+			}
+		});
+		return matrix;
+	}
+	
+	@Test
+	public void graphFile_writeThenOpen() throws IOException {
+		File file = File.createTempFile("graph", ".bin");
+		file.deleteOnExit();
+		OffHeapArena arena = new OffHeapArena();
+		for (boolean directed : new boolean[] { false, true }) {
+			MatrixGraph graph = matrixGraphFactory.createMatrixGraph(verticesList, matrix1, directed);
+			GraphFile.write(graph, file);
+			OffHeapCsrGraph read = GraphFile.open(file, arena);
+			
+			assertEquals(directed, read.isDirected());
+			assertArrayEquals(matrix1, matrixOf(read));
+			assertEquals(v2.label, read.getVertexAt(1).label);
+			assertNotEquals(v2, read.getVertexAt(1));
+			assertFalse(read.getVertices().contains(new Vertex(read.getVertexAt(0).getIdSpace())));
+			if (directed) {
+				assertEquals(graph.getIndegreeAt(v3), read.getIndegreeAt(read.getVertexAt(2)));
+			} else {
+				assertEquals(graph.getDegreeAt(v1), read.getDegreeAt(read.getVertexAt(0)));
+			}
+		}
+		arena.close();
+	}
+	
+	@Test
+	public void compactGraphFormat_roundTrip() throws IOException {
+		List<Graph> graphs = Lists.<Graph>newArrayList(
+				listGraphFactory.createListGraph(verticesList, matrix1, true),
+				matrixGraphFactory.createMatrixGraph(verticesList, matrix1, false,
+						MatrixGraph.Layout.PACKED_SYMMETRIC, MatrixGraph.CellType.BYTE),
+				edgesGraphFactory.createEdgesGraph(verticesList, matrix1, false));
+		for (Graph graph : graphs) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			CompactGraphFormat.write(graph, out);
+			Graph read = CompactGraphFormat.read(new ByteArrayInputStream(out.toByteArray()));
+			
+			assertEquals(graph.getClass(), read.getClass());
+			assertEquals(graph.isDirected(), read.isDirected());
+			assertArrayEquals(matrixOf(graph), matrixOf(read));
+			for (int i = 0; i < graph.getNoOfVertices(); i++) {
+				assertEquals(graph.getVertexAt(i).label, read.getVertexAt(i).label);
+			}
+		}
+		assertEquals(MatrixGraph.Layout.PACKED_SYMMETRIC, ((MatrixGraph) CompactGraphFormat.read(
+				new ByteArrayInputStream(toBytes(graphs.get(1))))).getLayout());
+	}
+	
+	private static byte[] toBytes(Graph graph) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		CompactGraphFormat.write(graph, out);
+		return out.toByteArray();
+	}
+	
+	@Test
+	public void compactGraphFormat_smallerThanGraphFile() throws IOException {
+		int n = 1000;
+		List<Vertex> vertices = Vertex.createVertices(n);
+		Multiset<Edge> cycle = HashMultiset.create();
+		for (int i = 0; i < n; i++) {
+			cycle.add(Edge.directed(vertices.get(i), vertices.get((i + 1) % n)), 2);
+		}
+		MatrixGraph graph = matrixGraphFactory.createMatrixGraph(vertices, cycle, true,
+				MatrixGraph.Layout.SPARSE, MatrixGraph.CellType.INT);
+		File file = File.createTempFile("graph", ".bin");
+		file.deleteOnExit();
+		GraphFile.write(graph, file);
+		
+		assertTrue(4 * toBytes(graph).length < file.length());
+	}
+	
+	@Test
+	public void compactGraphFormat_smallerThanSerialization() throws IOException, ClassNotFoundException {
+		// a ListGraph with 20000 vertices and 10 random edges from each, 
+		// against Java serialization of its object graph: Vertices and Edges 
+		// are not Serializable, so the labels and, for each row, a Multiset 
+		// of the indices of the neighbors
+		int n = 20000;
+		Random random = new Random(7);
+		List<Vertex> vertices = Vertex.createVertices(n);
+		Multiset<Edge> edges = HashMultiset.create();
+		for (int i = 0; i < n; i++) {
+			for (int k = 0; k < 10; k++) {
+				edges.add(Edge.directed(vertices.get(i), vertices.get(random.nextInt(n))));
+			}
+		}
+		Graph graph = listGraphFactory.createListGraph(Sets.newLinkedHashSet(vertices),
+				HashMultiset.<Edge>create(), edges);
+		long[] labels = new long[n];
+		List<Multiset<Integer>> rows = Lists.newArrayListWithCapacity(n);
+		for (int i = 0; i < n; i++) {
+			labels[i] = graph.getVertexAt(i).label;
+			final Multiset<Integer> row = HashMultiset.create();
+			graph.forEachNeighbor(i, new EdgeConsumer() {
+				@Override
+				public void accept(int start, int end, int multiplicity) {
+					row.add(end, multiplicity);
+				}
+			});
+			rows.add(row);
+		}
+		
+		long compactTime = System.nanoTime();
+		byte[] compact = toBytes(graph);
+		Graph read = CompactGraphFormat.read(new ByteArrayInputStream(compact));
+		compactTime = System.nanoTime() - compactTime;
+		long serializedTime = System.nanoTime();
+		ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(serialized);
+		out.writeObject(labels);
+		out.writeObject(rows);
+		out.close();
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialized.toByteArray()));
+		in.readObject();
+		in.readObject();
+		serializedTime = System.nanoTime() - serializedTime;
+		
+		for (int i = 0; i < n; i += 1000) {
+			assertEquals(graph.getOutdegreeAt(graph.getVertexAt(i)), read.getOutdegreeAt(read.getVertexAt(i)));
+		}
+		assertTrue(4 * compact.length < serialized.size());
+		assertTrue(compactTime < serializedTime);
+	}
+	
+	@Test(expected = IOException.class)
+	public void compactGraphFormat_corrupt() throws IOException {
+		byte[] bytes = toBytes(listGraphFactory.createListGraph(verticesList, matrix1, false));
+		bytes[bytes.length / 2] ^= 1;
+		
+		CompactGraphFormat.read(new ByteArrayInputStream(bytes));
+	}
+	
+	@Test(expected = IOException.class)
+	public void compactGraphFormat_negativeGap() throws IOException {
+		// a directed graph with one vertex, whose row has one neighbor with 
+		// a gap of 10 bytes, negative as a long, then one run of 1
+		byte[] bytes = { 'G', 'W', 'V', 'C', 1, 1, 0, 0, 0, 1, 0, 1,
+				-1, -1, -1, -1, -1, -1, -1, -1, -1, 1, 1, 1 };
+		
+		CompactGraphFormat.read(new ByteArrayInputStream(bytes));
+	}
+	
+	@Test
+	public void edgeListImporter_sameAsFactory() throws IOException {
+		File file = File.createTempFile("edges", ".txt");
+		file.deleteOnExit();
+		Files.write(file.toPath(), "# a comment\n10 20\n20\t30\r\n% another\n\n30 10 7\n10 20\n30 30\n"
+				.getBytes(StandardCharsets.US_ASCII));
+		// chunks of a few bytes, to split the lines between tasks
+		EdgeListImporter importer = new EdgeListImporter(new ForkJoinPool(2), 5);
+		int[][] expected = {{ 0, 2, 1 },
+							{ 2, 0, 1 },
+							{ 1, 1, 1 }};
+		
+		CsrGraph csr = importer.importCsrGraph(file, false);
+		assertArrayEquals(expected, matrixOf(csr));
+		assertEquals(5, importer.getNoOfEdges());
+		assertEquals(30, importer.getExternalId(2));
+		assertTrue(importer.getEdgesPerSecond() > 0);
+		
+		ListGraph list = importer.importListGraph(file, true);
+		assertArrayEquals(new int[][] {{ 0, 2, 0 }, { 0, 0, 1 }, { 1, 0, 1 }}, matrixOf(list));
+		assertEquals(2, list.getIndegreeAt(list.getVertexAt(2)));
+	}
+	
+	@Test(expected = IOException.class)
+	public void edgeListImporter_malformed() throws IOException {
+		File file = File.createTempFile("edges", ".txt");
+		file.deleteOnExit();
+		Files.write(file.toPath(), "1 2\n3 x\n".getBytes(StandardCharsets.US_ASCII));
+		
+		new EdgeListImporter().importCsrGraph(file, true);
+	}
+	
+	@Test
+	public void matrixMarketFormat_roundTrip() throws IOException {
+		for (boolean directed : new boolean[] { false, true }) {
+			MatrixGraph graph = matrixGraphFactory.createMatrixGraph(verticesList, matrix1, directed);
+			StringWriter out = new StringWriter();
+			MatrixMarketFormat.write(graph, out);
+			
+			MatrixGraph dense = MatrixMarketFormat.read(new StringReader(out.toString()));
+			MatrixGraph sparse = MatrixMarketFormat.read(new StringReader(out.toString()), 0);
+			assertEquals(directed, dense.isDirected());
+			assertArrayEquals(matrix1, dense.getMatrix());
+			assertArrayEquals(matrix1, sparse.getMatrix());
+			assertEquals(MatrixGraph.Layout.ROWS, dense.getLayout());
+			assertEquals(MatrixGraph.Layout.SPARSE, sparse.getLayout());
+		}
+	}
+	
+	@Test
+	public void matrixMarketFormat_readSymmetric() throws IOException {
+		String text = "%%MatrixMarket matrix coordinate integer symmetric\n"
+				+ "% a comment\n"
+				+ "3 3 4\n"
+				+ "1 1 1\n2 1 2\n3 1 1\n3 2 1\n";
+		
+		assertArrayEquals(matrix1, MatrixMarketFormat.read(new StringReader(text)).getMatrix());
+	}
+	
+	@Test(expected = IOException.class)
+	public void matrixMarketFormat_wrongNoOfEntries() throws IOException {
+		String text = "%%MatrixMarket matrix coordinate pattern general\n2 2 3\n1 2\n2 1\n";
+		
+		MatrixMarketFormat.read(new StringReader(text));
+	}
+	
+	/**
+	 * @return if the walk uses each edge of the graph once (closed: from the 
+	 * last vertex back to the first)
+	 */
+	private static boolean usesEachEdgeOnce(Graph graph, List<Vertex> walk, boolean closed) {
+		Multiset<Edge> edges = HashMultiset.create(collectEdges(graph));
+		int length = closed ? walk.size() : walk.size() - 1;
+		for (int k = 0; k < length; k++) {
+			Vertex start = walk.get(k);
+			Vertex end = walk.get((k + 1) % walk.size());
+			if (!edges.remove(graph.isDirected() ? Edge.directed(start, end) : Edge.undirected(start, end))) {
+				return false;
+			}
+		}
+		return edges.isEmpty();
+	}
+	
+	@Test
+	public void edgesGraph_getEulerianCycle_usesEachEdgeOnce() {
+		EdgesGraph undirected = edgesGraphFactory.createEdgesGraph(largerVerticesSet, undirectedEdgesForCycle, HashMultiset.<Edge>create());
+		EdgesGraph directed = edgesGraphFactory.createEdgesGraph(largerVerticesSet, HashMultiset.<Edge>create(), directedEdgesForCycle);
+		
+		List<Vertex> cycle = undirected.getEulerianCycle(undirected, v4);
+		assertEquals(v4, cycle.get(0));
+		assertTrue(usesEachEdgeOnce(undirected, cycle, true));
+		cycle = directed.getEulerianCycle(directed, v2);
+		assertEquals(v2, cycle.get(0));
+		assertTrue(usesEachEdgeOnce(directed, cycle, true));
+	}
+	
+	@Test
+	public void edgesGraph_getEulerianCycle_longCycle() {
+		int n = 200000;
+		List<Vertex> vertices = Vertex.createVertices(n);
+		Multiset<Edge> edges = HashMultiset.create();
+		for (int i = 0; i < n; i++) {
+			edges.add(Edge.directed(vertices.get(i), vertices.get((i + 1) % n)));
+			edges.add(Edge.directed(vertices.get(i), vertices.get((i + 7) % n)));
+			edges.add(Edge.directed(vertices.get((i + 7) % n), vertices.get(i)));
+		}
+		EdgesGraph graph = new EdgesGraph(Sets.newHashSet(vertices), HashMultiset.<Edge>create(), edges);
+		
+		List<Vertex> cycle = graph.getEulerianCycle(graph, vertices.get(0));
+		assertEquals(3 * n, cycle.size());
+		assertTrue(usesEachEdgeOnce(graph, cycle, true));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void edgesGraph_getEulerianCycle_notConnected() {
+		Multiset<Edge> twoTriangles = HashMultiset.create(smallUndirected);
+		twoTriangles.add(Edge.undirected(v4, v5));
+		twoTriangles.add(Edge.undirected(v5, v5));
+		twoTriangles.add(Edge.undirected(v4, v5));
+		EdgesGraph graph = edgesGraphFactory.createEdgesGraph(largerVerticesSet, twoTriangles, HashMultiset.<Edge>create());
+		
+		graph.getEulerianCycle(graph, v1);
+	}
+	
+	@Test
+	public void matrixGraph_listGraph_getEulerianCycle() {
+		// two triangles at vertex 0, with a loop and a triple edge
+		int[][] undirected = { { 1, 1, 1, 1, 1 }, { 1, 0, 1, 0, 0 }, { 1, 1, 0, 0, 0 },
+				{ 1, 0, 0, 0, 3 }, { 1, 0, 0, 3, 0 } };
+		int[][] directed = { { 0, 1, 0, 0 }, { 0, 0, 2, 0 }, { 1, 0, 0, 1 }, { 0, 1, 0, 1 } };
+		
+		for (boolean isDirected : new boolean[] { false, true }) {
+			int[][] matrix = isDirected ? directed : undirected;
+			MatrixGraph matrixGraph = matrixGraphFactory.createMatrixGraph(matrix, isDirected);
+			ListGraph listGraph = listGraphFactory.createListGraph(matrix, isDirected);
+			
+			Vertex start = matrixGraph.getVertexAt(1);
+			List<Vertex> cycle = matrixGraph.getEulerianCycle(start);
+			assertEquals(start, cycle.get(0));
+			assertTrue(usesEachEdgeOnce(matrixGraph, cycle, true));
+			start = listGraph.getVertexAt(2);
+			cycle = listGraph.getEulerianCycle(start);
+			assertEquals(start, cycle.get(0));
+			assertTrue(usesEachEdgeOnce(listGraph, cycle, true));
+		}
+	}
+	
+	@Test
+	public void matrixGraph_listGraph_getEulerianPath() {
+		// a path 0 - 1 - 2 - 0 - 3, with a loop at 1
+		int[][] undirected = { { 0, 1, 1, 1 }, { 1, 1, 1, 0 }, { 1, 1, 0, 0 }, { 1, 0, 0, 0 } };
+		// 2 -> 0 -> 1 -> 2 -> 3, with a loop at 3
+		int[][] directed = { { 0, 1, 0, 0 }, { 0, 0, 1, 0 }, { 1, 0, 0, 1 }, { 0, 0, 0, 1 } };
+		
+		MatrixGraph matrixGraph = matrixGraphFactory.createMatrixGraph(undirected, false);
+		List<Vertex> path = matrixGraph.getEulerianPath();
+		assertEquals(6, path.size());
+		assertEquals(matrixGraph.getVertexAt(0), path.get(0));
+		assertEquals(matrixGraph.getVertexAt(3), path.get(5));
+		assertTrue(usesEachEdgeOnce(matrixGraph, path, false));
+		
+		ListGraph listGraph = listGraphFactory.createListGraph(directed, true);
+		path = listGraph.getEulerianPath();
+		assertEquals(6, path.size());
+		assertEquals(listGraph.getVertexAt(2), path.get(0));
+		assertEquals(listGraph.getVertexAt(3), path.get(5));
+		assertTrue(usesEachEdgeOnce(listGraph, path, false));
+		
+		// Eulerian: a closed walk
+		listGraph = listGraphFactory.createListGraph(new int[][] { { 0, 1 }, { 1, 0 } }, true);
+		path = listGraph.getEulerianPath();
+		assertEquals(Lists.newArrayList(listGraph.getVertexAt(0), listGraph.getVertexAt(1), listGraph.getVertexAt(0)), path);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void matrixGraph_getEulerianPath_fourOddVertices() {
+		int[][] star = { { 0, 1, 1, 1 }, { 1, 0, 0, 0 }, { 1, 0, 0, 0 }, { 1, 0, 0, 0 } };
+		matrixGraphFactory.createMatrixGraph(star, false).getEulerianPath();
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void listGraph_getEulerianCycle_notEulerian() {
+		int[][] path = { { 0, 1 }, { 0, 0 } };
+		ListGraph listGraph = listGraphFactory.createListGraph(path, true);
+		listGraph.getEulerianCycle(listGraph.getVertexAt(0));
+	}
+	
+	@Test
+	public void isConnected_allGraphs() {
+		// 0 - 1 - 2 and a loop at 3, 4 isolated
+		int[][] undirected = { { 0, 1, 0, 0, 0 }, { 1, 0, 2, 0, 0 }, { 0, 2, 0, 0, 0 },
+				{ 0, 0, 0, 1, 0 }, { 0, 0, 0, 0, 0 } };
+		// the cycle 0 -> 1 -> 2 -> 0, and 2 -> 3, 4 isolated
+		int[][] directed = { { 0, 1, 0, 0, 0 }, { 0, 0, 1, 0, 0 }, { 1, 0, 0, 1, 0 },
+				{ 0, 0, 0, 0, 0 }, { 0, 0, 0, 0, 0 } };
+		
+		for (boolean isDirected : new boolean[] { false, true }) {
+			int[][] matrix = isDirected ? directed : undirected;
+			List<Vertex> vertices = Vertex.createVertices(5);
+			Graph[] graphs = { matrixGraphFactory.createMatrixGraph(vertices, matrix, isDirected),
+					listGraphFactory.createListGraph(vertices, matrix, isDirected),
+					edgesGraphFactory.createEdgesGraph(vertices, matrix, isDirected),
+					csrGraphFactory.createCsrGraph(vertices, matrix, isDirected) };
+			for (Graph graph : graphs) {
+				assertFalse(graph.isConnected());
+				assertFalse(graph.isStronglyConnected());
+				// a loop is an edge: 3 counts if undirected
+				assertEquals(isDirected, graph.isConnectedIgnoringIsolatedVertices());
+				if (graph instanceof CsrGraph) {
+					continue;
+				}
+				
+				graph.removeVertices(Sets.newHashSet(vertices.get(4)));
+				if (!isDirected) {
+					graph.removeUndirectedEdge(vertices.get(3), vertices.get(3));
+					graph.addUndirectedEdge(vertices.get(2), vertices.get(3));
+				}
+				assertTrue(graph.isConnected());
+				assertTrue(graph.isConnectedIgnoringIsolatedVertices());
+				assertEquals(!isDirected, graph.isStronglyConnected());
+				
+				if (isDirected) {
+					graph.addDirectedEdge(vertices.get(3), vertices.get(1));
+					assertTrue(graph.isStronglyConnected());
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void isConnected_emptyAndSingleVertex() {
+		MatrixGraph empty = matrixGraphFactory.createMatrixGraph(new int[0][0], true);
+		assertTrue(empty.isConnected());
+		assertTrue(empty.isStronglyConnected());
+		ListGraph single = listGraphFactory.createListGraph(new int[][] { { 0 } }, true);
+		assertTrue(single.isConnected());
+		assertTrue(single.isStronglyConnected());
+		assertTrue(single.isConnectedIgnoringIsolatedVertices());
+	}
+	
+	@Test
+	public void isConnected_largeCycle() {
+		int n = 1000000;
+		int[] offsets = new int[n + 1];
+		int[] neighbors = new int[n];
+		int[] multiplicities = new int[n];
+		for (int i = 0; i < n; i++) {
+			offsets[i + 1] = i + 1;
+			neighbors[i] = (i + 1) % n;
+			multiplicities[i] = 1;
+		}
+		List<Vertex> vertices = Vertex.createVertices(n);
+		CsrGraph cycle = new CsrGraph(vertices, offsets, neighbors, multiplicities, true);
+		assertTrue(cycle.isStronglyConnected());
+		
+		// without the edge n - 1 -> 0
+		offsets[n] = n - 1;
+		CsrGraph path = new CsrGraph(vertices, offsets, Arrays.copyOf(neighbors, n - 1),
+				Arrays.copyOf(multiplicities, n - 1), true);
+		assertTrue(path.isConnected());
+		assertFalse(path.isStronglyConnected());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void edgesGraph_getEulerianCycle_startNodeIsolated() {
+		EdgesGraph graph = edgesGraphFactory.createEdgesGraph(largerVerticesSet, smallUndirected, HashMultiset.<Edge>create());
+		graph.getEulerianCycle(graph, v5);
+	}
+	
+	@Test
+	public void isEulerian_keptUpToDate() {
+		Random random = new Random(24);
+		for (boolean isDirected : new boolean[] { false, true }) {
+			int[][] matrix = new int[8][8];
+			List<Vertex> vertices = Vertex.createVertices(8);
+			Graph[] graphs = { matrixGraphFactory.createMatrixGraph(vertices, matrix, isDirected),
+					matrixGraphFactory.createMatrixGraph(vertices, matrix, isDirected, 
+							MatrixGraph.Layout.SPARSE, MatrixGraph.CellType.INT),
+					listGraphFactory.createListGraph(vertices, matrix, isDirected),
+					edgesGraphFactory.createEdgesGraph(vertices, matrix, isDirected),
+					bitMatrixGraphFactory.createBitMatrixGraph(vertices, matrix, isDirected) };
+			for (Graph graph : graphs) {
+				assertTrue(graph.isEulerian());
+				boolean isSimple = graph instanceof BitMatrixGraph;
+				for (int step = 0; step < 300; step++) {
+					int n = graph.getNoOfVertices();
+					Vertex start = graph.getVertexAt(random.nextInt(n));
+					Vertex end = graph.getVertexAt(random.nextInt(n));
+					if (isSimple && start.equals(end)) {
+						continue;
+					}
+					Edge edge = isDirected ? Edge.directed(start, end) : Edge.undirected(start, end);
+					boolean contains = isDirected ? graph.getDirectedEdges().contains(edge) 
+							: graph.getUndirectedEdges().contains(edge);
+					if (contains && (isSimple || random.nextBoolean())) {
+						graph.removeEdges(HashMultiset.create(Collections.singleton(edge)));
+					} else if (!contains || !isSimple) {
+						// an EdgesGraph without edges is undirected
+						if (graph.isDirected() != isDirected) {
+							graph.addEdges(HashMultiset.create(Collections.singleton(edge)));
+						} else if (isDirected) {
+							graph.addDirectedEdge(edge);
+						} else {
+							graph.addUndirectedEdge(edge);
+						}
+					}
+					if (step == 150) {
+						graph.removeVertex(graph.getVertexAt(0));
+						graph.addVertices(Sets.newHashSet(new Vertex()));
+					}
+					assertEquals(new EulerianWalk(graph).isEulerian(), graph.isEulerian());
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void keepComponents_sameAsBuilt() {
+		Random random = new Random(25);
+		List<Vertex> vertices = Vertex.createVertices(200);
+		int[][] matrix = new int[200][200];
+		ListGraph kept = listGraphFactory.createListGraph(vertices, matrix, false);
+		EdgesGraph built = edgesGraphFactory.createEdgesGraph(vertices, matrix, false);
+		kept.keepComponents();
+		assertEquals(200, kept.getNoOfComponents());
+		
+		for (int step = 0; step < 400; step++) {
+			Vertex start = kept.getVertexAt(random.nextInt(kept.getNoOfVertices()));
+			Vertex end = kept.getVertexAt(random.nextInt(kept.getNoOfVertices()));
+			if (step % 10 == 9 && built.getUndirectedEdges().contains(Edge.undirected(start, end))) {
+				kept.removeUndirectedEdge(start, end);
+				built.removeUndirectedEdge(start, end);
+			} else {
+				kept.addUndirectedEdge(start, end);
+				built.addUndirectedEdge(start, end);
+			}
+			assertEquals(built.getNoOfComponents(), kept.getNoOfComponents());
+			assertEquals(built.areConnected(start, end), kept.areConnected(start, end));
+			assertEquals(built.isConnected(), kept.isConnected());
+			if (step == 200) {
+				Vertex newVertex = new Vertex();
+				kept.addVertices(Sets.newHashSet(newVertex));
+				built.addVertices(Sets.newHashSet(newVertex));
+				kept.removeVertex(start);
+				built.removeVertex(start);
+				assertEquals(built.getNoOfComponents(), kept.getNoOfComponents());
+			}
+		}
+	}
+	
+	@Test
+	public void keepComponents_directedEdgesIgnoreDirection() {
+		int[][] matrix = { { 0, 1, 0, 0 }, { 0, 0, 0, 0 }, { 0, 1, 0, 0 }, { 0, 0, 0, 0 } };
+		MatrixGraph graph = matrixGraphFactory.createMatrixGraph(matrix, true);
+		graph.keepComponents();
+		
+		assertEquals(2, graph.getNoOfComponents());
+		assertTrue(graph.areConnected(graph.getVertexAt(0), graph.getVertexAt(2)));
+		assertFalse(graph.areConnected(graph.getVertexAt(0), graph.getVertexAt(3)));
+		graph.addDirectedEdge(graph.getVertexAt(3), graph.getVertexAt(3));
+		assertEquals(2, graph.getNoOfComponents());
+		graph.addDirectedEdge(graph.getVertexAt(3), graph.getVertexAt(2));
+		assertEquals(1, graph.getNoOfComponents());
+		graph.removeDirectedEdge(graph.getVertexAt(0), graph.getVertexAt(1));
+		assertEquals(2, graph.getNoOfComponents());
+		assertFalse(graph.areConnected(graph.getVertexAt(0), graph.getVertexAt(3)));
+	}
+	
+	@Test
+	public void matrixGraph_sparse_rowsInTimeOfDegree() {
+		int n = 300000;
+		List<Vertex> vertices = Vertex.createVertices(n);
+		MatrixGraph cycle = new MatrixGraph(vertices, true, MatrixGraph.Layout.SPARSE, MatrixGraph.CellType.INT);
+		MatrixGraph copy = new MatrixGraph(vertices, true, MatrixGraph.Layout.SPARSE, MatrixGraph.CellType.INT);
+		for (int i = 0; i < n; i++) {
+			cycle.addToEntry(i, (i + 1) % n, 1);
+			copy.addToEntry((i + 1) % n, (i + 2) % n, 1);
+		}
+		
+		// each row visited once, and both graphs compared without a matrix
+		assertTrue(cycle.isStronglyConnected());
+		assertEquals(copy, cycle);
+		assertEquals(ImmutableMultiset.of(Edge.directed(vertices.get(5), vertices.get(6))), 
+				cycle.getEdgesFrom(vertices.get(5)));
+		
+		cycle.removeDirectedEdge(vertices.get(5), vertices.get(6));
+		cycle.addDirectedEdge(vertices.get(5), vertices.get(7));
+		assertFalse(cycle.equals(copy));
+		assertFalse(cycle.isStronglyConnected());
+		assertEquals(ImmutableMultiset.of(Edge.directed(vertices.get(5), vertices.get(7))), 
+				cycle.getEdgesFrom(vertices.get(5)));
+	}
+	
+	@Test
+	public void matrixGraph_sparse_removeVertexInTimeOfDegree() {
+		int n = 300000;
+		List<Vertex> vertices = Vertex.createVertices(n);
+		MatrixGraph cycle = new MatrixGraph(vertices, true, MatrixGraph.Layout.SPARSE, MatrixGraph.CellType.INT);
+		for (int i = 0; i < n; i++) {
+			cycle.addToEntry(i, (i + 1) % n, 1);
+		}
+		
+		// each removal clears the row and the column of the slot through 
+		// their cells only
+		for (int i = n - 2; i >= n - 1000; i -= 2) {
+			cycle.removeVertex(vertices.get(i));
+		}
+		
+		assertEquals(n - 500, cycle.getNoOfVertices());
+		assertEquals(0, cycle.getOutdegreeAt(vertices.get(n - 1001)));
+		assertEquals(0, cycle.getIndegreeAt(vertices.get(n - 1)));
+		assertEquals(1, cycle.getOutdegreeAt(vertices.get(n - 1)));
+		assertEquals(1, cycle.getIndegreeAt(vertices.get(n - 1002)));
+	}
+	
+	@Test
+	public void bitMatrixGraph_removeVertices_sameAsOneByOne() {
+		Random random = new Random(14);
+		int n = 150;
+		for (boolean isDirected : new boolean[] { false, true }) {
+			int[][] matrix = new int[n][n];
+			for (int i = 0; i < n; i++) {
+				for (int j = 0; j < i; j++) {
+					matrix[i][j] = random.nextInt(3) == 0 ? 1 : 0;
+					matrix[j][i] = isDirected ? random.nextInt(2) : matrix[i][j];
+				}
+			}
+			List<Vertex> vertices = Vertex.createVertices(n);
+			BitMatrixGraph graph = bitMatrixGraphFactory.createBitMatrixGraph(vertices, matrix, isDirected);
+			BitMatrixGraph expected = bitMatrixGraphFactory.createBitMatrixGraph(vertices, matrix, isDirected);
+			Set<Vertex> removed = Sets.newHashSet();
+			for (int i = 0; i < n; i += 1 + random.nextInt(4)) {
+				removed.add(vertices.get(i));
+			}
+			
+			graph.removeVertices(removed);
+			for (Vertex v : removed) {
+				expected.removeVertex(v);
+			}
+			assertEquals(expected.getNoOfVertices(), graph.getNoOfVertices());
+			for (int i = 0; i < graph.getNoOfVertices(); i++) {
+				assertEquals(expected.getVertexAt(i), graph.getVertexAt(i));
+			}
+			assertEquals(expected, graph);
+			assertEquals(collectEdges(expected), collectEdges(graph));
+			
+			// the spare rows are empty
+			graph.addVertices(Sets.newHashSet(removed));
+			assertEquals(collectEdges(expected), collectEdges(graph));
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package graphimplementations;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Preconditions;
+
+/**
+ *
+ * A space of labels for vertices: two vertices are equal only if they have
+ * the same label in the same space. All vertices are created in GLOBAL
+ * unless a space is given, e.g. one per graph loaded from a file.
+ *
+ * Labels are reserved from an atomic counter in blocks, one block per thread
+ * at a time, so that threads creating vertices do not wait for each other.
+ *
+ * @author mmcasetti
+ *
+ */
+public final class IdSpace {
+	public static final IdSpace GLOBAL = new IdSpace();
+
+	private static final int BLOCK_SIZE = 1024;
+
+	private final AtomicLong nextBlock;
+	// for each thread: next free label and end of its block
+	private final ThreadLocal<long[]> block = new ThreadLocal<long[]>() {
+		@Override
+		protected long[] initialValue() {
+			return new long[2];
+		}
+	};
+
+	public IdSpace() {
+		this(0);
+	}
+
+	/**
+	 * A space whose labels start from firstLabel (the ones before are
+	 * taken, e.g. by vertices read from a file).
+	 */
+	IdSpace(long firstLabel) {
+		this.nextBlock = new AtomicLong(firstLabel);
+	}
+
+	/**
+	 * @return a label never returned before in this space
+	 */
+	long nextId() {
+		long[] current = block.get();
+		if (current[0] == current[1]) {
+			current[0] = nextBlock.getAndAdd(BLOCK_SIZE);
+			current[1] = current[0] + BLOCK_SIZE;
+		}
+		return current[0]++;
+	}
+
+	/**
+	 *
+	 * @param noOfIds
+	 * @return the first of noOfIds consecutive labels never returned before
+	 * in this space
+	 */
+	long reserveIds(int noOfIds) {
+		Preconditions.checkArgument(noOfIds >= 0, "Negative number of labels");
+		long[] current = block.get();
+		if (current[1] - current[0] >= noOfIds) {
+			current[0] += noOfIds;
+			return current[0] - noOfIds;
+		}
+		return nextBlock.getAndAdd(noOfIds);
+	}
+}
@@ -1,51 +1,110 @@
 package graphimplementations;
 
+import interfaces.EdgeConsumer;
 import interfaces.Graph;
 
+import java.util.AbstractList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableMultiset;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multiset;
 import com.google.common.collect.Sets;
 
 import abstractclasses.AbstractGraph;
 
 /**
- * 
+ *
  * @author mmcasetti
- * 
- * A class to implement a multigraph, seen as an adjacency list of multisets. 
- * A list of vertices keeps track of the order of the vertices. A boolean 
- * keeps track of whether the graph is directed or undirected.
+ *
+ * A class to implement a multigraph, seen as an adjacency list of multisets.
+ * A list of vertices keeps track of the order of the vertices, and a map
+ * from each vertex to its position in the list makes finding it constant
+ * time. A boolean keeps track of whether the graph is directed or undirected.
+ *
+ * Each multiset is stored as an AdjacencyRow: the sorted indices of the
+ * neighbours, with their multiplicities, in int arrays. getAdjacencyList()
+ * shows the rows as (unmodifiable) multisets of vertices, built when asked.
+ *
+ * In a directed graph, the first query about the edges to a vertex builds
+ * the incoming rows (for each vertex, the vertices with an edge to it), which
+ * are then kept up to date by the methods that modify the graph.
  *
  */
 
 public class ListGraph extends AbstractGraph {
 	private List<Vertex> vertices;
-	private List<Multiset<Vertex>> adjacencyList;
+	private Map<Vertex, Integer> indices;
+	private List<AdjacencyRow> rows;
+	private List<AdjacencyRow> incomingRows;
 	private boolean isDirected;
-	
+
 	public ListGraph(List<Vertex> vertices, List<Multiset<Vertex>> adjacencyList, boolean isDirected) {
-		Preconditions.checkArgument(vertices.size() == adjacencyList.size(), 
+		Preconditions.checkArgument(vertices.size() == adjacencyList.size(),
 				"Too many or too few vertices");
+		this.indices = Maps.newHashMapWithExpectedSize(vertices.size());
+		for (int i = 0; i < vertices.size(); i++) {
+			indices.put(vertices.get(i), i);
+		}
+		this.rows = Lists.newArrayListWithCapacity(vertices.size());
+		for (int i = 0; i < adjacencyList.size(); i++) {
+			Set<Multiset.Entry<Vertex>> entries = adjacencyList.get(i).entrySet();
+			long[] packed = new long[entries.size()];
+			int k = 0;
+			for (Multiset.Entry<Vertex> entry : entries) {
+				Integer index = indices.get(entry.getElement());
+				Preconditions.checkArgument(index != null, "Vertex in list not in graph.");
+				packed[k++] = AdjacencyRow.pack(index, entry.getCount());
+			}
+			rows.add(AdjacencyRow.fromEntries(packed, k));
+		}
 		if (!isDirected) {
-			for (int i = 0; i < adjacencyList.size(); i++) {
-				for (Vertex v : adjacencyList.get(i)) {
-					int indexV = vertices.indexOf(v);
-					Preconditions.checkArgument(adjacencyList.get(i).count(v) == adjacencyList.get(indexV).count(vertices.get(i)));												
+			for (int i = 0; i < rows.size(); i++) {
+				AdjacencyRow row = rows.get(i);
+				for (int k = 0; k < row.size(); k++) {
+					Preconditions.checkArgument(row.getMultiplicity(k) == rows.get(row.getNeighbor(k)).count(i));
 				}
 			}
 		}
-			
-		this.vertices = vertices;
-		this.adjacencyList = adjacencyList;
+
+		this.vertices = Lists.newArrayList(vertices);
 		this.isDirected = isDirected;
 	}
-	
+
+	/**
+	 * A copy of the given rows, with the given vertices (no checks).
+	 */
+	private ListGraph(List<Vertex> vertices, Map<Vertex, Integer> indices, List<AdjacencyRow> rows, boolean isDirected) {
+		this.vertices = Lists.newArrayList(vertices);
+		this.indices = Maps.newHashMap(indices);
+		this.rows = Lists.newArrayListWithCapacity(rows.size());
+		for (AdjacencyRow row : rows) {
+			this.rows.add(row.copy());
+		}
+		this.isDirected = isDirected;
+	}
+
+	/**
+	 * @return the graph with the given vertices and rows (not copied, no
+	 * checks)
+	 */
+	static ListGraph fromRows(List<Vertex> vertices, List<AdjacencyRow> rows, boolean isDirected) {
+		Map<Vertex, Integer> indices = Maps.newHashMapWithExpectedSize(vertices.size());
+		for (int i = 0; i < vertices.size(); i++) {
+			indices.put(vertices.get(i), i);
+		}
+		ListGraph graph = new ListGraph(vertices, indices, Collections.<AdjacencyRow>emptyList(), isDirected);
+		graph.rows = rows;
+		return graph;
+	}
+
 	@Override
 	public boolean equals(Object other) {
 		if (super.equals(other)) {
@@ -57,9 +116,9 @@ public class ListGraph extends AbstractGraph {
 		if (!(other instanceof ListGraph)) {
 			AbstractGraph otherGraph = (AbstractGraph) other;
 			return otherGraph.equals(this);
-//			return (otherGraph.isDirected() == this.isDirected() && 
+//			return (otherGraph.isDirected() == this.isDirected() &&
 //					otherGraph.getVertices().equals(this.getVertices()) &&
-//					otherGraph.getUndirectedEdges().equals(this.getUndirectedEdges()) && 
+//					otherGraph.getUndirectedEdges().equals(this.getUndirectedEdges()) &&
 //					otherGraph.getDirectedEdges().equals(this.getDirectedEdges()));
 		} else {
 			ListGraph otherListGraph = (ListGraph) other;
@@ -67,9 +126,13 @@ public class ListGraph extends AbstractGraph {
 				return false;
 			}
 			if (this.getListOfVertices().size() != otherListGraph.getListOfVertices().size()
-				|| this.getAdjacencyList().size() != otherListGraph.getAdjacencyList().size()) {
+				|| this.rows.size() != otherListGraph.rows.size()) {
 				return false;
 			}
+			// same vertices in the same order: the rows of indices can be compared
+			if (this.getListOfVertices().equals(otherListGraph.getListOfVertices())) {
+				return this.rows.equals(otherListGraph.rows);
+			}
 			for (int i = 0; i < this.getListOfVertices().size(); i++) {
 				if (!this.getAdjacencyList().get(i).equals(otherListGraph.getAdjacencyList().get(i))) {
 					return false;
@@ -78,12 +141,12 @@ public class ListGraph extends AbstractGraph {
 			return true;
 		}
 	}
-	
+
 	@Override
 	public Set<Vertex> getVertices() {
 		return Sets.newHashSet(vertices);
 	}
-	
+
 	@Override
 	public int getNoOfVertices() {
 		return vertices.size();
@@ -95,16 +158,84 @@ public class ListGraph extends AbstractGraph {
 	}
 
 	/**
-	 * 	
+	 *
 	 * @param vertex
-	 * @return its index in the list of vertices of the graph. Private!
+	 * @return its index in the list of vertices of the graph
 	 */
-	private int getIndexOf(Vertex vertex) {
-		Preconditions.checkArgument(getListOfVertices().contains(vertex), 
-				"Vertex not in graph.");		
-		return getListOfVertices().indexOf(vertex);
+	@Override
+	public int getIndexOf(Vertex vertex) {
+		Integer index = indices.get(vertex);
+		Preconditions.checkArgument(index != null,
+				"Vertex not in graph.");
+		return index;
 	}
-	
+
+	@Override
+	public Vertex getVertexAt(int index) {
+		return vertices.get(index);
+	}
+
+	@Override
+	public void forEachEdge(EdgeConsumer consumer) {
+		for (int i = 0; i < rows.size(); i++) {
+			AdjacencyRow row = rows.get(i);
+			for (int k = 0; k < row.size(); k++) {
+				if (isDirected || i <= row.getNeighbor(k)) {
+					consumer.accept(i, row.getNeighbor(k), row.getMultiplicity(k));
+				}
+			}
+		}
+	}
+
+	@Override
+	public void forEachNeighbor(int index, EdgeConsumer consumer) {
+		AdjacencyRow row = rows.get(index);
+		for (int k = 0; k < row.size(); k++) {
+			consumer.accept(index, row.getNeighbor(k), row.getMultiplicity(k));
+		}
+	}
+
+	/**
+	 *
+	 * @param vertex
+	 * @return if the vertex is in the graph, in constant time
+	 */
+	private boolean containsVertex(Vertex vertex) {
+		return indices.containsKey(vertex);
+	}
+
+	/**
+	 *
+	 * @param start
+	 * @param end
+	 * @return if there is an edge between start and end (from start to end,
+	 * if the graph is directed)
+	 */
+	private boolean containsEdge(Vertex start, Vertex end) {
+		return rows.get(getIndexOf(start)).count(getIndexOf(end)) > 0;
+	}
+
+	/**
+	 *
+	 * @return for each vertex, the row of the vertices with an edge to it
+	 * (built the first time it is needed, then kept up to date)
+	 */
+	private List<AdjacencyRow> getIncomingRows() {
+		if (incomingRows == null) {
+			incomingRows = Lists.newArrayListWithCapacity(rows.size());
+			for (int i = 0; i < rows.size(); i++) {
+				incomingRows.add(new AdjacencyRow());
+			}
+			for (int i = 0; i < rows.size(); i++) {
+				AdjacencyRow row = rows.get(i);
+				for (int k = 0; k < row.size(); k++) {
+					incomingRows.get(row.getNeighbor(k)).add(i, row.getMultiplicity(k));
+				}
+			}
+		}
+		return incomingRows;
+	}
+
 	@Override
 	public boolean isDirected() {
 		return isDirected;
@@ -117,13 +248,14 @@ public class ListGraph extends AbstractGraph {
 		}
 
 		Multiset<Edge> edges = HashMultiset.create();
-		for (int indexStart = 0; indexStart < getAdjacencyList().size(); indexStart++) {
+		for (int indexStart = 0; indexStart < rows.size(); indexStart++) {
 			Vertex start = getListOfVertices().get(indexStart);
-			for (Vertex end : getAdjacencyList().get(indexStart)) {
-				int indexEnd = getIndexOf(end);
+			AdjacencyRow row = rows.get(indexStart);
+			for (int k = 0; k < row.size(); k++) {
+				int indexEnd = row.getNeighbor(k);
 				if (indexStart <= indexEnd) {
-					Edge e = Edge.between(start).and(end);
-					edges.add(e);
+					Edge e = Edge.undirected(start, getListOfVertices().get(indexEnd));
+					edges.add(e, row.getMultiplicity(k));
 				}
 			}
 		}
@@ -137,20 +269,40 @@ public class ListGraph extends AbstractGraph {
 		}
 
 		Multiset<Edge> edges = HashMultiset.create();
-		for (int indexStart = 0; indexStart < getAdjacencyList().size(); indexStart++) {
+		for (int indexStart = 0; indexStart < rows.size(); indexStart++) {
 			Vertex start = getListOfVertices().get(indexStart);
-			for (Vertex end : getAdjacencyList().get(indexStart)) {
-				Edge e = Edge.from(start).to(end);
-				edges.add(e);
+			AdjacencyRow row = rows.get(indexStart);
+			for (int k = 0; k < row.size(); k++) {
+				Edge e = Edge.directed(start, getListOfVertices().get(row.getNeighbor(k)));
+				edges.add(e, row.getMultiplicity(k));
 			}
 		}
 		return edges;
 	}
 
-	
+	/**
+	 *
+	 * @return a read-only view of the adjacency list: each row is turned
+	 * into a multiset of vertices when it is asked for
+	 */
 	public List<Multiset<Vertex>> getAdjacencyList() {
-		return adjacencyList;
-	}	
+		return new AbstractList<Multiset<Vertex>>() {
+			@Override
+			public Multiset<Vertex> get(int index) {
+				AdjacencyRow row = rows.get(index);
+				ImmutableMultiset.Builder<Vertex> multiset = ImmutableMultiset.builder();
+				for (int k = 0; k < row.size(); k++) {
+					multiset.addCopies(getListOfVertices().get(row.getNeighbor(k)), row.getMultiplicity(k));
+				}
+				return multiset.build();
+			}
+
+			@Override
+			public int size() {
+				return rows.size();
+			}
+		};
+	}
 
 	@Override
 	public Graph makeUndirected() {
@@ -165,280 +317,425 @@ public class ListGraph extends AbstractGraph {
 		if (isDirected()) {
 			return this;
 		}
-		List<Multiset<Vertex>> directedList = Lists.newArrayList(getAdjacencyList());
+		ListGraph directed = new ListGraph(getListOfVertices(), indices, rows, true);
 		// we have to duplicate the loops - the rest of the list is the same
-		for (int i = 0; i < getAdjacencyList().size(); i++) {
-			directedList.get(i).add(getListOfVertices().get(i), getAdjacencyList().get(i).count(getListOfVertices().get(i)));
+		for (int i = 0; i < directed.rows.size(); i++) {
+			AdjacencyRow row = directed.rows.get(i);
+			row.add(i, row.count(i));
 		}
-		return new ListGraph(getListOfVertices(), directedList, true);
+		return directed;
 	}
 
 	@Override
 	public Multiset<Edge> getEdgesAt(Vertex vertex) {
-		Preconditions.checkArgument(getVertices().contains(vertex), 
+		Preconditions.checkArgument(containsVertex(vertex),
 				"Vertex not in graph.");
-		Preconditions.checkArgument(!isDirected(), 
+		Preconditions.checkArgument(!isDirected(),
 				"Use getEdgesFrom and getEdgesTo.");
-		
-		Multiset<Edge> edgesAt = HashMultiset.create();		
-		int indexOfV = getIndexOf(vertex);
-		for (Vertex otherVertex : getAdjacencyList().get(indexOfV)){
-			Edge edge = Edge.between(vertex).and(otherVertex);
-			edgesAt.add(edge);
+
+		Multiset<Edge> edgesAt = HashMultiset.create();
+		AdjacencyRow row = rows.get(getIndexOf(vertex));
+		for (int k = 0; k < row.size(); k++) {
+			Vertex otherVertex = getListOfVertices().get(row.getNeighbor(k));
+			Edge edge = Edge.undirected(vertex, otherVertex);
+			edgesAt.add(edge, row.getMultiplicity(k));
 		}
 		return edgesAt;
 	}
-	
+
 	@Override
 	public Multiset<Edge> getEdgesFrom(Vertex vertex) {
-		Preconditions.checkArgument(getVertices().contains(vertex), 
+		Preconditions.checkArgument(containsVertex(vertex),
 				"Vertex not in graph.");
-		Preconditions.checkArgument(isDirected(), 
+		Preconditions.checkArgument(isDirected(),
 				"Use getEdgesAt.");
 
-		Multiset<Edge> edgesFrom = HashMultiset.create();		
-		int indexOfV = getIndexOf(vertex);
-		for (Vertex otherVertex : getAdjacencyList().get(indexOfV)){
-			Edge edge = Edge.from(vertex).to(otherVertex);
-			edgesFrom.add(edge);
+		Multiset<Edge> edgesFrom = HashMultiset.create();
+		AdjacencyRow row = rows.get(getIndexOf(vertex));
+		for (int k = 0; k < row.size(); k++) {
+			Vertex otherVertex = getListOfVertices().get(row.getNeighbor(k));
+			Edge edge = Edge.directed(vertex, otherVertex);
+			edgesFrom.add(edge, row.getMultiplicity(k));
 		}
 		return edgesFrom;
 	}
-	
+
 	@Override
 	public Multiset<Edge> getEdgesTo(Vertex vertex) {
-		Preconditions.checkArgument(getVertices().contains(vertex), 
+		Preconditions.checkArgument(containsVertex(vertex),
 				"Vertex not in graph.");
-		Preconditions.checkArgument(isDirected(), 
+		Preconditions.checkArgument(isDirected(),
 				"Use getEdgesAt.");
-		
+
 		Multiset<Edge> edgesTo = HashMultiset.create();
-		for (int i = 0; i < getAdjacencyList().size(); i++) {
-			Vertex v = getListOfVertices().get(i);
-			Edge edge = Edge.from(v).to(vertex);
-			edgesTo.add(edge, getAdjacencyList().get(i).count(vertex));
+		AdjacencyRow incomingRow = getIncomingRows().get(getIndexOf(vertex));
+		for (int k = 0; k < incomingRow.size(); k++) {
+			Vertex v = getListOfVertices().get(incomingRow.getNeighbor(k));
+			Edge edge = Edge.directed(v, vertex);
+			edgesTo.add(edge, incomingRow.getMultiplicity(k));
 		}
-		
+
 		return edgesTo;
 	}
-	
+
 	@Override
 	public int getDegreeAt(Vertex vertex) {
-		Preconditions.checkArgument(getVertices().contains(vertex), 
+		Preconditions.checkArgument(containsVertex(vertex),
 				"Vertex not in graph.");
-		Preconditions.checkArgument(!isDirected(), 
+		Preconditions.checkArgument(!isDirected(),
 				"Use getOutdegreeAt and getIndegreeAt");
-		
-		return getAdjacencyList().get(getIndexOf(vertex)).size();
+
+		return rows.get(getIndexOf(vertex)).getDegree();
 	}
-	
+
 	@Override
 	public int getOutdegreeAt(Vertex vertex) {
-		Preconditions.checkArgument(getVertices().contains(vertex), 
+		Preconditions.checkArgument(containsVertex(vertex),
 				"Vertex not in graph.");
-		Preconditions.checkArgument(isDirected(), 
+		Preconditions.checkArgument(isDirected(),
 				"Use getDegreeAt");
 
-		return getAdjacencyList().get(getIndexOf(vertex)).size();
+		return rows.get(getIndexOf(vertex)).getDegree();
 	}
-		
+
 	@Override
 	public int getIndegreeAt(Vertex vertex) {
-		Preconditions.checkArgument(getVertices().contains(vertex), 
+		Preconditions.checkArgument(containsVertex(vertex),
 				"Vertex not in graph.");
-		Preconditions.checkArgument(isDirected(), 
+		Preconditions.checkArgument(isDirected(),
 				"Use getDegreeAt");
 
-		int indegree = 0;
-		for (int i = 0; i < getAdjacencyList().size(); i++) {
-			indegree += getAdjacencyList().get(i).count(vertex);
-		}
-		return indegree;
+		return getIncomingRows().get(getIndexOf(vertex)).getDegree();
 	}
-	
+
 	@Override
 	public void addVertices(Set<Vertex> newVertices) {
 		for (Vertex v : newVertices) {
-			Preconditions.checkArgument(!getVertices().contains(v), 
+			Preconditions.checkArgument(!containsVertex(v),
 					"New vertex already in graph.");
 		}
-		
-		getListOfVertices().addAll(newVertices);
-		for (int i = 0; i < newVertices.size(); i++) {
-			Multiset<Vertex> multiset = HashMultiset.create();
-			getAdjacencyList().add(multiset);
+
+		for (Vertex v : newVertices) {
+			indices.put(v, getListOfVertices().size());
+			getListOfVertices().add(v);
+			rows.add(new AdjacencyRow());
+			if (incomingRows != null) {
+				incomingRows.add(new AdjacencyRow());
+			}
 		}
 	}
 
 	@Override
 	public void removeVertex(Vertex vertex) {
-		Preconditions.checkArgument(getVertices().contains(vertex), 
+		Preconditions.checkArgument(containsVertex(vertex),
 				"Vertex not in graph.");
-		
-		for (int i = 0; i < getAdjacencyList().size(); i++) {
-			getAdjacencyList().get(i).remove(vertex, 
-					getAdjacencyList().get(i).count(vertex));
+
+		int index = getIndexOf(vertex);
+		rows.remove(index);
+		for (AdjacencyRow row : rows) {
+			row.removeIndex(index);
+		}
+		if (incomingRows != null) {
+			incomingRows.remove(index);
+			for (AdjacencyRow incomingRow : incomingRows) {
+				incomingRow.removeIndex(index);
+			}
 		}
-		getAdjacencyList().remove(getIndexOf(vertex));
-		getListOfVertices().remove(vertex);
+		getListOfVertices().remove(index);
+		indices.remove(vertex);
+		// the vertices after the removed one move back by one
+		for (int i = index; i < getListOfVertices().size(); i++) {
+			indices.put(getListOfVertices().get(i), i);
+		}
+		verticesRemoved();
 	}
 
 	@Override
 	public void addUndirectedEdge(Edge edge) {
-		Preconditions.checkArgument(getVertices().contains(edge.getStart()) 
-				&& getVertices().contains(edge.getEnd()), 
+		Preconditions.checkArgument(containsVertex(edge.getStart())
+				&& containsVertex(edge.getEnd()),
 				"Edge's endpoints not in graph.");
-		Preconditions.checkArgument(!edge.isDirected() && !isDirected(), 
+		Preconditions.checkArgument(!edge.isDirected() && !isDirected(),
 				"Use addDirectedEdge.");
-		
+
 		Vertex start = edge.getStart();
 		Vertex end = edge.getEnd();
-		
+
 		int startIndex = getIndexOf(start);
 		int endIndex = getIndexOf(end);
-		
-		getAdjacencyList().get(startIndex).add(end);
+
+		rows.get(startIndex).add(endIndex, 1);
 		if (!edge.isLoop()) {
-			getAdjacencyList().get(endIndex).add(start);			
+			rows.get(endIndex).add(startIndex, 1);
 		}
+		edgesChanged(startIndex, endIndex, 1);
 	}
-	
+
 	@Override
 	public void addDirectedEdge(Edge edge) {
-		Preconditions.checkArgument(vertices.contains(edge.getStart()) 
-				&& vertices.contains(edge.getEnd()), 
+		Preconditions.checkArgument(containsVertex(edge.getStart())
+				&& containsVertex(edge.getEnd()),
 				"Edge's endpoints not in graph.");
-		Preconditions.checkArgument(edge.isDirected() && isDirected(), 
+		Preconditions.checkArgument(edge.isDirected() && isDirected(),
 				"Use addUndirectedEdge.");
-		
+
 		Vertex start = edge.getStart();
 		Vertex end = edge.getEnd();
-		
+
 		int startIndex = getIndexOf(start);
-		
-		getAdjacencyList().get(startIndex).add(end);
+		int endIndex = getIndexOf(end);
+
+		rows.get(startIndex).add(endIndex, 1);
+		if (incomingRows != null) {
+			incomingRows.get(endIndex).add(startIndex, 1);
+		}
+		edgesChanged(startIndex, endIndex, 1);
 	}
-	
+
 	@Override
 	public void addUndirectedEdge(Vertex start, Vertex end) {
-		Preconditions.checkArgument(getVertices().contains(start) 
-				&& getVertices().contains(end), "Edge's endpoints not in graph.");		
+		Preconditions.checkArgument(containsVertex(start)
+				&& containsVertex(end), "Edge's endpoints not in graph.");
 		Preconditions.checkArgument(!isDirected(), "Use addDirectedEdge.");
 
 		int startIndex = getIndexOf(start);
 		int endIndex = getIndexOf(end);
-		
-		getAdjacencyList().get(startIndex).add(end);
+
+		rows.get(startIndex).add(endIndex, 1);
 		if (!start.equals(end)) {
-			getAdjacencyList().get(endIndex).add(start);			
+			rows.get(endIndex).add(startIndex, 1);
 		}
+		edgesChanged(startIndex, endIndex, 1);
 	}
 
 	@Override
 	public void addDirectedEdge(Vertex start, Vertex end) {
-		Preconditions.checkArgument(getVertices().contains(start) 
-				&& getVertices().contains(end), "Edge's endpoints not in graph.");		
-		Preconditions.checkArgument(isDirected(), 
+		Preconditions.checkArgument(containsVertex(start)
+				&& containsVertex(end), "Edge's endpoints not in graph.");
+		Preconditions.checkArgument(isDirected(),
 				"Use addUndirectedEdge.");
 
 		int startIndex = getIndexOf(start);
-		getAdjacencyList().get(startIndex).add(end);		
+		int endIndex = getIndexOf(end);
+
+		rows.get(startIndex).add(endIndex, 1);
+		if (incomingRows != null) {
+			incomingRows.get(endIndex).add(startIndex, 1);
+		}
+		edgesChanged(startIndex, endIndex, 1);
 	}
 
 	@Override
 	public void removeUndirectedEdge(Edge edge) {
-		Preconditions.checkArgument(getVertices().contains(edge.getStart()) 
-				&& getVertices().contains(edge.getEnd()), 
+		Preconditions.checkArgument(containsVertex(edge.getStart())
+				&& containsVertex(edge.getEnd()),
 				"Edge's endpoints not in graph.");
-		Preconditions.checkArgument(getUndirectedEdges().contains(edge), 
-				"Edge not in graph.");
-		Preconditions.checkArgument(!edge.isDirected() && !isDirected(), 
+		Preconditions.checkArgument(!edge.isDirected() && !isDirected(),
 				"Use removeDirectedEdge.");
-		
+		Preconditions.checkArgument(containsEdge(edge.getStart(), edge.getEnd()),
+				"Edge not in graph.");
+
 		Vertex start = edge.getStart();
 		Vertex end = edge.getEnd();
 
 		int startIndex = getIndexOf(start);
 		int endIndex = getIndexOf(end);
 
-		getAdjacencyList().get(startIndex).remove(end);
+		rows.get(startIndex).remove(endIndex, 1);
 		if (!edge.isLoop()) {
-			getAdjacencyList().get(endIndex).remove(start);
+			rows.get(endIndex).remove(startIndex, 1);
 		}
+		edgesChanged(startIndex, endIndex, -1);
 	}
 
 	@Override
 	public void removeDirectedEdge(Edge edge) {
-		Preconditions.checkArgument(getVertices().contains(edge.getStart()) 
-				&& getVertices().contains(edge.getEnd()), 
+		Preconditions.checkArgument(containsVertex(edge.getStart())
+				&& containsVertex(edge.getEnd()),
 				"Edge's endpoints not in graph.");
-		Preconditions.checkArgument(getDirectedEdges().contains(edge), 
-				"Edge not in graph.");
-		Preconditions.checkArgument(edge.isDirected() && isDirected(), 
+		Preconditions.checkArgument(edge.isDirected() && isDirected(),
 				"Use removeUndirectedEdge.");
-		
+		Preconditions.checkArgument(containsEdge(edge.getStart(), edge.getEnd()),
+				"Edge not in graph.");
+
 		Vertex start = edge.getStart();
 		Vertex end = edge.getEnd();
-		
+
 		int startIndex = getIndexOf(start);
+		int endIndex = getIndexOf(end);
 
-		getAdjacencyList().get(startIndex).remove(end);
+		rows.get(startIndex).remove(endIndex, 1);
+		if (incomingRows != null) {
+			incomingRows.get(endIndex).remove(startIndex, 1);
+		}
+		edgesChanged(startIndex, endIndex, -1);
 	}
 
 	@Override
 	public void removeUndirectedEdge(Vertex start, Vertex end) {
-		Preconditions.checkArgument(vertices.contains(start) 
-				&& vertices.contains(end), 
+		Preconditions.checkArgument(containsVertex(start)
+				&& containsVertex(end),
 				"Edge's endpoints not in graph.");
-		Edge edge = Edge.between(start).and(end);
-		Preconditions.checkArgument(getUndirectedEdges().contains(edge), 
-				"Edge not in graph.");
 		Preconditions.checkArgument(!isDirected(), "Use removeDirectedEdge.");
-		
+		Preconditions.checkArgument(containsEdge(start, end),
+				"Edge not in graph.");
+
 		int startIndex = getIndexOf(start);
 		int endIndex = getIndexOf(end);
 
-		getAdjacencyList().get(startIndex).remove(end);
+		rows.get(startIndex).remove(endIndex, 1);
 		if (!start.equals(end)) {
-			getAdjacencyList().get(endIndex).remove(start);
+			rows.get(endIndex).remove(startIndex, 1);
 		}
+		edgesChanged(startIndex, endIndex, -1);
 	}
-	
+
 	@Override
 	public void removeDirectedEdge(Vertex start, Vertex end) {
-		Preconditions.checkArgument(getVertices().contains(start) 
-				&& getVertices().contains(end), 
+		Preconditions.checkArgument(containsVertex(start)
+				&& containsVertex(end),
 				"Edge's endpoints not in graph.");
-		Edge edge = Edge.from(start).to(end);
-		Preconditions.checkArgument(getDirectedEdges().contains(edge), 
-				"Edge not in graph.");
 		Preconditions.checkArgument(isDirected(), "UseRemoveUndirectedEdge.");
-		
+		Preconditions.checkArgument(containsEdge(start, end),
+				"Edge not in graph.");
+
 		int startIndex = getIndexOf(start);
+		int endIndex = getIndexOf(end);
 
-		getAdjacencyList().get(startIndex).remove(end);
+		rows.get(startIndex).remove(endIndex, 1);
+		if (incomingRows != null) {
+			incomingRows.get(endIndex).remove(startIndex, 1);
+		}
+		edgesChanged(startIndex, endIndex, -1);
 	}
-	
-	public boolean isEulerian() {
-		if (!isDirected()) {
-			for (Vertex v : getVertices()) {
-				Multiset<Vertex> otherVerticesConnectedTo = HashMultiset.create();
-				for (Vertex w : getAdjacencyList().get(getIndexOf(v))) {
-					if (!w.equals(v)) {
-						otherVerticesConnectedTo.add(w);
-					}
-				}
-				if (otherVerticesConnectedTo.size() % 2 != 0) {
-					return false;
-				}
-			}			
-		} else {
-			for (Vertex v : getVertices()) {
-				if (getIndegreeAt(v) != getOutdegreeAt(v)) {
-					return false;
+
+	/**
+	 * Checks that the edges are all directed (if the graph is directed) or
+	 * all undirected, with endpoints in the graph.
+	 */
+	private void checkEdges(Multiset<Edge> edges) {
+		for (Edge edge : edges.elementSet()) {
+			Preconditions.checkArgument(containsVertex(edge.getStart())
+					&& containsVertex(edge.getEnd()),
+					"Edge's endpoints not in graph.");
+			Preconditions.checkArgument(edge.isDirected() == isDirected(),
+					isDirected() ? "Undirected edge in directed graph." : "Directed edge in undirected graph.");
+		}
+	}
+
+	/**
+	 * Adds (sign 1) or removes (sign -1) the edges, merging them in each row
+	 * once.
+	 */
+	private void mergeEdges(Multiset<Edge> edges, int sign) {
+		Set<Multiset.Entry<Edge>> entries = edges.entrySet();
+		int[] starts = new int[2 * entries.size()];
+		int[] ends = new int[2 * entries.size()];
+		int[] times = new int[2 * entries.size()];
+		int length = 0;
+		for (Multiset.Entry<Edge> entry : entries) {
+			int start = getIndexOf(entry.getElement().getStart());
+			int end = getIndexOf(entry.getElement().getEnd());
+			edgesChanged(start, end, sign * entry.getCount());
+			starts[length] = start;
+			ends[length] = end;
+			times[length] = entry.getCount();
+			length++;
+			if (!isDirected() && start != end) {
+				starts[length] = end;
+				ends[length] = start;
+				times[length] = entry.getCount();
+				length++;
+			}
+		}
+		AdjacencyRow.mergeIntoRows(rows, starts, ends, times, length, sign);
+		if (isDirected() && incomingRows != null) {
+			AdjacencyRow.mergeIntoRows(incomingRows, ends, starts, times, length, sign);
+		}
+	}
+
+	@Override
+	public void addEdges(Multiset<Edge> edges) {
+		checkEdges(edges);
+
+		mergeEdges(edges, 1);
+	}
+
+	@Override
+	public void removeEdges(Multiset<Edge> edges) {
+		checkEdges(edges);
+		for (Multiset.Entry<Edge> entry : edges.entrySet()) {
+			int start = getIndexOf(entry.getElement().getStart());
+			int end = getIndexOf(entry.getElement().getEnd());
+			Preconditions.checkArgument(rows.get(start).count(end) >= entry.getCount(),
+					"Edge not in graph.");
+		}
+
+		mergeEdges(edges, -1);
+	}
+
+	@Override
+	public void removeVertices(Set<Vertex> verticesToRemove) {
+		for (Vertex v : verticesToRemove) {
+			Preconditions.checkArgument(containsVertex(v),
+					"Vertex not in graph.");
+		}
+
+		int[] newIndices = new int[vertices.size()];
+		List<Vertex> newVertices = Lists.newArrayListWithCapacity(vertices.size() - verticesToRemove.size());
+		List<AdjacencyRow> newRows = Lists.newArrayListWithCapacity(vertices.size() - verticesToRemove.size());
+		List<AdjacencyRow> newIncomingRows = (incomingRows == null) ? null
+				: Lists.<AdjacencyRow>newArrayListWithCapacity(vertices.size() - verticesToRemove.size());
+		for (int i = 0; i < vertices.size(); i++) {
+			if (verticesToRemove.contains(vertices.get(i))) {
+				newIndices[i] = -1;
+				indices.remove(vertices.get(i));
+			} else {
+				newIndices[i] = newVertices.size();
+				indices.put(vertices.get(i), newVertices.size());
+				newVertices.add(vertices.get(i));
+				newRows.add(rows.get(i));
+				if (incomingRows != null) {
+					newIncomingRows.add(incomingRows.get(i));
 				}
 			}
 		}
-		return true;
+		for (AdjacencyRow row : newRows) {
+			row.renumber(newIndices);
+		}
+		if (incomingRows != null) {
+			for (AdjacencyRow incomingRow : newIncomingRows) {
+				incomingRow.renumber(newIndices);
+			}
+		}
+		this.vertices = newVertices;
+		this.rows = newRows;
+		this.incomingRows = newIncomingRows;
+		verticesRemoved();
+	}
+
+	/**
+	 * Hierholzer's algorithm (see EulerianWalk), in time O(V + E), on a copy
+	 * of the multiplicities: the graph is not changed.
+	 *
+	 * @return the vertices of a closed walk from startNode using each edge
+	 * once, without startNode again at the end (just startNode, if there
+	 * are no edges)
+	 */
+	public List<Vertex> getEulerianCycle(Vertex startNode) {
+		Preconditions.checkArgument(containsVertex(startNode),
+				"Vertex not in graph.");
+		
+		return EulerianWalk.cycle(this, startNode);
+	}
+	
+	/**
+	 * @return the vertices of a walk using each edge once, from one of the
+	 * two vertices of odd degree (if undirected) or from the vertex with one
+	 * edge out more than in (if directed); a closed walk, with its first
+	 * vertex again at the end, if the graph is Eulerian
+	 */
+	public List<Vertex> getEulerianPath() {
+		return EulerianWalk.path(this);
 	}
 }
@@ -1,9 +1,11 @@
 package graphimplementations;
 
+import interfaces.EdgeConsumer;
 import interfaces.Graph;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import abstractclasses.AbstractGraph;
@@ -12,6 +14,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.HashMultiset;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multiset;
 import com.google.common.collect.Sets;
 
@@ -19,17 +22,72 @@ import com.google.common.collect.Sets;
  * 
  * A class to implement a multigraph, seen as an adjacency matrix. A list of
  * vertices keeps track of the vertices corresponding to the rows/columns of 
- * the matrix independently of their label. A boolean keeps track of whether 
+ * the matrix independently of their label, and a map from each vertex to its 
+ * row makes finding it constant time. A boolean keeps track of whether 
  * the graph is directed/undirected (needed if the matrix is symmetric).
  * 
+ * In a directed graph, the first query about the edges to a vertex builds, 
+ * for each column, the row of the non-zero entries in it; this is then kept 
+ * up to date by the methods that modify the graph, so that the edges to a 
+ * vertex are found without scanning the whole column.
+ * 
+ * The cells of the matrix are kept in a MatrixStorage: by default an int 
+ * array per row; a single array, row after row (or only the lower triangle, 
+ * for an undirected graph), of bytes, shorts or ints can be chosen instead 
+ * (see Layout and CellType), which takes less memory for large graphs; or 
+ * only the cells that are not 0, in a hash table (Layout.SPARSE), which 
+ * takes memory proportional to the number of adjacent pairs, for graphs with 
+ * too many vertices for a whole matrix, and still finds a cell in constant 
+ * time. 
+ * 
+ * The matrix is stored with spare rows and columns (slots), whose number 
+ * doubles when they run out, so adding a vertex does not copy the matrix 
+ * every time. The i-th vertex of the list is in slot slots[i]. A removed 
+ * vertex leaves a free slot (with its row and column set to 0), which is 
+ * reused by the next vertex added; when there are more free slots than 
+ * vertices, the matrix is compacted (see compact()).
  * 
  * @author mmcasetti
  * 
  */
 
 public class MatrixGraph extends AbstractGraph {
-	private int[][] adjacencyMatrix;
+
+	/**
+	 * How the cells of the matrix are stored.
+	 */
+	public enum Layout {
+		// an int array per row
+		ROWS,
+		// a single array, row after row
+		ROW_MAJOR,
+		// a single array, with only the cells (i, j) with j <= i: undirected 
+		// graphs only
+		PACKED_SYMMETRIC,
+		// a hash table with only the cells that are not 0: ints only
+		SPARSE
+	}
+
+	/**
+	 * The type of the cells of a single array: a multiplicity too large for 
+	 * it makes the array wider.
+	 */
+	public enum CellType {
+		BYTE, SHORT, INT
+	}
+
+	// cells.get(slots[i], slots[j]): number of edges from the i-th vertex to the j-th
+	private MatrixStorage cells;
+	private int[] slots;
+	// for each slot, the index of its vertex, or -1 if the slot is free
+	private int[] indexOfSlot;
+	// slots from noOfUsedSlots on have never been used
+	private int noOfUsedSlots;
+	private int[] freeSlots;
+	private int noOfFreeSlots;
 	private List<Vertex> vertices;
+	private Map<Vertex, Integer> indices;
+	private List<AdjacencyRow> incomingRows;
 	private boolean isDirected;
 
 	public MatrixGraph(List<Vertex> vertices, int[][] matrix, boolean directed) {
@@ -46,9 +104,44 @@ public class MatrixGraph extends AbstractGraph {
 			}
 		}
 
-		this.adjacencyMatrix = matrix;
-		this.vertices = vertices;
+		this.cells = MatrixStorage.wrap(matrix);
+		this.vertices = Lists.newArrayList(vertices);
 		this.isDirected = directed;
+		initSlots(matrix.length);
+		indexVertices(0);
+	}
+
+	/**
+	 * The matrix is copied into a storage with the given layout and cells.
+	 */
+	public MatrixGraph(List<Vertex> vertices, int[][] matrix, boolean directed, Layout layout, CellType cellType) {
+		this(vertices, matrix, directed);
+		Preconditions.checkArgument(!directed || layout != Layout.PACKED_SYMMETRIC,
+				"Packed symmetric layout in directed graph");
+
+		this.cells = MatrixStorage.create(layout, cellType, matrix.length);
+		for (int i = 0; i < matrix.length; i++) {
+			for (int j = 0; j < matrix.length; j++) {
+				cells.set(i, j, matrix[i][j]);
+			}
+		}
+	}
+
+	/**
+	 * A graph with the given vertices and no edges (add them with addEdges: 
+	 * with a sparse layout, the graph is built without a whole matrix).
+	 */
+	public MatrixGraph(List<Vertex> vertices, boolean directed, Layout layout, CellType cellType) {
+		Preconditions.checkArgument(!directed || layout != Layout.PACKED_SYMMETRIC,
+				"Packed symmetric layout in directed graph");
+
+		this.cells = MatrixStorage.create(layout, cellType, vertices.size());
+		this.vertices = Lists.newArrayList(vertices);
+		this.isDirected = directed;
+		initSlots(vertices.size());
+		indexVertices(0);
+		Preconditions.checkArgument(indices.size() == vertices.size(),
+				"Vertex repeated");
 	}
 
 	public MatrixGraph(int[][] matrix, boolean directed) {
@@ -63,13 +156,11 @@ public class MatrixGraph extends AbstractGraph {
 			}
 		}
 		
-		this.adjacencyMatrix = matrix;
-		this.vertices = Lists.newArrayList();
-		for (int i = 0; i < matrix.length; i++) {
-			Vertex v = new Vertex();
-			vertices.add(v);
-		}
+		this.cells = MatrixStorage.wrap(matrix);
+		this.vertices = Vertex.createVertices(matrix.length);
 		this.isDirected = directed;
+		initSlots(matrix.length);
+		indexVertices(0);
 	}
 
 	@Override
@@ -87,15 +178,237 @@ public class MatrixGraph extends AbstractGraph {
 		return vertices;
 	}
 
+	/**
+	 * Puts in the map the vertices from the given position of the list on 
+	 * (after a vertex has been removed, the following ones move back).
+	 */
+	private void indexVertices(int from) {
+		if (indices == null) {
+			indices = Maps.newHashMapWithExpectedSize(vertices.size());
+		}
+		for (int i = from; i < vertices.size(); i++) {
+			indices.put(vertices.get(i), i);
+		}
+	}
+
+	/**
+	 * The i-th vertex in slot i, for i < noOfVertices; no free slots.
+	 */
+	private void initSlots(int noOfVertices) {
+		int capacity = cells.getCapacity();
+		slots = new int[capacity];
+		indexOfSlot = new int[capacity];
+		for (int i = 0; i < capacity; i++) {
+			slots[i] = i;
+			indexOfSlot[i] = (i < noOfVertices) ? i : -1;
+		}
+		noOfUsedSlots = noOfVertices;
+		freeSlots = new int[capacity];
+		noOfFreeSlots = 0;
+	}
+
+	/**
+	 * @return a free slot (the matrix grows if there is none)
+	 */
+	private int takeSlot() {
+		if (noOfFreeSlots > 0) {
+			return freeSlots[--noOfFreeSlots];
+		}
+		if (noOfUsedSlots == cells.getCapacity()) {
+			int capacity = Math.max(4, 2 * cells.getCapacity());
+			cells = cells.copy(capacity, noOfUsedSlots);
+			slots = Arrays.copyOf(slots, capacity);
+			indexOfSlot = Arrays.copyOf(indexOfSlot, capacity);
+			Arrays.fill(indexOfSlot, noOfUsedSlots, capacity, -1);
+			freeSlots = Arrays.copyOf(freeSlots, capacity);
+		}
+		return noOfUsedSlots++;
+	}
+
+	/**
+	 * Moves the vertices to the first slots, in order, and drops the free
+	 * ones: the matrix then has exactly one row and one column per vertex.
+	 * Called by removeVertex when more than half of the slots are free.
+	 */
+	public void compact() {
+		int n = getNoOfVertices();
+		// the vertex in slot s goes to slot indexOfSlot[s]
+		cells = cells.moved(indexOfSlot, noOfUsedSlots, n);
+		initSlots(n);
+	}
+
+	/**
+	 * @return number of rows (and columns) of the stored matrix, including
+	 * the free ones
+	 */
+	@VisibleForTesting
+	int getCapacity() {
+		return cells.getCapacity();
+	}
+
+	public Layout getLayout() {
+		return cells.getLayout();
+	}
+
+	public CellType getCellType() {
+		return cells.getCellType();
+	}
+
+	/**
+	 * 
+	 * @return number of edges from the i-th vertex to the j-th (no checks)
+	 */
+	private int cell(int i, int j) {
+		return cells.get(slots[i], slots[j]);
+	}
+
+	/**
+	 * Adds times edges from the i-th vertex to the j-th (and from the j-th
+	 * to the i-th, if the graph is undirected).
+	 */
+	private void addToCell(int i, int j, int times) {
+		cells.add(slots[i], slots[j], times);
+		if (!isDirected && i != j && !cells.isSymmetric()) {
+			cells.add(slots[j], slots[i], times);
+		}
+		edgesChanged(i, j, times);
+	}
+
+	/**
+	 * Adds times edges from the i-th vertex to the j-th (between them, if 
+	 * the graph is undirected), with no checks: for readers that fill in a 
+	 * new graph before any query.
+	 */
+	void addToEntry(int i, int j, int times) {
+		addToCell(i, j, times);
+		if (isDirected && incomingRows != null) {
+			incomingRows.get(j).add(i, times);
+		}
+	}
+
+	/**
+	 * 
+	 * @param i
+	 * @param j
+	 * @return number of edges between the i-th vertex and the j-th (from 
+	 * the i-th to the j-th, if the graph is directed)
+	 */
+	public int getEntry(int i, int j) {
+		Preconditions.checkElementIndex(i, getNoOfVertices());
+		Preconditions.checkElementIndex(j, getNoOfVertices());
+		return cell(i, j);
+	}
+
+	/**
+	 * 
+	 * @param i
+	 * @return sum of the i-th row
+	 */
+	private int rowSum(int i) {
+		return cells.rowSum(slots[i], noOfUsedSlots);
+	}
+
 	/**
 	 * 
 	 * @param vertex
-	 * @return its index in the list of vertices of the graph. Private!
+	 * @return its index in the list of vertices of the graph (and row of the
+	 * matrix)
 	 */
-	private int getIndexOf(Vertex vertex) {
-		Preconditions.checkArgument(vertices.contains(vertex),
+	@Override
+	public int getIndexOf(Vertex vertex) {
+		Integer index = indices.get(vertex);
+		Preconditions.checkArgument(index != null,
 				"Vertex not in graph.");
-		return vertices.indexOf(vertex);
+		return index;
+	}
+
+	@Override
+	public Vertex getVertexAt(int index) {
+		return vertices.get(index);
+	}
+
+	@Override
+	public void forEachEdge(final EdgeConsumer consumer) {
+		// in the order of the slots (the free slots have only zeros)
+		cells.forEachNonZero(noOfUsedSlots, new EdgeConsumer() {
+			@Override
+			public void accept(int startSlot, int endSlot, int multiplicity) {
+				int start = indexOfSlot[startSlot];
+				int end = indexOfSlot[endSlot];
+				if (isDirected || start <= end) {
+					consumer.accept(start, end, multiplicity);
+				}
+			}
+		});
+	}
+
+	@Override
+	public void forEachNeighbor(final int index, final EdgeConsumer consumer) {
+		Preconditions.checkElementIndex(index, getNoOfVertices());
+		// the free slots have only zeros
+		cells.forEachInRow(slots[index], noOfUsedSlots, new EdgeConsumer() {
+			@Override
+			public void accept(int slot, int endSlot, int multiplicity) {
+				consumer.accept(index, indexOfSlot[endSlot], multiplicity);
+			}
+		});
+	}
+
+	/**
+	 * 
+	 * @return for each column, the row of the non-zero entries in it (built 
+	 * the first time it is needed, then kept up to date)
+	 */
+	private List<AdjacencyRow> getIncomingRows() {
+		if (incomingRows == null) {
+			incomingRows = Lists.newArrayListWithCapacity(getNoOfVertices());
+			for (int j = 0; j < getNoOfVertices(); j++) {
+				incomingRows.add(new AdjacencyRow());
+			}
+			// the cells that are not 0, then merged into the rows at once
+			final int[] length = new int[1];
+			forEachEdge(new EdgeConsumer() {
+				@Override
+				public void accept(int start, int end, int multiplicity) {
+					length[0]++;
+				}
+			});
+			final int[] starts = new int[length[0]];
+			final int[] ends = new int[length[0]];
+			final int[] times = new int[length[0]];
+			length[0] = 0;
+			forEachEdge(new EdgeConsumer() {
+				@Override
+				public void accept(int start, int end, int multiplicity) {
+					starts[length[0]] = start;
+					ends[length[0]] = end;
+					times[length[0]] = multiplicity;
+					length[0]++;
+				}
+			});
+			AdjacencyRow.mergeIntoRows(incomingRows, ends, starts, times, length[0], 1);
+		}
+		return incomingRows;
+	}
+
+	/**
+	 * 
+	 * @param vertex
+	 * @return if the vertex is in the graph, in constant time
+	 */
+	private boolean containsVertex(Vertex vertex) {
+		return indices.containsKey(vertex);
+	}
+
+	/**
+	 * 
+	 * @param start
+	 * @param end
+	 * @return if there is an edge between start and end (from start to end, 
+	 * if the graph is directed)
+	 */
+	private boolean containsEdge(Vertex start, Vertex end) {
+		return cell(getIndexOf(start), getIndexOf(end)) > 0;
 	}
 
 	@Override
@@ -104,15 +417,13 @@ public class MatrixGraph extends AbstractGraph {
 			return HashMultiset.<Edge>create();
 		}
 			
-		Multiset<Edge> edges = HashMultiset.create();
-		for (int i = 0; i < getMatrix().length; i++) {
-			for (int j = 0; j <= i; j++) {
-				Vertex start = getListOfVertices().get(i);
-				Vertex end = getListOfVertices().get(j);
-				Edge edge = Edge.between(start).and(end);
-				edges.add(edge, getMatrix()[i][j]);
+		final Multiset<Edge> edges = HashMultiset.create();
+		forEachEdge(new EdgeConsumer() {
+			@Override
+			public void accept(int start, int end, int multiplicity) {
+				edges.add(Edge.undirected(getVertexAt(start), getVertexAt(end)), multiplicity);
 			}
-		}
+		});
 		return edges;
 	}
 
@@ -122,17 +433,13 @@ public class MatrixGraph extends AbstractGraph {
 			return HashMultiset.<Edge>create();
 		}
 		
-		Multiset<Edge> edges = HashMultiset.create();
-		for (int i = 0; i < getMatrix().length; i++) {
-			Edge edgeLoop = Edge.from(getListOfVertices().get(i)).to(getListOfVertices().get(i));
-			edges.add(edgeLoop, getMatrix()[i][i]);
-			for (int j = 0; j < i; j++) {
-				Edge edgeIJ = Edge.from(getListOfVertices().get(i)).to(getListOfVertices().get(j));
-				edges.add(edgeIJ, getMatrix()[i][j]);
-				Edge edgeJI = Edge.from(getListOfVertices().get(j)).to(getListOfVertices().get(i));
-				edges.add(edgeJI, getMatrix()[j][i]);
+		final Multiset<Edge> edges = HashMultiset.create();
+		forEachEdge(new EdgeConsumer() {
+			@Override
+			public void accept(int start, int end, int multiplicity) {
+				edges.add(Edge.directed(getVertexAt(start), getVertexAt(end)), multiplicity);
 			}
-		}
+		});
 		return edges;
 	}
 
@@ -141,8 +448,19 @@ public class MatrixGraph extends AbstractGraph {
 		return isDirected;
 	}
 
+	/**
+	 * @return a copy of the adjacency matrix, one row and one column per 
+	 * vertex (use getEntry for a single entry)
+	 */
 	public int[][] getMatrix() {
-		return adjacencyMatrix;
+		int n = getNoOfVertices();
+		int[][] matrix = new int[n][n];
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				matrix[i][j] = cell(i, j);
+			}
+		}
+		return matrix;
 	}
 
 	/**
@@ -167,17 +485,36 @@ public class MatrixGraph extends AbstractGraph {
 //					otherGraph.getDirectedEdges().equals(this.getDirectedEdges()));
 		} else {
 			MatrixGraph otherMatrixGraph = (MatrixGraph) other;
-			return (Arrays.deepEquals(otherMatrixGraph.getMatrix(), this.getMatrix()) 
-					&& this.isDirected == otherMatrixGraph.isDirected);
+			return this.isDirected == otherMatrixGraph.isDirected 
+					&& this.getNoOfVertices() == otherMatrixGraph.getNoOfVertices()
+					&& this.containsCellsOf(otherMatrixGraph) 
+					&& otherMatrixGraph.containsCellsOf(this);
 		}
 	}
 
+	/**
+	 * @return if each cell of other that is not 0 is the same in this 
+	 * matrix (visiting only the cells that are not 0)
+	 */
+	private boolean containsCellsOf(MatrixGraph other) {
+		final boolean[] contains = { true };
+		other.forEachEdge(new EdgeConsumer() {
+			@Override
+			public void accept(int start, int end, int multiplicity) {
+				if (contains[0] && cell(start, end) != multiplicity) {
+					contains[0] = false;
+				}
+			}
+		});
+		return contains[0];
+	}
+
 	@Override
 	public Graph makeUndirected() {
 		if (!isDirected()) {
 			return this;
 		}
-		return new MatrixGraph(getListOfVertices(), getMatrix(), false);
+		return withMatrix(getMatrix(), false);
 	}
 
 	@Override
@@ -185,146 +522,158 @@ public class MatrixGraph extends AbstractGraph {
 		if (isDirected()) {
 			return this;
 		}
-		int[][] newMatrix = new int[getMatrix().length][getMatrix().length];
+		int[][] newMatrix = new int[getNoOfVertices()][getNoOfVertices()];
 		for (int i = 0; i < newMatrix.length; i++) {
-			newMatrix[i][i] = getMatrix()[i][i] * 2;
+			newMatrix[i][i] = cell(i, i) * 2;
 			for (int j = 0; j < i; j++) {
-				newMatrix[i][j] = getMatrix()[i][j] + getMatrix()[j][i];
+				newMatrix[i][j] = cell(i, j) + cell(j, i);
 				newMatrix[j][i] = newMatrix[i][j];
 			}
 		}
-		return new MatrixGraph(getListOfVertices(), newMatrix, true);
+		return withMatrix(newMatrix, true);
+	}
+
+	/**
+	 * @return a graph with the same vertices and the given matrix, stored 
+	 * like this one (row after row instead of packed, if directed)
+	 */
+	private MatrixGraph withMatrix(int[][] matrix, boolean directed) {
+		if (getLayout() == Layout.ROWS) {
+			return new MatrixGraph(getListOfVertices(), matrix, directed);
+		}
+		Layout layout = (directed && getLayout() == Layout.PACKED_SYMMETRIC) ? Layout.ROW_MAJOR : getLayout();
+		return new MatrixGraph(getListOfVertices(), matrix, directed, layout, getCellType());
 	}
 
 	@Override
 	public Multiset<Edge> getEdgesAt(Vertex vertex) {
-		Preconditions.checkArgument(getVertices().contains(vertex),
+		Preconditions.checkArgument(containsVertex(vertex),
 				"Vertex not in graph.");
 		Preconditions.checkArgument(!isDirected(), "Use getEdgesFrom and getEdgesTo.");
 		
-		int indexOfVertex = getIndexOf(vertex);
-		Multiset<Edge> edgesAt = HashMultiset.create();
-		for (int i = 0; i < getMatrix().length; i++) {
-			Edge edge = Edge.between(vertex).and(getListOfVertices().get(i));
-			edgesAt.add(edge, getMatrix()[indexOfVertex][i]);
-		}
-		return edgesAt;
+		return getEdgesInRow(vertex);
 	}
 
 	public Multiset<Edge> getEdgesFrom(Vertex vertex) {
-		Preconditions.checkArgument(getVertices().contains(vertex),
+		Preconditions.checkArgument(containsVertex(vertex),
 				"Vertex not in graph.");
 		Preconditions.checkArgument(isDirected(), "Use getEdgesAt.");
 		
-		int indexOfVertex = getIndexOf(vertex);
-		Multiset<Edge> edgesFrom = HashMultiset.create();
-		for (int i = 0; i < getMatrix().length; i++) {
-			Edge edge = Edge.from(vertex).to(getListOfVertices().get(i));
-			edgesFrom.add(edge, getMatrix()[indexOfVertex][i]);
-		}
-		return edgesFrom;
+		return getEdgesInRow(vertex);
+	}
+
+	/**
+	 * @return the edges of the non-zero cells of the row of vertex
+	 */
+	private Multiset<Edge> getEdgesInRow(final Vertex vertex) {
+		final Multiset<Edge> edges = HashMultiset.create();
+		forEachNeighbor(getIndexOf(vertex), new EdgeConsumer() {
+			@Override
+			public void accept(int start, int end, int multiplicity) {
+				Vertex neighbor = getListOfVertices().get(end);
+				Edge edge = isDirected ? Edge.directed(vertex, neighbor) : Edge.undirected(vertex, neighbor);
+				edges.add(edge, multiplicity);
+			}
+		});
+		return edges;
 	}
 
 	public Multiset<Edge> getEdgesTo(Vertex vertex) {
-		Preconditions.checkArgument(getVertices().contains(vertex),
+		Preconditions.checkArgument(containsVertex(vertex),
 				"Vertex not in graph.");
 		Preconditions.checkArgument(isDirected(), "Use getEdgesAt.");
 
-		int indexOfVertex = getIndexOf(vertex);
+		AdjacencyRow incomingRow = getIncomingRows().get(getIndexOf(vertex));
 		Multiset<Edge> edgesTo = HashMultiset.create();
-		for (int i = 0; i < getMatrix().length; i++) {
-			Edge edge = Edge.from(getListOfVertices().get(i)).to(vertex);
-			edgesTo.add(edge, getMatrix()[i][indexOfVertex]);
+		for (int k = 0; k < incomingRow.size(); k++) {
+			Edge edge = Edge.directed(getListOfVertices().get(incomingRow.getNeighbor(k)), vertex);
+			edgesTo.add(edge, incomingRow.getMultiplicity(k));
 		}
 		return edgesTo;
 	}
 
 	@Override
 	public int getDegreeAt(Vertex vertex) {
-		Preconditions.checkArgument(getVertices().contains(vertex),
+		Preconditions.checkArgument(containsVertex(vertex),
 				"Vertex not in graph.");
 		Preconditions.checkArgument(!isDirected(), "Use getOutdegreeAt and getIndegreeAt.");
 		
-		int degree = 0;
-		for (int i = 0; i < getMatrix().length; i++) {
-			degree += getMatrix()[getIndexOf(vertex)][i];						
-		}
-		
-		return degree;
+		return rowSum(getIndexOf(vertex));
 	}
 
 	@Override
 	public int getOutdegreeAt(Vertex vertex) {
-		Preconditions.checkArgument(getVertices().contains(vertex),
+		Preconditions.checkArgument(containsVertex(vertex),
 				"Vertex not in graph.");
 		Preconditions.checkArgument(isDirected(), "Use getDegreeAt.");
 
-		int outdegree = 0;
-		for (int i = 0; i < getMatrix().length; i++) {
-			outdegree += getMatrix()[getIndexOf(vertex)][i];
-		}
-		return outdegree;
+		return rowSum(getIndexOf(vertex));
 	}
 
 	@Override
 	public int getIndegreeAt(Vertex vertex) {
-		Preconditions.checkArgument(getVertices().contains(vertex),
+		Preconditions.checkArgument(containsVertex(vertex),
 				"Vertex not in graph.");
 		Preconditions.checkArgument(isDirected(), "Use getDegreeAt.");
 		
-		int indegree = 0;
-		for (int i = 0; i < getMatrix().length; i++) {
-			indegree += getMatrix()[i][getIndexOf(vertex)];
-		}
-		return indegree;
+		return getIncomingRows().get(getIndexOf(vertex)).getDegree();
 	}
 
 	@Override
 	public void addVertices(Set<Vertex> newVertices) {
 		for (Vertex v : newVertices) {
-			Preconditions.checkArgument(!getVertices().contains(v),
+			Preconditions.checkArgument(!containsVertex(v),
 					"New vertex already in graph.");
 		}
 
-		int newNoOfVertices = getNoOfVertices() + newVertices.size();
-
-		int[][] newMatrix = new int[newNoOfVertices][newNoOfVertices];
-		for (int i = 0; i < getNoOfVertices(); i++) {
-			for (int j = 0; j < getNoOfVertices(); j++) {
-				newMatrix[i][j] = getMatrix()[i][j];
+		for (Vertex v : newVertices) {
+			int slot = takeSlot();
+			int index = getNoOfVertices();
+			slots[index] = slot;
+			indexOfSlot[slot] = index;
+			indices.put(v, index);
+			vertices.add(v);
+			if (incomingRows != null) {
+				incomingRows.add(new AdjacencyRow());
 			}
 		}
-		adjacencyMatrix = newMatrix;
-		getVertices().addAll(newVertices);
 	}
 
 	@Override
 	public void removeVertex(Vertex vertex) {
-		Preconditions.checkArgument(getVertices().contains(vertex),
+		Preconditions.checkArgument(containsVertex(vertex),
 				"Vertex not in graph.");
 
 		int index = getIndexOf(vertex);
-		int newNoOfVertices = getNoOfVertices() - 1;
-		int[][] newMatrix = new int[newNoOfVertices][newNoOfVertices];
-
-		for (int i = 0; i < index; i++) {
-			for (int j = 0; j < index; j++) {
-				newMatrix[i][j] = adjacencyMatrix[i][j];
-			}
+		int slot = slots[index];
+		// the slot is freed, with its row and column set to 0
+		cells.clear(slot, noOfUsedSlots);
+		indexOfSlot[slot] = -1;
+		freeSlots[noOfFreeSlots++] = slot;
+		// the vertices after the removed one move back by one
+		System.arraycopy(slots, index + 1, slots, index, getNoOfVertices() - index - 1);
+		for (int i = index; i < getNoOfVertices() - 1; i++) {
+			indexOfSlot[slots[i]] = i;
 		}
-		for (int i = index; i < newNoOfVertices; i++) {
-			for (int j = index; j < newNoOfVertices; j++) {
-				newMatrix[i][j] = adjacencyMatrix[i + 1][j + 1];
+		getListOfVertices().remove(index);
+		indices.remove(vertex);
+		indexVertices(index);
+		if (incomingRows != null) {
+			incomingRows.remove(index);
+			for (AdjacencyRow incomingRow : incomingRows) {
+				incomingRow.removeIndex(index);
 			}
 		}
-		adjacencyMatrix = newMatrix;
-		getListOfVertices().remove(vertex);
+		if (noOfFreeSlots > getNoOfVertices()) {
+			compact();
+		}
+		verticesRemoved();
 	}
 
 	@Override
 	public void addUndirectedEdge(Edge edge) {
-		Preconditions.checkArgument(getVertices().contains(edge.getStart())
-				&& getVertices().contains(edge.getEnd()),
+		Preconditions.checkArgument(containsVertex(edge.getStart())
+				&& containsVertex(edge.getEnd()),
 				"Edge's endpoints not in graph.");
 		Preconditions.checkArgument(!edge.isDirected() && !isDirected(), 
 				"Use addDirectedEdge.");
@@ -332,16 +681,13 @@ public class MatrixGraph extends AbstractGraph {
 		int startLabel = getIndexOf(edge.getStart());
 		int endLabel = getIndexOf(edge.getEnd());
 
-		adjacencyMatrix[startLabel][endLabel]++;
-		if (!edge.getStart().equals(edge.getEnd())) {
-			adjacencyMatrix[endLabel][startLabel]++;
-		}
+		addToCell(startLabel, endLabel, 1);
 	}
 
 	@Override
 	public void addDirectedEdge(Edge edge) {
-		Preconditions.checkArgument(getVertices().contains(edge.getStart())
-				&& getVertices().contains(edge.getEnd()),
+		Preconditions.checkArgument(containsVertex(edge.getStart())
+				&& containsVertex(edge.getEnd()),
 				"Edge's endpoints not in graph.");
 		Preconditions.checkArgument(edge.isDirected() && isDirected(), 
 				"Use addUndirectedEdge.");
@@ -349,149 +695,248 @@ public class MatrixGraph extends AbstractGraph {
 		int startLabel = getIndexOf(edge.getStart());
 		int endLabel = getIndexOf(edge.getEnd());
 
-		adjacencyMatrix[startLabel][endLabel]++;
+		addToCell(startLabel, endLabel, 1);
+		if (incomingRows != null) {
+			incomingRows.get(endLabel).add(startLabel, 1);
+		}
 	}
 
 	@Override
 	public void addUndirectedEdge(Vertex start, Vertex end) {
 		Preconditions.checkArgument(
-				vertices.contains(start) && vertices.contains(end),
+				containsVertex(start) && containsVertex(end),
 				"Edge's endpoints not in graph.");
 		Preconditions.checkArgument(!isDirected(), "Use addDirectedEdge.");
 		
 		int startLabel = getIndexOf(start);
 		int endLabel = getIndexOf(end);
 
-		adjacencyMatrix[startLabel][endLabel]++;
-		if (!start.equals(end)) {
-			adjacencyMatrix[endLabel][startLabel]++;
-		}
+		addToCell(startLabel, endLabel, 1);
 	}
 
 	@Override
 	public void addDirectedEdge(Vertex start, Vertex end) {
 		Preconditions.checkArgument(
-				vertices.contains(start) && vertices.contains(end),
+				containsVertex(start) && containsVertex(end),
 				"Edge's endpoints not in graph.");
 		Preconditions.checkArgument(isDirected(), "Use addUndirectedEdge.");
 
 		int startLabel = getIndexOf(start);
 		int endLabel = getIndexOf(end);
 
-		adjacencyMatrix[startLabel][endLabel]++;
+		addToCell(startLabel, endLabel, 1);
+		if (incomingRows != null) {
+			incomingRows.get(endLabel).add(startLabel, 1);
+		}
 	}
 
 	@Override
 	public void removeUndirectedEdge(Edge edge) {
-		Preconditions.checkArgument(vertices.contains(edge.getStart())
-				&& vertices.contains(edge.getEnd()),
+		Preconditions.checkArgument(containsVertex(edge.getStart())
+				&& containsVertex(edge.getEnd()),
 				"Edge's endpoints not in graph.");
-		Preconditions.checkArgument(getUndirectedEdges().contains(edge),
-				"Edge not in graph.");
 		Preconditions.checkArgument(!edge.isDirected() && !isDirected(), 
 				"Use addDirectedEdge.");
+		Preconditions.checkArgument(containsEdge(edge.getStart(), edge.getEnd()),
+				"Edge not in graph.");
 
 		int startLabel = getIndexOf(edge.getStart());
 		int endLabel = getIndexOf(edge.getEnd());
 
-		adjacencyMatrix[startLabel][endLabel]--;
-		if (!edge.getStart().equals(edge.getEnd())) {
-			adjacencyMatrix[endLabel][startLabel]--;
-		}
+		addToCell(startLabel, endLabel, -1);
 	}
 
 	@Override
 	public void removeDirectedEdge(Edge edge) {
-		Preconditions.checkArgument(vertices.contains(edge.getStart())
-				&& vertices.contains(edge.getEnd()),
+		Preconditions.checkArgument(containsVertex(edge.getStart())
+				&& containsVertex(edge.getEnd()),
 				"Edge's endpoints not in graph.");
-		Preconditions.checkArgument(getUndirectedEdges().contains(edge),
-				"Edge not in graph.");
 		Preconditions.checkArgument(edge.isDirected() && isDirected(), 
 				"Use removeUndirectedEdge.");
+		Preconditions.checkArgument(containsEdge(edge.getStart(), edge.getEnd()),
+				"Edge not in graph.");
 
 		int startLabel = getIndexOf(edge.getStart());
 		int endLabel = getIndexOf(edge.getEnd());
 
-		adjacencyMatrix[startLabel][endLabel]--;
+		addToCell(startLabel, endLabel, -1);
+		if (incomingRows != null) {
+			incomingRows.get(endLabel).remove(startLabel, 1);
+		}
 	}
 
 	@Override
 	public void removeUndirectedEdge(Vertex start, Vertex end) {
 		Preconditions.checkArgument(
-				vertices.contains(start) && vertices.contains(end),
+				containsVertex(start) && containsVertex(end),
 				"Edge's endpoints not in graph.");
 		Preconditions.checkArgument(!isDirected(), "Use addDirectedEdge.");
-
-		Edge edge = Edge.between(start).and(end);
-		Preconditions.checkArgument(getUndirectedEdges().contains(edge),
+		Preconditions.checkArgument(containsEdge(start, end),
 				"Edge not in graph.");
-
 		
 		int startLabel = getIndexOf(start);
 		int endLabel = getIndexOf(end);
 
-		adjacencyMatrix[startLabel][endLabel]--;
-		if (!start.equals(end)) {
-			adjacencyMatrix[endLabel][startLabel]--;
-		}
+		addToCell(startLabel, endLabel, -1);
 	}
 
 	@Override
 	public void removeDirectedEdge(Vertex start, Vertex end) {
 		Preconditions.checkArgument(
-				vertices.contains(start) && vertices.contains(end),
+				containsVertex(start) && containsVertex(end),
 				"Edge's endpoints not in graph.");
 		Preconditions.checkArgument(isDirected(), "Use addUndirectedEdge.");
-		
-		Edge edge = Edge.between(start).and(end);
-		Preconditions.checkArgument(getUndirectedEdges().contains(edge),
+		Preconditions.checkArgument(containsEdge(start, end),
 				"Edge not in graph.");
 
 		int startLabel = getIndexOf(start);
 		int endLabel = getIndexOf(end);
 
-		adjacencyMatrix[startLabel][endLabel]--;
+		addToCell(startLabel, endLabel, -1);
+		if (incomingRows != null) {
+			incomingRows.get(endLabel).remove(startLabel, 1);
+		}
 	}
 
-	public boolean isEulerian() {
-		if (!isDirected()) {
-			for (int v = 0; v < getMatrix().length; v++) {
-				int degreeMinusLoops = 0;
-				for (int i = 0; i < getMatrix().length; i++) {
-					if (i != v) {
-						degreeMinusLoops += getMatrix()[v][i];						
-					}
-				}
-				if (degreeMinusLoops % 2 != 0) {
-					return false;
-				}
-			}			
-		} else {
-			for (int v = 0; v < getMatrix().length; v++) {
-				int indegree = 0;
-				int outdegree = 0;
-				for (int i = 0; i < getMatrix().length; i++) {
-					indegree += getMatrix()[i][v];
-					outdegree += getMatrix()[v][i];
-				}
-				if (indegree != outdegree) {
-					return false;
-				}
+	/**
+	 * Checks that the edges are all directed (if the graph is directed) or
+	 * all undirected, with endpoints in the graph.
+	 */
+	private void checkEdges(Multiset<Edge> edges) {
+		for (Edge edge : edges.elementSet()) {
+			Preconditions.checkArgument(containsVertex(edge.getStart())
+					&& containsVertex(edge.getEnd()),
+					"Edge's endpoints not in graph.");
+			Preconditions.checkArgument(edge.isDirected() == isDirected(),
+					isDirected() ? "Undirected edge in directed graph." : "Directed edge in undirected graph.");
+		}
+	}
+
+	/**
+	 * Adds (sign 1) or removes (sign -1) the edges: each entry of the 
+	 * multiset changes one or two cells, and the incoming rows are merged 
+	 * once each.
+	 */
+	private void mergeEdges(Multiset<Edge> edges, int sign) {
+		Set<Multiset.Entry<Edge>> entries = edges.entrySet();
+		int[] starts = new int[entries.size()];
+		int[] ends = new int[entries.size()];
+		int[] times = new int[entries.size()];
+		int length = 0;
+		for (Multiset.Entry<Edge> entry : entries) {
+			int start = getIndexOf(entry.getElement().getStart());
+			int end = getIndexOf(entry.getElement().getEnd());
+			addToCell(start, end, sign * entry.getCount());
+			starts[length] = start;
+			ends[length] = end;
+			times[length] = entry.getCount();
+			length++;
+		}
+		if (isDirected() && incomingRows != null) {
+			AdjacencyRow.mergeIntoRows(incomingRows, ends, starts, times, length, sign);
+		}
+	}
+
+	@Override
+	public void addEdges(Multiset<Edge> edges) {
+		checkEdges(edges);
+
+		mergeEdges(edges, 1);
+	}
+
+	@Override
+	public void removeEdges(Multiset<Edge> edges) {
+		checkEdges(edges);
+		for (Multiset.Entry<Edge> entry : edges.entrySet()) {
+			int start = getIndexOf(entry.getElement().getStart());
+			int end = getIndexOf(entry.getElement().getEnd());
+			Preconditions.checkArgument(cell(start, end) >= entry.getCount(),
+					"Edge not in graph.");
+		}
+
+		mergeEdges(edges, -1);
+	}
+
+	@Override
+	public void removeVertices(Set<Vertex> verticesToRemove) {
+		for (Vertex v : verticesToRemove) {
+			Preconditions.checkArgument(containsVertex(v),
+					"Vertex not in graph.");
+		}
+
+		// the rows (and columns) that are kept, in order
+		int[] kept = new int[getNoOfVertices() - verticesToRemove.size()];
+		int[] newIndices = new int[getNoOfVertices()];
+		// for each slot, the new slot of its vertex (-1 if free or removed)
+		int[] newSlots = new int[noOfUsedSlots];
+		Arrays.fill(newSlots, -1);
+		int newNoOfVertices = 0;
+		for (int i = 0; i < getNoOfVertices(); i++) {
+			if (verticesToRemove.contains(vertices.get(i))) {
+				newIndices[i] = -1;
+			} else {
+				newIndices[i] = newNoOfVertices;
+				newSlots[slots[i]] = newNoOfVertices;
+				kept[newNoOfVertices++] = i;
 			}
 		}
-		return true;
+		MatrixStorage newMatrix = cells.moved(newSlots, noOfUsedSlots, newNoOfVertices);
+		List<Vertex> newVertices = Lists.newArrayListWithCapacity(newNoOfVertices);
+		List<AdjacencyRow> newIncomingRows = (incomingRows == null) ? null
+				: Lists.<AdjacencyRow>newArrayListWithCapacity(newNoOfVertices);
+		for (int i = 0; i < newNoOfVertices; i++) {
+			newVertices.add(vertices.get(kept[i]));
+			if (incomingRows != null) {
+				AdjacencyRow incomingRow = incomingRows.get(kept[i]);
+				incomingRow.renumber(newIndices);
+				newIncomingRows.add(incomingRow);
+			}
+		}
+		cells = newMatrix;
+		initSlots(newNoOfVertices);
+		vertices = newVertices;
+		incomingRows = newIncomingRows;
+		for (Vertex v : verticesToRemove) {
+			indices.remove(v);
+		}
+		indexVertices(0);
+		verticesRemoved();
+	}
+
+	/**
+	 * Hierholzer's algorithm (see EulerianWalk), in time O(V + E), on a copy 
+	 * of the multiplicities: the graph is not changed.
+	 * 
+	 * @return the vertices of a closed walk from startNode using each edge 
+	 * once, without startNode again at the end (just startNode, if there 
+	 * are no edges)
+	 */
+	public List<Vertex> getEulerianCycle(Vertex startNode) {
+		Preconditions.checkArgument(containsVertex(startNode),
+				"Vertex not in graph.");
+		
+		return EulerianWalk.cycle(this, startNode);
+	}
+	
+	/**
+	 * @return the vertices of a walk using each edge once, from one of the 
+	 * two vertices of odd degree (if undirected) or from the vertex with one 
+	 * edge out more than in (if directed); a closed walk, with its first 
+	 * vertex again at the end, if the graph is Eulerian
+	 */
+	public List<Vertex> getEulerianPath() {
+		return EulerianWalk.path(this);
 	}
 
 	public boolean isPerfectMatching(int[][] subset) {
-		Preconditions.checkArgument(subset.length == getVertices().size(),
+		Preconditions.checkArgument(subset.length == getNoOfVertices(),
 				"Not enough or too many vertices in subset");
 		
 		// precondition: subset is subset of edges
 		for (int i = 0; i < subset.length; i++) {
 			for (int j = 0; j < subset.length; j++) {
 				Preconditions.checkArgument(
-						subset[i][j] <= getMatrix()[i][j],
+						subset[i][j] <= cell(i, j),
 						"Not a subset of edges");
 			}
 		}
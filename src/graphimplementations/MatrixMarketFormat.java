@@ -0,0 +1,194 @@
+package graphimplementations;
+
+import interfaces.EdgeConsumer;
+import interfaces.Graph;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ *
+ * Reads and writes adjacency matrices in the Matrix Market coordinate
+ * format: a header "%%MatrixMarket matrix coordinate integer general" (or
+ * "symmetric", for an undirected graph), comment lines starting with '%',
+ * a line "rows columns entries", then one line "i j value" per entry that
+ * is not 0, with indices from 1. A symmetric file has only the entries
+ * with i >= j; the value of (i, i) is the number of loops at i. The field
+ * "pattern" (entries without values, each one edge) is also read.
+ *
+ * The reader adds each entry to the graph as it is read, with no
+ * intermediate matrix; the writer writes each edge as it is visited. The
+ * graph read is a MatrixGraph stored in rows of ints, or in Layout.SPARSE
+ * when the matrix would have more than the given number of cells.
+ *
+ * @author mmcasetti
+ *
+ */
+public final class MatrixMarketFormat {
+	static final String BANNER = "%%MatrixMarket";
+	// 2^24 cells, 64 MB of ints
+	public static final long DEFAULT_DENSE_LIMIT = 1L << 24;
+
+	private MatrixMarketFormat() {
+	}
+
+	/**
+	 * Writes the graph (of any kind) as a matrix, symmetric if the graph is
+	 * undirected. The writer is flushed, not closed.
+	 */
+	public static void write(Graph graph, Writer out) throws IOException {
+		final boolean isDirected = graph.isDirected();
+		final long[] noOfEntries = new long[1];
+		graph.forEachEdge(new EdgeConsumer() {
+			@Override
+			public void accept(int start, int end, int multiplicity) {
+				noOfEntries[0]++;
+			}
+		});
+
+		final BufferedWriter writer = new BufferedWriter(out);
+		writer.write(BANNER + " matrix coordinate integer " + (isDirected ? "general" : "symmetric"));
+		writer.newLine();
+		writer.write(graph.getNoOfVertices() + " " + graph.getNoOfVertices() + " " + noOfEntries[0]);
+		writer.newLine();
+		final IOException[] exception = new IOException[1];
+		graph.forEachEdge(new EdgeConsumer() {
+			@Override
+			public void accept(int start, int end, int multiplicity) {
+				if (exception[0] != null) {
+					return;
+				}
+				try {
+					// an undirected edge comes with start <= end: the row is
+					// the larger index, in the lower triangle
+					int row = isDirected ? start : end;
+					int column = isDirected ? end : start;
+					writer.write((row + 1) + " " + (column + 1) + " " + multiplicity);
+					writer.newLine();
+				} catch (IOException e) {
+					exception[0] = e;
+				}
+			}
+		});
+		if (exception[0] != null) {
+			throw exception[0];
+		}
+		writer.flush();
+	}
+
+	/**
+	 * @return the matrix read, as a MatrixGraph (sparse if it has more than
+	 * DEFAULT_DENSE_LIMIT cells)
+	 */
+	public static MatrixGraph read(Reader in) throws IOException {
+		return read(in, DEFAULT_DENSE_LIMIT);
+	}
+
+	/**
+	 * @param denseLimit: the largest number of cells of a matrix stored in
+	 * rows of ints; larger ones are stored in Layout.SPARSE
+	 * @throws IOException if the input is not a square integer (or pattern)
+	 * coordinate matrix, general or symmetric, with non-negative values
+	 */
+	public static MatrixGraph read(Reader in, long denseLimit) throws IOException {
+		BufferedReader reader = new BufferedReader(in);
+		String line = reader.readLine();
+		if (line == null) {
+			throw new IOException("Empty Matrix Market input.");
+		}
+		String[] header = line.trim().toLowerCase(Locale.ROOT).split("\\s+");
+		if (header.length != 5 || !header[0].equals(BANNER.toLowerCase(Locale.ROOT))
+				|| !header[1].equals("matrix") || !header[2].equals("coordinate")) {
+			throw new IOException("Not a Matrix Market coordinate matrix: " + line);
+		}
+		boolean isPattern = header[3].equals("pattern");
+		if (!isPattern && !header[3].equals("integer")) {
+			throw new IOException("Field not integer or pattern: " + header[3]);
+		}
+		boolean isDirected = header[4].equals("general");
+		if (!isDirected && !header[4].equals("symmetric")) {
+			throw new IOException("Symmetry not general or symmetric: " + header[4]);
+		}
+
+		line = nextLine(reader);
+		if (line == null) {
+			throw new IOException("No size line.");
+		}
+		long[] size = parseLine(line, 3, 3);
+		if (size[0] != size[1] || size[0] > Integer.MAX_VALUE - 8) {
+			throw new IOException("Matrix not square, or too large: " + line);
+		}
+		int n = (int) size[0];
+		MatrixGraph.Layout layout = ((long) n * n > denseLimit) ? MatrixGraph.Layout.SPARSE : MatrixGraph.Layout.ROWS;
+		MatrixGraph graph = new MatrixGraph(Vertex.createVertices(n), isDirected, layout, MatrixGraph.CellType.INT);
+
+		long noOfEntries = 0;
+		while ((line = nextLine(reader)) != null) {
+			long[] entry = parseLine(line, isPattern ? 2 : 3, 3);
+			if (entry[0] < 1 || entry[0] > n || entry[1] < 1 || entry[1] > n) {
+				throw new IOException("Entry out of the matrix: " + line);
+			}
+			long value = isPattern ? 1 : entry[2];
+			if (value > Integer.MAX_VALUE) {
+				throw new IOException("Entry too large: " + line);
+			}
+			graph.addToEntry((int) entry[0] - 1, (int) entry[1] - 1, (int) value);
+			noOfEntries++;
+		}
+		if (noOfEntries != size[2]) {
+			throw new IOException(size[2] + " entries declared, " + noOfEntries + " read.");
+		}
+		return graph;
+	}
+
+	/**
+	 * @return the next line that is not a comment or blank, or null
+	 */
+	private static String nextLine(BufferedReader reader) throws IOException {
+		String line;
+		while ((line = reader.readLine()) != null) {
+			String trimmed = line.trim();
+			if (!trimmed.isEmpty() && trimmed.charAt(0) != '%') {
+				return trimmed;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the non-negative integers of the line, from min to max of them
+	 * (the missing ones are 0)
+	 */
+	private static long[] parseLine(String line, int min, int max) throws IOException {
+		long[] values = new long[max];
+		int count = 0;
+		int position = 0;
+		while (position < line.length()) {
+			char c = line.charAt(position);
+			if (c == ' ' || c == '\t') {
+				position++;
+				continue;
+			}
+			if (c < '0' || c > '9' || count == max) {
+				throw new IOException("Malformed Matrix Market line: " + line);
+			}
+			long value = 0;
+			while (position < line.length() && (c = line.charAt(position)) >= '0' && c <= '9') {
+				if (value > (Long.MAX_VALUE - 9) / 10) {
+					throw new IOException("Number too large: " + line);
+				}
+				value = 10 * value + (c - '0');
+				position++;
+			}
+			values[count++] = value;
+		}
+		if (count < min) {
+			throw new IOException("Malformed Matrix Market line: " + line);
+		}
+		return values;
+	}
+}
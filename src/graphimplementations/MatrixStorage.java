@@ -0,0 +1,612 @@
+package graphimplementations;
+
+import graphimplementations.MatrixGraph.CellType;
+import graphimplementations.MatrixGraph.Layout;
+import interfaces.EdgeConsumer;
+
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+
+/**
+ *
+ * The cells of the adjacency matrix of a MatrixGraph, capacity x capacity,
+ * stored in one of the layouts of MatrixGraph.Layout:
+ * ROWS is an int array per row; ROW_MAJOR is a single array, row after row;
+ * PACKED_SYMMETRIC is a single array with only the lower triangle (row i
+ * has the cells 0 ... i), for undirected graphs, so that cell (i, j) and
+ * cell (j, i) are the same; SPARSE keeps only the cells that are not 0, in
+ * a hash table from (row, column) to the cell, with the sum and the
+ * columns of the non-zero cells of each row, and the rows of those of
+ * each column.
+ *
+ * The single arrays are of bytes, shorts or ints: a cell that does not fit
+ * any more makes the whole array wider.
+ *
+ * @author mmcasetti
+ *
+ */
+abstract class MatrixStorage {
+
+	static MatrixStorage create(Layout layout, CellType cellType, int capacity) {
+		switch (layout) {
+		case ROWS:
+			Preconditions.checkArgument(cellType == CellType.INT,
+					"Rows of ints only.");
+			return new Rows(new int[capacity][capacity]);
+		case ROW_MAJOR:
+			return new RowMajor(cellType, capacity);
+		case PACKED_SYMMETRIC:
+			return new PackedSymmetric(cellType, capacity);
+		case SPARSE:
+			Preconditions.checkArgument(cellType == CellType.INT,
+					"Sparse cells of ints only.");
+			return new Sparse(capacity);
+		default:
+			throw new AssertionError(layout);
+		}
+	}
+
+	/**
+	 * @return the matrix itself as ROWS storage (not a copy)
+	 */
+	static MatrixStorage wrap(int[][] matrix) {
+		return new Rows(matrix);
+	}
+
+	abstract Layout getLayout();
+	abstract CellType getCellType();
+	abstract int getCapacity();
+	abstract int get(int row, int column);
+	abstract void set(int row, int column, int value);
+
+	/**
+	 * @return if cell (i, j) and cell (j, i) are the same cell
+	 */
+	boolean isSymmetric() {
+		return false;
+	}
+
+	void add(int row, int column, int times) {
+		set(row, column, get(row, column) + times);
+	}
+
+	/**
+	 * @return sum of the first noOfSlots cells of the row
+	 */
+	int rowSum(int row, int noOfSlots) {
+		int sum = 0;
+		for (int s = 0; s < noOfSlots; s++) {
+			sum += get(row, s);
+		}
+		return sum;
+	}
+
+	/**
+	 * Sets to 0 the first noOfSlots cells of the row and of the column slot.
+	 */
+	void clear(int slot, int noOfSlots) {
+		for (int s = 0; s < noOfSlots; s++) {
+			set(slot, s, 0);
+			set(s, slot, 0);
+		}
+	}
+
+	/**
+	 *
+	 * @return an empty storage with the same layout and cells
+	 */
+	MatrixStorage emptyCopy(int capacity) {
+		return create(getLayout(), getCellType(), capacity);
+	}
+
+	/**
+	 *
+	 * @return a storage with the same layout and cells, and the given
+	 * capacity, with the same first noOfSlots rows and columns
+	 */
+	MatrixStorage copy(int capacity, int noOfSlots) {
+		MatrixStorage copy = emptyCopy(capacity);
+		for (int i = 0; i < noOfSlots; i++) {
+			for (int j = 0; j < noOfSlots; j++) {
+				copy.set(i, j, get(i, j));
+			}
+		}
+		return copy;
+	}
+
+	/**
+	 *
+	 * @param newSlots: for each of the first noOfSlots slots, its new slot,
+	 * or -1 if it is dropped
+	 * @return a storage with the same layout and cells, and the given 
+	 * capacity, with the cells moved to the new slots
+	 */
+	MatrixStorage moved(int[] newSlots, int noOfSlots, int newCapacity) {
+		MatrixStorage moved = emptyCopy(newCapacity);
+		for (int s = 0; s < noOfSlots; s++) {
+			if (newSlots[s] < 0) {
+				continue;
+			}
+			for (int t = 0; t < noOfSlots; t++) {
+				if (newSlots[t] >= 0) {
+					int value = get(s, t);
+					if (value != 0) {
+						moved.set(newSlots[s], newSlots[t], value);
+					}
+				}
+			}
+		}
+		return moved;
+	}
+
+	/**
+	 * Calls consumer.accept(row, column, cell) for each cell that is not 0
+	 * among the first noOfSlots rows and columns (both (i, j) and (j, i) for
+	 * a symmetric storage).
+	 */
+	void forEachNonZero(int noOfSlots, EdgeConsumer consumer) {
+		for (int s = 0; s < noOfSlots; s++) {
+			for (int t = 0; t < noOfSlots; t++) {
+				int value = get(s, t);
+				if (value != 0) {
+					consumer.accept(s, t, value);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Calls consumer.accept(row, column, cell) for each cell of the row that
+	 * is not 0 among the first noOfSlots columns.
+	 */
+	void forEachInRow(int row, int noOfSlots, EdgeConsumer consumer) {
+		for (int s = 0; s < noOfSlots; s++) {
+			int value = get(row, s);
+			if (value != 0) {
+				consumer.accept(row, s, value);
+			}
+		}
+	}
+
+	private static final class Rows extends MatrixStorage {
+		private final int[][] cells;
+
+		Rows(int[][] cells) {
+			this.cells = cells;
+		}
+
+		@Override
+		Layout getLayout() {
+			return Layout.ROWS;
+		}
+
+		@Override
+		CellType getCellType() {
+			return CellType.INT;
+		}
+
+		@Override
+		int getCapacity() {
+			return cells.length;
+		}
+
+		@Override
+		int get(int row, int column) {
+			return cells[row][column];
+		}
+
+		@Override
+		void set(int row, int column, int value) {
+			cells[row][column] = value;
+		}
+
+		@Override
+		void add(int row, int column, int times) {
+			cells[row][column] += times;
+		}
+
+		@Override
+		int rowSum(int row, int noOfSlots) {
+			int[] cellsOfRow = cells[row];
+			int sum = 0;
+			for (int s = 0; s < noOfSlots; s++) {
+				sum += cellsOfRow[s];
+			}
+			return sum;
+		}
+
+		@Override
+		MatrixStorage copy(int capacity, int noOfSlots) {
+			int[][] newCells = new int[capacity][capacity];
+			for (int s = 0; s < noOfSlots; s++) {
+				System.arraycopy(cells[s], 0, newCells[s], 0, noOfSlots);
+			}
+			return new Rows(newCells);
+		}
+	}
+
+	/**
+	 * Cells in a single array of bytes, shorts or ints.
+	 */
+	private abstract static class SingleArray extends MatrixStorage {
+		private CellType cellType;
+		private byte[] bytes;
+		private short[] shorts;
+		private int[] ints;
+
+		SingleArray(CellType cellType, long length) {
+			Preconditions.checkArgument(length <= Integer.MAX_VALUE,
+					"Too many cells for a single array.");
+			this.cellType = cellType;
+			switch (cellType) {
+			case BYTE:
+				bytes = new byte[(int) length];
+				break;
+			case SHORT:
+				shorts = new short[(int) length];
+				break;
+			default:
+				ints = new int[(int) length];
+			}
+		}
+
+		/**
+		 * @return position of cell (row, column) in the array
+		 */
+		abstract int position(int row, int column);
+
+		@Override
+		CellType getCellType() {
+			return cellType;
+		}
+
+		@Override
+		int get(int row, int column) {
+			int position = position(row, column);
+			switch (cellType) {
+			case BYTE:
+				return bytes[position];
+			case SHORT:
+				return shorts[position];
+			default:
+				return ints[position];
+			}
+		}
+
+		@Override
+		void set(int row, int column, int value) {
+			int position = position(row, column);
+			if (cellType == CellType.BYTE && value != (byte) value) {
+				widen(value == (short) value ? CellType.SHORT : CellType.INT);
+			} else if (cellType == CellType.SHORT && value != (short) value) {
+				widen(CellType.INT);
+			}
+			switch (cellType) {
+			case BYTE:
+				bytes[position] = (byte) value;
+				break;
+			case SHORT:
+				shorts[position] = (short) value;
+				break;
+			default:
+				ints[position] = value;
+			}
+		}
+
+		private void widen(CellType newCellType) {
+			int length = (cellType == CellType.BYTE) ? bytes.length : shorts.length;
+			if (newCellType == CellType.SHORT) {
+				shorts = new short[length];
+				for (int k = 0; k < length; k++) {
+					shorts[k] = bytes[k];
+				}
+			} else {
+				ints = new int[length];
+				for (int k = 0; k < length; k++) {
+					ints[k] = (cellType == CellType.BYTE) ? bytes[k] : shorts[k];
+				}
+				shorts = null;
+			}
+			bytes = null;
+			cellType = newCellType;
+		}
+	}
+
+	private static final class RowMajor extends SingleArray {
+		private final int capacity;
+
+		RowMajor(CellType cellType, int capacity) {
+			super(cellType, (long) capacity * capacity);
+			this.capacity = capacity;
+		}
+
+		@Override
+		Layout getLayout() {
+			return Layout.ROW_MAJOR;
+		}
+
+		@Override
+		int getCapacity() {
+			return capacity;
+		}
+
+		@Override
+		int position(int row, int column) {
+			return row * capacity + column;
+		}
+	}
+
+	private static final class PackedSymmetric extends SingleArray {
+		private final int capacity;
+
+		PackedSymmetric(CellType cellType, int capacity) {
+			super(cellType, (long) capacity * (capacity + 1) / 2);
+			this.capacity = capacity;
+		}
+
+		@Override
+		Layout getLayout() {
+			return Layout.PACKED_SYMMETRIC;
+		}
+
+		@Override
+		int getCapacity() {
+			return capacity;
+		}
+
+		@Override
+		boolean isSymmetric() {
+			return true;
+		}
+
+		@Override
+		int position(int row, int column) {
+			// row * (row + 1) < 2^32, since there are at most 2^31 cells
+			if (row >= column) {
+				return (row * (row + 1) >>> 1) + column;
+			}
+			return (column * (column + 1) >>> 1) + row;
+		}
+	}
+
+	/**
+	 * The cells that are not 0 in an open addressing hash table (linear 
+	 * probing) from row << 32 | column to the cell: memory proportional to 
+	 * the number of pairs of adjacent vertices, and not to capacity^2. The
+	 * columns of the cells of each row, and the rows of the cells of each 
+	 * column, are also listed (unsorted), so that a row is visited, and a 
+	 * row and a column are cleared, in time proportional to their cells.
+	 */
+	private static final class Sparse extends MatrixStorage {
+		private static final long FREE = -1L;
+
+		private final int capacity;
+		private long[] keys;
+		private int[] values;
+		private int size;
+		private int[] rowSums;
+		// for each row, the columns of its cells (null if it has none yet)
+		private int[][] rowColumns;
+		private int[] rowSizes;
+		// for each column, the rows of its cells (null if it has none yet)
+		private int[][] columnRows;
+		private int[] columnSizes;
+
+		Sparse(int capacity) {
+			this.capacity = capacity;
+			this.keys = new long[16];
+			Arrays.fill(keys, FREE);
+			this.values = new int[16];
+			this.rowSums = new int[capacity];
+			this.rowColumns = new int[capacity][];
+			this.rowSizes = new int[capacity];
+			this.columnRows = new int[capacity][];
+			this.columnSizes = new int[capacity];
+		}
+
+		private Sparse(int capacity, Sparse other) {
+			this.capacity = capacity;
+			this.keys = other.keys.clone();
+			this.values = other.values.clone();
+			this.size = other.size;
+			this.rowSums = Arrays.copyOf(other.rowSums, capacity);
+			this.rowColumns = copyLists(capacity, other.rowColumns);
+			this.rowSizes = Arrays.copyOf(other.rowSizes, capacity);
+			this.columnRows = copyLists(capacity, other.columnRows);
+			this.columnSizes = Arrays.copyOf(other.columnSizes, capacity);
+		}
+
+		private static int[][] copyLists(int capacity, int[][] lists) {
+			int[][] copy = new int[capacity][];
+			for (int k = 0; k < Math.min(capacity, lists.length); k++) {
+				if (lists[k] != null) {
+					copy[k] = lists[k].clone();
+				}
+			}
+			return copy;
+		}
+
+		private static long key(int row, int column) {
+			return ((long) row << 32) | column;
+		}
+
+		private static int hash(long key) {
+			long h = key * 0x9E3779B97F4A7C15L;
+			return (int) (h ^ (h >>> 32));
+		}
+
+		/**
+		 * @return the position of key in the table, or the free position
+		 * where it would go
+		 */
+		private int find(long key) {
+			int mask = keys.length - 1;
+			int position = hash(key) & mask;
+			while (keys[position] != FREE && keys[position] != key) {
+				position = (position + 1) & mask;
+			}
+			return position;
+		}
+
+		@Override
+		Layout getLayout() {
+			return Layout.SPARSE;
+		}
+
+		@Override
+		CellType getCellType() {
+			return CellType.INT;
+		}
+
+		@Override
+		int getCapacity() {
+			return capacity;
+		}
+
+		@Override
+		int get(int row, int column) {
+			int position = find(key(row, column));
+			return (keys[position] == FREE) ? 0 : values[position];
+		}
+
+		@Override
+		void set(int row, int column, int value) {
+			long key = key(row, column);
+			int position = find(key);
+			boolean present = keys[position] != FREE;
+			rowSums[row] += value - (present ? values[position] : 0);
+			if (value == 0) {
+				if (present) {
+					delete(position);
+					removeFrom(rowColumns, rowSizes, row, column);
+					removeFrom(columnRows, columnSizes, column, row);
+				}
+			} else if (present) {
+				values[position] = value;
+			} else {
+				keys[position] = key;
+				values[position] = value;
+				size++;
+				addTo(rowColumns, rowSizes, row, column);
+				addTo(columnRows, columnSizes, column, row);
+				if (4 * size > 3 * keys.length) {
+					resize(2 * keys.length);
+				}
+			}
+		}
+
+		/**
+		 * Empties the position, moving back the following entries of the
+		 * same run that would not be found any more.
+		 */
+		private void delete(int position) {
+			int mask = keys.length - 1;
+			int hole = position;
+			int next = (position + 1) & mask;
+			while (keys[next] != FREE) {
+				int ideal = hash(keys[next]) & mask;
+				if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+					keys[hole] = keys[next];
+					values[hole] = values[next];
+					hole = next;
+				}
+				next = (next + 1) & mask;
+			}
+			keys[hole] = FREE;
+			size--;
+		}
+
+		private static void addTo(int[][] lists, int[] sizes, int list, int element) {
+			int[] elements = lists[list];
+			if (elements == null) {
+				elements = new int[4];
+			} else if (sizes[list] == elements.length) {
+				elements = Arrays.copyOf(elements, 2 * elements.length);
+			}
+			elements[sizes[list]++] = element;
+			lists[list] = elements;
+		}
+
+		// the last element of the list takes its place: searched from the 
+		// end, so that emptying a list from its end takes linear time
+		private static void removeFrom(int[][] lists, int[] sizes, int list, int element) {
+			int[] elements = lists[list];
+			int k = sizes[list] - 1;
+			while (elements[k] != element) {
+				k--;
+			}
+			elements[k] = elements[--sizes[list]];
+		}
+
+		private void resize(int length) {
+			long[] oldKeys = keys;
+			int[] oldValues = values;
+			keys = new long[length];
+			Arrays.fill(keys, FREE);
+			values = new int[length];
+			for (int p = 0; p < oldKeys.length; p++) {
+				if (oldKeys[p] != FREE) {
+					int position = find(oldKeys[p]);
+					keys[position] = oldKeys[p];
+					values[position] = oldValues[p];
+				}
+			}
+		}
+
+		@Override
+		int rowSum(int row, int noOfSlots) {
+			return rowSums[row];
+		}
+
+		@Override
+		void clear(int slot, int noOfSlots) {
+			while (rowSizes[slot] > 0) {
+				set(slot, rowColumns[slot][rowSizes[slot] - 1], 0);
+			}
+			while (columnSizes[slot] > 0) {
+				set(columnRows[slot][columnSizes[slot] - 1], slot, 0);
+			}
+		}
+
+		@Override
+		MatrixStorage copy(int capacity, int noOfSlots) {
+			return new Sparse(capacity, this);
+		}
+
+		@Override
+		MatrixStorage moved(int[] newSlots, int noOfSlots, int newCapacity) {
+			Sparse moved = new Sparse(newCapacity);
+			for (int p = 0; p < keys.length; p++) {
+				if (keys[p] != FREE) {
+					int newRow = newSlots[(int) (keys[p] >>> 32)];
+					int newColumn = newSlots[(int) keys[p]];
+					if (newRow >= 0 && newColumn >= 0) {
+						moved.set(newRow, newColumn, values[p]);
+					}
+				}
+			}
+			return moved;
+		}
+
+		@Override
+		void forEachInRow(int row, int noOfSlots, EdgeConsumer consumer) {
+			int[] columns = rowColumns[row];
+			for (int k = 0; k < rowSizes[row]; k++) {
+				int column = columns[k];
+				if (column < noOfSlots) {
+					consumer.accept(row, column, get(row, column));
+				}
+			}
+		}
+
+		@Override
+		void forEachNonZero(int noOfSlots, EdgeConsumer consumer) {
+			for (int p = 0; p < keys.length; p++) {
+				if (keys[p] != FREE) {
+					consumer.accept((int) (keys[p] >>> 32), (int) keys[p], values[p]);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package graphimplementations;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+/**
+ *
+ * Memory outside the Java heap (direct buffers, which the garbage collector
+ * does not scan) for the arrays of OffHeapCsrGraph. The graphs in an arena
+ * live as long as it is open: close() ends all of them at once, dropping
+ * their buffers (the memory is given back when the buffers are collected,
+ * even if the graphs are still reachable) and releasing the other resources
+ * registered in the arena; any query on them then throws an
+ * IllegalStateException.
+ *
+ * An arena is not thread safe: it should be closed only when no other
+ * thread uses its graphs.
+ *
+ * @author mmcasetti
+ *
+ */
+public final class OffHeapArena implements Closeable {
+	// a direct buffer is limited to Integer.MAX_VALUE bytes
+	public static final int MAX_INTS = Integer.MAX_VALUE / 4;
+
+	private final List<Closeable> resources = Lists.newArrayList();
+	private long allocatedBytes;
+	private boolean isOpen = true;
+
+	/**
+	 *
+	 * @return length ints, all 0, outside the heap, in native byte order
+	 */
+	public IntBuffer allocateInts(int length) {
+		checkOpen();
+		Preconditions.checkArgument(length >= 0 && length <= MAX_INTS,
+				"Too many ints for one buffer");
+		IntBuffer buffer = ByteBuffer.allocateDirect(4 * length)
+				.order(ByteOrder.nativeOrder()).asIntBuffer();
+		allocatedBytes += 4L * length;
+		return buffer;
+	}
+
+	/**
+	 * The resource is closed when the arena is (in reverse order of
+	 * registration).
+	 */
+	public void register(Closeable resource) {
+		checkOpen();
+		resources.add(resource);
+	}
+
+	/**
+	 * @return bytes allocated by allocateInts since the arena was created
+	 */
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	public boolean isOpen() {
+		return isOpen;
+	}
+
+	void checkOpen() {
+		if (!isOpen) {
+			throw new IllegalStateException("Arena closed.");
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (!isOpen) {
+			return;
+		}
+		isOpen = false;
+		IOException exception = null;
+		for (Closeable resource : Lists.reverse(resources)) {
+			try {
+				resource.close();
+			} catch (IOException e) {
+				if (exception == null) {
+					exception = e;
+				}
+			}
+		}
+		resources.clear();
+		if (exception != null) {
+			throw exception;
+		}
+	}
+}
@@ -0,0 +1,525 @@
+package graphimplementations;
+
+import interfaces.EdgeConsumer;
+import interfaces.Graph;
+
+import java.io.Closeable;
+import java.nio.IntBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import abstractclasses.AbstractGraph;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multiset;
+
+/**
+ *
+ * A class to implement an immutable multigraph in compressed sparse row form
+ * (see CsrGraph), with the offsets, neighbors and multiplicities in int
+ * buffers outside the Java heap, owned by an OffHeapArena: the garbage
+ * collector does not scan them, however large the graph. Once the arena is
+ * closed, every query throws an IllegalStateException.
+ *
+ * Only the vertices are on the heap. The list of vertices is not copied,
+ * and the set of vertices and the map from each vertex to its index are
+ * built the first time they are needed, so that a graph is created in
+ * constant time from buffers that are already filled in (e.g. read from a
+ * file). Each buffer holds at most OffHeapArena.MAX_INTS ints.
+ *
+ * All the methods that modify the graph throw an
+ * UnsupportedOperationException.
+ *
+ * @author mmcasetti
+ *
+ */
+
+public class OffHeapCsrGraph extends AbstractGraph {
+	private final List<Vertex> vertices;
+	private Set<Vertex> verticesSet;
+	private Map<Vertex, Integer> indices;
+	private final OffHeapArena arena;
+	// set to null when the arena is closed
+	private IntBuffer offsets;
+	private IntBuffer neighbors;
+	private IntBuffer multiplicities;
+	private IntBuffer inOffsets;
+	private IntBuffer inNeighbors;
+	private IntBuffer inMultiplicities;
+	private final boolean isDirected;
+
+	/**
+	 * The rows must be as in CsrGraph (sorted, with positive multiplicities,
+	 * symmetric if the graph is undirected): only their sizes are checked.
+	 * The transposed rows of a directed graph are built in the arena.
+	 */
+	public OffHeapCsrGraph(List<Vertex> vertices, IntBuffer offsets, IntBuffer neighbors,
+			IntBuffer multiplicities, boolean isDirected, OffHeapArena arena) {
+		this(vertices, offsets, neighbors, multiplicities, null, null, null, isDirected, arena);
+	}
+
+	/**
+	 * As above, with the transposed rows of a directed graph already built
+	 * (null to build them in the arena; ignored if the graph is undirected).
+	 */
+	public OffHeapCsrGraph(List<Vertex> vertices, IntBuffer offsets, IntBuffer neighbors,
+			IntBuffer multiplicities, IntBuffer inOffsets, IntBuffer inNeighbors,
+			IntBuffer inMultiplicities, boolean isDirected, OffHeapArena arena) {
+		arena.checkOpen();
+		int n = vertices.size();
+		Preconditions.checkArgument(offsets.limit() == n + 1,
+				"Too many or too few vertices");
+		Preconditions.checkArgument(neighbors.limit() == multiplicities.limit(),
+				"Neighbors and multiplicities of different length");
+		Preconditions.checkArgument(offsets.get(0) == 0 && offsets.get(n) == neighbors.limit(),
+				"Offsets do not cover the neighbors");
+
+		this.vertices = vertices;
+		this.arena = arena;
+		this.offsets = offsets;
+		this.neighbors = neighbors;
+		this.multiplicities = multiplicities;
+		this.isDirected = isDirected;
+
+		if (!isDirected) {
+			this.inOffsets = offsets;
+			this.inNeighbors = neighbors;
+			this.inMultiplicities = multiplicities;
+		} else if (inOffsets != null) {
+			Preconditions.checkArgument(inOffsets.limit() == n + 1
+					&& inNeighbors.limit() == neighbors.limit()
+					&& inMultiplicities.limit() == neighbors.limit(),
+					"Transposed rows of different size");
+			this.inOffsets = inOffsets;
+			this.inNeighbors = inNeighbors;
+			this.inMultiplicities = inMultiplicities;
+		} else {
+			this.inOffsets = arena.allocateInts(n + 1);
+			this.inNeighbors = arena.allocateInts(neighbors.limit());
+			this.inMultiplicities = arena.allocateInts(neighbors.limit());
+			transpose(n, offsets, neighbors, multiplicities, this.inOffsets, this.inNeighbors, this.inMultiplicities);
+		}
+
+		arena.register(new Closeable() {
+			@Override
+			public void close() {
+				release();
+			}
+		});
+	}
+
+	/**
+	 * Fills in the transposed rows (the buffers must be all 0) with a
+	 * counting sort: walking the rows in order, each transposed row is
+	 * filled in increasing order. While filling, inOffsets[j] is the next
+	 * free position of row j, so it ends up shifted by one.
+	 */
+	static void transpose(int n, IntBuffer offsets, IntBuffer neighbors, IntBuffer multiplicities,
+			IntBuffer inOffsets, IntBuffer inNeighbors, IntBuffer inMultiplicities) {
+		int length = neighbors.limit();
+		for (int k = 0; k < length; k++) {
+			int j = neighbors.get(k) + 1;
+			inOffsets.put(j, inOffsets.get(j) + 1);
+		}
+		for (int i = 0; i < n; i++) {
+			inOffsets.put(i + 1, inOffsets.get(i + 1) + inOffsets.get(i));
+		}
+		for (int i = 0; i < n; i++) {
+			for (int k = offsets.get(i); k < offsets.get(i + 1); k++) {
+				int j = neighbors.get(k);
+				int position = inOffsets.get(j);
+				inOffsets.put(j, position + 1);
+				inNeighbors.put(position, i);
+				inMultiplicities.put(position, multiplicities.get(k));
+			}
+		}
+		for (int j = n; j > 0; j--) {
+			inOffsets.put(j, inOffsets.get(j - 1));
+		}
+		inOffsets.put(0, 0);
+	}
+
+	private void release() {
+		offsets = null;
+		neighbors = null;
+		multiplicities = null;
+		inOffsets = null;
+		inNeighbors = null;
+		inMultiplicities = null;
+	}
+
+	public OffHeapArena getArena() {
+		return arena;
+	}
+
+	/**
+	 *
+	 * @return the multiplicity of (start, end) in the rows, 0 if there is
+	 * no such entry (binary search in the row of start)
+	 */
+	private int count(int start, int end) {
+		int low = offsets.get(start);
+		int high = offsets.get(start + 1) - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int neighbor = neighbors.get(middle);
+			if (neighbor < end) {
+				low = middle + 1;
+			} else if (neighbor > end) {
+				high = middle - 1;
+			} else {
+				return multiplicities.get(middle);
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 *
+	 * @return sum of the multiplicities in the given row
+	 */
+	private static int sum(IntBuffer multiplicities, IntBuffer offsets, int row) {
+		int sum = 0;
+		for (int k = offsets.get(row); k < offsets.get(row + 1); k++) {
+			sum += multiplicities.get(k);
+		}
+		return sum;
+	}
+
+	@Override
+	public Set<Vertex> getVertices() {
+		arena.checkOpen();
+		if (verticesSet == null) {
+			verticesSet = ImmutableSet.copyOf(vertices);
+		}
+		return verticesSet;
+	}
+
+	@Override
+	public int getNoOfVertices() {
+		return vertices.size();
+	}
+
+	@Override
+	public int getIndexOf(Vertex vertex) {
+		if (indices == null) {
+			indices = Maps.newHashMapWithExpectedSize(vertices.size());
+			for (int i = 0; i < vertices.size(); i++) {
+				indices.put(vertices.get(i), i);
+			}
+		}
+		Integer index = indices.get(vertex);
+		Preconditions.checkArgument(index != null, "Vertex not in graph.");
+		return index;
+	}
+
+	@Override
+	public Vertex getVertexAt(int index) {
+		return vertices.get(index);
+	}
+
+	@Override
+	public void forEachEdge(EdgeConsumer consumer) {
+		arena.checkOpen();
+		for (int i = 0; i < vertices.size(); i++) {
+			for (int k = offsets.get(i); k < offsets.get(i + 1); k++) {
+				int neighbor = neighbors.get(k);
+				if (isDirected || i <= neighbor) {
+					consumer.accept(i, neighbor, multiplicities.get(k));
+				}
+			}
+		}
+	}
+
+	@Override
+	public void forEachNeighbor(int index, EdgeConsumer consumer) {
+		arena.checkOpen();
+		Preconditions.checkElementIndex(index, vertices.size());
+		for (int k = offsets.get(index); k < offsets.get(index + 1); k++) {
+			consumer.accept(index, neighbors.get(k), multiplicities.get(k));
+		}
+	}
+
+	@Override
+	public boolean isDirected() {
+		return isDirected;
+	}
+
+	/**
+	 *
+	 * @param start
+	 * @param end
+	 * @return number of edges between start and end (from start to end, if
+	 *         the graph is directed)
+	 */
+	public int getMultiplicity(Vertex start, Vertex end) {
+		arena.checkOpen();
+		return count(getIndexOf(start), getIndexOf(end));
+	}
+
+	@Override
+	public Multiset<Edge> getUndirectedEdges() {
+		if (isDirected()) {
+			return HashMultiset.<Edge>create();
+		}
+		arena.checkOpen();
+
+		Multiset<Edge> edges = HashMultiset.create();
+		for (int i = 0; i < vertices.size(); i++) {
+			Vertex start = vertices.get(i);
+			for (int k = offsets.get(i); k < offsets.get(i + 1); k++) {
+				if (i <= neighbors.get(k)) {
+					Edge edge = Edge.undirected(start, vertices.get(neighbors.get(k)));
+					edges.add(edge, multiplicities.get(k));
+				}
+			}
+		}
+		return edges;
+	}
+
+	@Override
+	public Multiset<Edge> getDirectedEdges() {
+		if (!isDirected()) {
+			return HashMultiset.<Edge>create();
+		}
+		arena.checkOpen();
+
+		Multiset<Edge> edges = HashMultiset.create();
+		for (int i = 0; i < vertices.size(); i++) {
+			Vertex start = vertices.get(i);
+			for (int k = offsets.get(i); k < offsets.get(i + 1); k++) {
+				Edge edge = Edge.directed(start, vertices.get(neighbors.get(k)));
+				edges.add(edge, multiplicities.get(k));
+			}
+		}
+		return edges;
+	}
+
+	/**
+	 * @return the same graph, undirected, in the same arena: the directed
+	 *         edges between i and j (in both directions) become as many
+	 *         undirected edges
+	 */
+	@Override
+	public Graph makeUndirected() {
+		if (!isDirected()) {
+			return this;
+		}
+		arena.checkOpen();
+
+		// row i of the undirected graph merges row i and transposed row i:
+		// a first pass counts the entries, a second one fills them in
+		int n = vertices.size();
+		IntBuffer newOffsets = arena.allocateInts(n + 1);
+		for (int i = 0; i < n; i++) {
+			newOffsets.put(i + 1, newOffsets.get(i) + mergeRows(i, null, null, 0));
+		}
+		IntBuffer newNeighbors = arena.allocateInts(newOffsets.get(n));
+		IntBuffer newMultiplicities = arena.allocateInts(newOffsets.get(n));
+		for (int i = 0; i < n; i++) {
+			mergeRows(i, newNeighbors, newMultiplicities, newOffsets.get(i));
+		}
+		return new OffHeapCsrGraph(vertices, newOffsets, newNeighbors, newMultiplicities, false, arena);
+	}
+
+	/**
+	 * Merges row i and transposed row i, writing the entries from the given
+	 * position (if the buffers are not null).
+	 *
+	 * @return number of entries of the merged row
+	 */
+	private int mergeRows(int i, IntBuffer newNeighbors, IntBuffer newMultiplicities, int from) {
+		int position = from;
+		int k = offsets.get(i);
+		int h = inOffsets.get(i);
+		while (k < offsets.get(i + 1) || h < inOffsets.get(i + 1)) {
+			int out = (k < offsets.get(i + 1)) ? neighbors.get(k) : Integer.MAX_VALUE;
+			int in = (h < inOffsets.get(i + 1)) ? inNeighbors.get(h) : Integer.MAX_VALUE;
+			int neighbor = Math.min(out, in);
+			int multiplicity = 0;
+			if (out == neighbor) {
+				multiplicity += multiplicities.get(k++);
+			}
+			if (in == neighbor) {
+				// a loop is already counted once in its row
+				if (neighbor != i) {
+					multiplicity += inMultiplicities.get(h);
+				}
+				h++;
+			}
+			if (newNeighbors != null) {
+				newNeighbors.put(position, neighbor);
+				newMultiplicities.put(position, multiplicity);
+			}
+			position++;
+		}
+		return position - from;
+	}
+
+	/**
+	 * @return the same graph, directed, in the same arena: each undirected
+	 *         edge becomes two directed edges, one in each direction (a loop
+	 *         becomes two loops)
+	 */
+	@Override
+	public Graph makeDirected() {
+		if (isDirected()) {
+			return this;
+		}
+		arena.checkOpen();
+
+		IntBuffer newMultiplicities = arena.allocateInts(multiplicities.limit());
+		for (int i = 0; i < vertices.size(); i++) {
+			for (int k = offsets.get(i); k < offsets.get(i + 1); k++) {
+				int multiplicity = multiplicities.get(k);
+				newMultiplicities.put(k, (neighbors.get(k) == i) ? 2 * multiplicity : multiplicity);
+			}
+		}
+		// the rows are symmetric: they are their own transposed rows
+		return new OffHeapCsrGraph(vertices, offsets, neighbors, newMultiplicities,
+				offsets, neighbors, newMultiplicities, true, arena);
+	}
+
+	@Override
+	public Multiset<Edge> getEdgesAt(Vertex vertex) {
+		Preconditions.checkArgument(!isDirected(),
+				"Use getEdgesFrom and getEdgesTo.");
+		arena.checkOpen();
+
+		int index = getIndexOf(vertex);
+		Multiset<Edge> edgesAt = HashMultiset.create();
+		for (int k = offsets.get(index); k < offsets.get(index + 1); k++) {
+			Edge edge = Edge.undirected(vertex, vertices.get(neighbors.get(k)));
+			edgesAt.add(edge, multiplicities.get(k));
+		}
+		return edgesAt;
+	}
+
+	@Override
+	public Multiset<Edge> getEdgesFrom(Vertex vertex) {
+		Preconditions.checkArgument(isDirected(), "Use getEdgesAt.");
+		arena.checkOpen();
+
+		int index = getIndexOf(vertex);
+		Multiset<Edge> edgesFrom = HashMultiset.create();
+		for (int k = offsets.get(index); k < offsets.get(index + 1); k++) {
+			Edge edge = Edge.directed(vertex, vertices.get(neighbors.get(k)));
+			edgesFrom.add(edge, multiplicities.get(k));
+		}
+		return edgesFrom;
+	}
+
+	@Override
+	public Multiset<Edge> getEdgesTo(Vertex vertex) {
+		Preconditions.checkArgument(isDirected(), "Use getEdgesAt.");
+		arena.checkOpen();
+
+		int index = getIndexOf(vertex);
+		Multiset<Edge> edgesTo = HashMultiset.create();
+		for (int h = inOffsets.get(index); h < inOffsets.get(index + 1); h++) {
+			Edge edge = Edge.directed(vertices.get(inNeighbors.get(h)), vertex);
+			edgesTo.add(edge, inMultiplicities.get(h));
+		}
+		return edgesTo;
+	}
+
+	@Override
+	public int getDegreeAt(Vertex vertex) {
+		Preconditions.checkArgument(!isDirected(),
+				"Use getOutdegreeAt and getIndegreeAt.");
+		arena.checkOpen();
+
+		return sum(multiplicities, offsets, getIndexOf(vertex));
+	}
+
+	@Override
+	public int getOutdegreeAt(Vertex vertex) {
+		Preconditions.checkArgument(isDirected(), "Use getDegreeAt.");
+		arena.checkOpen();
+
+		return sum(multiplicities, offsets, getIndexOf(vertex));
+	}
+
+	@Override
+	public int getIndegreeAt(Vertex vertex) {
+		Preconditions.checkArgument(isDirected(), "Use getDegreeAt.");
+		arena.checkOpen();
+
+		return sum(inMultiplicities, inOffsets, getIndexOf(vertex));
+	}
+
+	@Override
+	public void addVertices(Set<Vertex> newVertices) {
+		throw new UnsupportedOperationException("OffHeapCsrGraph is immutable.");
+	}
+
+	@Override
+	public void removeVertex(Vertex vertex) {
+		throw new UnsupportedOperationException("OffHeapCsrGraph is immutable.");
+	}
+
+	@Override
+	public void addUndirectedEdge(Edge edge) {
+		throw new UnsupportedOperationException("OffHeapCsrGraph is immutable.");
+	}
+
+	@Override
+	public void addDirectedEdge(Edge edge) {
+		throw new UnsupportedOperationException("OffHeapCsrGraph is immutable.");
+	}
+
+	@Override
+	public void addUndirectedEdge(Vertex start, Vertex end) {
+		throw new UnsupportedOperationException("OffHeapCsrGraph is immutable.");
+	}
+
+	@Override
+	public void addDirectedEdge(Vertex start, Vertex end) {
+		throw new UnsupportedOperationException("OffHeapCsrGraph is immutable.");
+	}
+
+	@Override
+	public void removeUndirectedEdge(Edge edge) {
+		throw new UnsupportedOperationException("OffHeapCsrGraph is immutable.");
+	}
+
+	@Override
+	public void removeDirectedEdge(Edge edge) {
+		throw new UnsupportedOperationException("OffHeapCsrGraph is immutable.");
+	}
+
+	@Override
+	public void removeUndirectedEdge(Vertex start, Vertex end) {
+		throw new UnsupportedOperationException("OffHeapCsrGraph is immutable.");
+	}
+
+	@Override
+	public void removeDirectedEdge(Vertex start, Vertex end) {
+		throw new UnsupportedOperationException("OffHeapCsrGraph is immutable.");
+	}
+
+	@Override
+	public void addEdges(Multiset<Edge> edges) {
+		throw new UnsupportedOperationException("OffHeapCsrGraph is immutable.");
+	}
+
+	@Override
+	public void removeEdges(Multiset<Edge> edges) {
+		throw new UnsupportedOperationException("OffHeapCsrGraph is immutable.");
+	}
+
+	@Override
+	public void removeVertices(Set<Vertex> vertices) {
+		throw new UnsupportedOperationException("OffHeapCsrGraph is immutable.");
+	}
+
+	@Override
+	public boolean isEulerian() {
+		arena.checkOpen();
+		return super.isEulerian();
+	}
+}
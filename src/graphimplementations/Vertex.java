@@ -1,12 +1,11 @@
 package graphimplementations;
 
-import com.google.common.annotations.VisibleForTesting;
-import com.google.common.base.Objects;
-import com.google.common.base.Predicate;
+import java.util.List;
+
 import com.google.common.collect.HashMultiset;
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Multiset;
+import com.google.common.collect.Multisets;
 
 import interfaces.VertexInterface;
 
@@ -19,29 +18,66 @@ import interfaces.VertexInterface;
  */
 public class Vertex implements VertexInterface {
 
-	private static int noOfVertices;
-	@VisibleForTesting int label;
+	private final IdSpace space;
+	// written to graph files (see GraphFile)
+	final long label;
 	private Multiset<Edge> edges;
+	// counters of the edges at vertex, kept up to date by addEdge and removeEdge
+	private int degree;
+	private int indegree;
+	private int outdegree;
 
 	public Vertex() {
-		this.label = getNextLabel();
+		this(IdSpace.GLOBAL);
+	}
+
+	public Vertex(IdSpace space) {
+		this(space, space.nextId());
+	}
+
+	Vertex(IdSpace space, long label) {
+		this.space = space;
+		this.label = label;
 		this.edges = HashMultiset.create(); 
 	}
 
-	private synchronized static int getNextLabel() {
-		return noOfVertices++;
+/**
+ * 
+ * @param noOfVertices
+ * @return noOfVertices new vertices, with consecutive labels
+ */	
+	public static List<Vertex> createVertices(int noOfVertices) {
+		return createVertices(IdSpace.GLOBAL, noOfVertices);
+	}
+
+	public static List<Vertex> createVertices(IdSpace space, int noOfVertices) {
+		long firstLabel = space.reserveIds(noOfVertices);
+		List<Vertex> vertices = Lists.newArrayListWithCapacity(noOfVertices);
+		for (int i = 0; i < noOfVertices; i++) {
+			vertices.add(new Vertex(space, firstLabel + i));
+		}
+		return vertices;
+	}
+
+	public IdSpace getIdSpace() {
+		return space;
 	}
 
 	@Override
 	public Multiset<Edge> getEdges() {
-		return this.edges;
+		return Multisets.unmodifiableMultiset(this.edges);
 	}	
 
 	@Override
 	public int hashCode() {
-		return Objects.hashCode(label);
+		return (int) (label ^ (label >>> 32));
 	}	
 
+/**
+ * 	Two vertices are equal if they have the same label in the same IdSpace:
+ * 	the label never changes, while the edges at vertex do (see
+ * 	structurallyEquals).
+ */	
 	@Override
 	public boolean equals(Object obj) {
 		if (obj == this) {
@@ -51,21 +87,58 @@ public class Vertex implements VertexInterface {
 			return false;
 		}
 		Vertex otherVertex = (Vertex) obj;
-		return Objects.equal(this.label, otherVertex.label)
-				&& Objects.equal(this.edges, otherVertex.edges);
-		// why not this.label == otherVertex.label?
-		// because we want to consider the hashcode as well?
+		return this.label == otherVertex.label && this.space == otherVertex.space;
+	}
+
+/**
+ * 
+ * @param otherVertex
+ * @return true if the vertices are equal and have the same edges
+ */	
+	public boolean structurallyEquals(Vertex otherVertex) {
+		return this.equals(otherVertex) && this.edges.equals(otherVertex.edges);
 	}
 
 	public void addEdge(Edge edge) {
 		edges.add(edge);
+		count(edge, 1);
+	}
+
+/**
+ * 	Removes one occurrence of edge from the edges at vertex.
+ * 
+ * 	@return true if edge was at vertex
+ */	
+	public boolean removeEdge(Edge edge) {
+		if (!edges.remove(edge)) {
+			return false;
+		}
+		count(edge, -1);
+		return true;
+	}
+
+/**
+ * 	Updates the degree counters for one occurrence of edge, added (sign 1)
+ * 	or removed (sign -1).
+ */	
+	private void count(Edge edge, int sign) {
+		if (edge.isDirected()) {
+			if (edge.getEnd().equals(this)) {
+				indegree += sign;
+			}
+			if (edge.getStart().equals(this)) {
+				outdegree += sign;
+			}
+		} else if (edge.getStart().equals(this) || edge.getEnd().equals(this)) {
+			degree += sign;
+		}
 	}
 	
 /**
  * 	@return number of edges incident at vertex (directed and undirected) 	
  */	
 	public int getNoOfEdges() {
-		return getEdges().size();
+		return edges.size();
 	}
 
 /**
@@ -73,7 +146,7 @@ public class Vertex implements VertexInterface {
  */	
 	@Override
 	public int getDegree() {
-		return getDirectedDegree(isUndirectedAt(this));
+		return degree;
 	}
 
 /**
@@ -81,7 +154,7 @@ public class Vertex implements VertexInterface {
  */	
 	@Override
 	public int getIndegree() {
-		return getDirectedDegree(isInEdgeTo(this));
+		return indegree;
 	}
 
 /**
@@ -89,58 +162,6 @@ public class Vertex implements VertexInterface {
  */
 	@Override
 	public int getOutdegree() {
-		return getDirectedDegree(isOutEdgeFrom(this));
-	}
-
-/**
- * 
- * @param directionPredicate
- * @return edges incident at vertex that satisfy the predicate
- */
-	private int getDirectedDegree(Predicate<Edge> directionPredicate) {
-		return ImmutableList.copyOf(Iterables.filter(getEdges(), directionPredicate)).size();
-	}
-
-/**
- * 
- * @param vertex
- * @return directed edges that contribute to indegree at vertex
- */
-	private static Predicate<Edge> isInEdgeTo(final Vertex vertex) {
-		return new Predicate<Edge>() {
-			@Override
-			public boolean apply(Edge edge) {
-				return (edge.isDirected() && edge.getEnd().equals(vertex));
-			}
-		};
-	}
-
-/**
- * 
- * @param vertex
- * @return directed edges that contribute to outdegree at vertex
- */
-	private static Predicate<Edge> isOutEdgeFrom(final Vertex vertex) {
-		return new Predicate<Edge>() {
-			@Override
-			public boolean apply(Edge edge) {
-				return (edge.isDirected() && edge.getStart().equals(vertex));
-			}
-		};
-	}
-
-/**
- * 
- * @param vertex
- * @return undirected edges at vertex
- */	
-	private static Predicate<Edge> isUndirectedAt(final Vertex vertex) {
-		return new Predicate<Edge>() {
-			@Override
-			public boolean apply(Edge edge) {
-				return (!edge.isDirected() && 
-						(edge.getStart().equals(vertex) || edge.getEnd().equals(vertex)));
-			}
-		};
+		return outdegree;
 	}
 }
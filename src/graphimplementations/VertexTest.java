@@ -2,6 +2,9 @@ package graphimplementations;
 
 import static org.junit.Assert.*;
 
+import java.util.List;
+import java.util.Set;
+
 import graphimplementations.Edge;
 import graphimplementations.Vertex;
 
@@ -13,6 +16,7 @@ import org.junit.runner.RunWith;
 
 import com.google.common.collect.HashMultiset;
 import com.google.common.collect.Multiset;
+import com.google.common.collect.Sets;
 
 @RunWith(Theories.class)
 public class VertexTest {
@@ -100,4 +104,53 @@ public class VertexTest {
     public void getDegree_zeroDirectedGraph() {
     	assertEquals(0, v4.getDegree());
     }
-}
\ No newline at end of file
+    
+    @Test
+    public void removeEdge_updatesDegrees() {
+    	Vertex v = new Vertex();
+    	Vertex w = new Vertex();
+    	Edge loop = Edge.from(v).to(v);
+    	Edge edge = Edge.between(v).and(w);
+    	
+    	assertTrue(v.removeEdge(loop));
+    	assertFalse(v.removeEdge(loop));
+    	assertEquals(0, v.getIndegree());
+    	assertEquals(0, v.getOutdegree());
+    	assertEquals(1, v.getDegree());
+    	assertTrue(v.removeEdge(edge));
+    	assertEquals(0, v.getDegree());
+    	assertEquals(1, w.getDegree());
+    }
+    
+    @Test
+    public void equals_ignoresEdges() {
+    	Vertex v = new Vertex();
+    	Vertex w = new Vertex();
+    	Set<Vertex> vertices = Sets.newHashSet(v);
+    	Edge.between(v).and(w);
+    	
+    	assertTrue(vertices.contains(v));
+    	assertTrue(v.structurallyEquals(v));
+    	assertFalse(v.structurallyEquals(w));
+    }
+    
+    @Test
+    public void createVertices_differentLabels() {
+    	List<Vertex> vertices = Vertex.createVertices(3000);
+    	Set<Vertex> verticesSet = Sets.newHashSet(vertices);
+    	verticesSet.add(new Vertex());
+    	
+    	assertEquals(3001, verticesSet.size());
+    }
+    
+    @Test
+    public void equals_differentIdSpaces() {
+    	IdSpace space = new IdSpace();
+    	Vertex v = new Vertex(space);
+    	Vertex w = new Vertex(new IdSpace());
+    	
+    	assertEquals(v.label, w.label);
+    	assertFalse(v.equals(w));
+    	assertEquals(space, v.getIdSpace());
+    }
+}
@@ -0,0 +1,19 @@
+package interfaces;
+
+/**
+ * 
+ * A callback for the edges of a graph, given as the indices of their 
+ * endpoints (see Graph.getIndexOf) and the number of edges between them.
+ * 
+ * Graph.forEachEdge calls accept once for each pair of vertices with edges 
+ * between them (from start to end, if the graph is directed): an undirected 
+ * pair is given once, with start <= end. Graph.forEachNeighbor(index, ...) 
+ * calls accept(index, neighbor, multiplicity) for each vertex with edges 
+ * between it and the vertex at index (from it, if the graph is directed).
+ * 
+ * @author mmcasetti
+ *
+ */
+public interface EdgeConsumer {
+	public void accept(int start, int end, int multiplicity);
+}
@@ -19,12 +19,33 @@ public interface Graph {
 	public Graph makeDirected();
 	
 	public int getNoOfVertices();
+	// the vertices have indices 0 ... getNoOfVertices() - 1, which change 
+	// when vertices are removed
+	public int getIndexOf(Vertex vertex);
+	public Vertex getVertexAt(int index);
+	public void forEachEdge(EdgeConsumer consumer);
+	public void forEachNeighbor(int index, EdgeConsumer consumer);
 	public Multiset<Edge> getEdgesAt(Vertex vertex);
 	public Multiset<Edge> getEdgesFrom(Vertex vertex);
 	public Multiset<Edge> getEdgesTo(Vertex vertex);
 	public int getDegreeAt(Vertex vertex);
 	public int getOutdegreeAt(Vertex vertex);
 	public int getIndegreeAt(Vertex vertex);
+	// each vertex with even degree (not counting loops), or with as many 
+	// edges in as out
+	public boolean isEulerian();
+	// ignoring the directions of the edges
+	public boolean isConnected();
+	// the vertices without edges (not even loops) are not counted: the edges 
+	// are all in one Eulerian walk only if this is true
+	public boolean isConnectedIgnoringIsolatedVertices();
+	// the same as isConnected, if undirected
+	public boolean isStronglyConnected();
+	// the components ignoring the directions of the edges; after 
+	// keepComponents, kept up to date as edges are added
+	public void keepComponents();
+	public boolean areConnected(Vertex start, Vertex end);
+	public int getNoOfComponents();
 
 	public void addVertices(Set<Vertex> newVertices);
 	public void removeVertex(Vertex vertex);
@@ -37,4 +58,10 @@ public interface Graph {
 	public void removeDirectedEdge(Edge edge);
 	public void removeUndirectedEdge(Vertex start, Vertex end);
 	public void removeDirectedEdge(Vertex start, Vertex end);
+
+	// bulk versions of the methods above: the edges (or vertices) are all 
+	// checked first, then the graph is changed in one pass
+	public void addEdges(Multiset<Edge> edges);
+	public void removeEdges(Multiset<Edge> edges);
+	public void removeVertices(Set<Vertex> vertices);
 }
\ No newline at end of file